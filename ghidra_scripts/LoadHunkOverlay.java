@@ -0,0 +1,72 @@
+//This script loads a HUNK_OVERLAY node of the imported executable into overlay blocks.
+//@author Dr. MefistO
+//@category Amiga
+//@keybinding
+//@menupath
+//@toolbar
+
+import java.io.File;
+import java.nio.file.AccessMode;
+import java.util.Arrays;
+import java.util.List;
+
+import amiga.AmigaHunkLoader;
+import ghidra.app.script.GhidraScript;
+import ghidra.app.util.bin.ByteProvider;
+import ghidra.app.util.bin.FileByteProvider;
+import ghidra.app.util.importer.MessageLog;
+import ghidra.framework.options.Options;
+import ghidra.program.model.listing.Program;
+import ghidra.program.model.mem.MemoryBlock;
+import hunk.BinFmtHunk;
+import hunk.BinImage;
+import hunk.Decrunchers;
+import hunk.OverlayManager;
+import hunk.OverlayNode;
+
+public class LoadHunkOverlay extends GhidraScript {
+
+	@Override
+	protected void run() throws Exception {
+		Options info = currentProgram.getOptions(Program.PROGRAM_INFO);
+
+		if (!info.contains(AmigaHunkLoader.OVERLAY_IMAGE_BASE)) {
+			println("The program has no overlays.");
+			return;
+		}
+
+		int imageBase = info.getInt(AmigaHunkLoader.OVERLAY_IMAGE_BASE, AmigaHunkLoader.DEF_IMAGE_BASE);
+
+		File file = new File(currentProgram.getExecutablePath());
+		if (!file.isFile()) {
+			file = askFile("Overlaid executable", "Open");
+		}
+
+		try (ByteProvider fileProvider = new FileByteProvider(file, null, AccessMode.READ)) {
+			MessageLog log = new MessageLog();
+			ByteProvider provider = Decrunchers.unpack(fileProvider, log);
+			BinImage root = BinFmtHunk.loadImage(provider, log);
+
+			if (root == null || !root.hasOverlays()) {
+				println("Cannot read the overlay table: " + log.toString());
+				return;
+			}
+
+			OverlayManager overlays = new OverlayManager(provider, root);
+			List<OverlayNode> nodes = Arrays.asList(overlays.getNodes());
+			List<OverlayNode> chosen = askChoices("Load overlay", "Select overlay nodes to load:", nodes, nodes.stream().map(OverlayNode::getName).toList());
+
+			for (OverlayNode node : chosen) {
+				monitor.setMessage(String.format("Loading overlay %s", node.getName()));
+
+				for (MemoryBlock block : AmigaHunkLoader.loadOverlayNode(currentProgram, root, overlays, node, imageBase, monitor, log)) {
+					println(String.format("%s loaded at %s", block.getName(), block.getStart()));
+				}
+			}
+
+			if (log.hasMessages()) {
+				println(log.toString());
+			}
+		}
+	}
+}
@@ -0,0 +1,30 @@
+//This script moves an imported hunk program to a new image base.
+//@author Dr. MefistO
+//@category Amiga
+//@keybinding
+//@menupath
+//@toolbar
+
+import amiga.AmigaHunkRebase;
+import ghidra.app.script.GhidraScript;
+import ghidra.app.util.importer.MessageLog;
+import ghidra.program.model.address.Address;
+
+public class RebaseHunkProgram extends GhidraScript {
+	
+	@Override
+	protected void run() throws Exception {
+		Address current = AmigaHunkRebase.getImageBase(currentProgram);
+		
+		if (current == null) {
+			println("The program has no hunk segments.");
+			return;
+		}
+		
+		Address newBase = askAddress("Rebase", String.format("New image base (now %s):", current));
+		MessageLog log = new MessageLog();
+		
+		AmigaHunkRebase.rebase(currentProgram, newBase, monitor, log);
+		println(log.toString());
+	}
+}
@@ -18,6 +18,7 @@ package amiga;
 import java.util.ArrayList;
 import java.util.List;
 
+import fd.FdBiasIndex;
 import fd.FdFunction;
 import fd.FdFunctionsInLibs;
 import fd.FdLibFunctions;
@@ -26,7 +27,6 @@ import ghidra.app.plugin.core.analysis.ConstantPropagationContextEvaluator;
 import ghidra.app.services.AbstractAnalyzer;
 import ghidra.app.services.AnalyzerType;
 import ghidra.app.util.importer.MessageLog;
-import ghidra.framework.Application;
 import ghidra.framework.options.Options;
 import ghidra.program.flatapi.FlatProgramAPI;
 import ghidra.program.model.address.Address;
@@ -35,7 +35,6 @@ import ghidra.program.model.data.ArrayDataType;
 import ghidra.program.model.data.ByteDataType;
 import ghidra.program.model.data.DataType;
 import ghidra.program.model.data.DataUtilities;
-import ghidra.program.model.data.FileDataTypeManager;
 import ghidra.program.model.data.FunctionDefinitionDataType;
 import ghidra.program.model.data.DataUtilities.ClearDataMode;
 import ghidra.program.model.data.PointerDataType;
@@ -66,6 +65,7 @@ public class AmigaHunkAnalyzer extends AbstractAnalyzer {
 	//private static final int imageBaseOffset = 0x10000;
 	private final List<String> filter = new ArrayList<String>();
 	private FdFunctionsInLibs funcsList;
+	private FdBiasIndex biasIndex;
 	
 	public AmigaHunkAnalyzer() {
 		super("Amiga Library Calls", "Analyses calls to system libraries", AnalyzerType.INSTRUCTION_ANALYZER);
@@ -83,9 +83,11 @@ public class AmigaHunkAnalyzer extends AbstractAnalyzer {
 	public boolean canAnalyze(Program program) {
 		if(program.getLanguage().getProcessor().toString().equals("68000")) {
 			funcsList = new FdFunctionsInLibs();
+			biasIndex = FdBiasIndex.build(funcsList, filter);
 			return true;
 		}
 		funcsList = null;
+		biasIndex = null;
 		return false;
 	}
 	
@@ -118,6 +120,9 @@ public class AmigaHunkAnalyzer extends AbstractAnalyzer {
 				filter.add(lib);
 			}
 		}
+		
+		// the call analysis looks functions up per instruction, so the filter is applied here once
+		biasIndex = FdBiasIndex.build(funcsList, filter);
 	}
 
 	@Override
@@ -127,9 +132,10 @@ public class AmigaHunkAnalyzer extends AbstractAnalyzer {
 		FlatProgramAPI fpa = new FlatProgramAPI(program);
 	
 		try {
-			var fdm = fpa.openDataTypeArchive(Application.getModuleDataFile("amiga_ndk39.gdt").getFile(false), true);
+			NdkArchive ndk = NdkArchive.getInstance();
+			
 			for(String lib : funcsList.getLibsList(filter)) {
-				createFunctionsSegment(fpa, fdm, lib, funcsList.getFunctionTableByLib(lib), log);
+				createFunctionsSegment(fpa, ndk, lib, funcsList.getFunctionTableByLib(lib), log);
 			}
 		} catch (Exception e) {
 			log.appendException(e);
@@ -163,7 +169,7 @@ public class AmigaHunkAnalyzer extends AbstractAnalyzer {
 		return true;
 	}
 	
-	private static DataType getAmigaDataType(String type, FileDataTypeManager fdm) {
+	private static DataType getAmigaDataType(String type, NdkArchive ndk) {
 		DataType dataType = PointerDataType.dataType;
 		type = type.replace("struct ", "");
 		type = type.replace("const ", "");
@@ -178,9 +184,7 @@ public class AmigaHunkAnalyzer extends AbstractAnalyzer {
 			} else if(word.equals("**")) {
 				dataType = new PointerDataType(new PointerDataType(dataType));
 			} else {
-				var list = new ArrayList<DataType>();
-				fdm.findDataTypes(word, list);
-				dataType = !list.isEmpty() ? list.get(0) : null;
+				dataType = ndk.get(word);
 				if(dataType == null)
 					System.out.println(word + " not found!");
 			}
@@ -188,7 +192,7 @@ public class AmigaHunkAnalyzer extends AbstractAnalyzer {
 		return dataType;
 	}
 
-	private static void createFunctionsSegment(FlatProgramAPI fpa, FileDataTypeManager fdm, String lib, FdLibFunctions funcs, MessageLog log) throws InvalidInputException, DuplicateNameException, CodeUnitInsertionException {
+	private static void createFunctionsSegment(FlatProgramAPI fpa, NdkArchive ndk, String lib, FdLibFunctions funcs, MessageLog log) throws InvalidInputException, DuplicateNameException, CodeUnitInsertionException {
 		if ((null == funcs) || (fpa.getMemoryBlock(lib) != null)) {
 			return;
 		}
@@ -223,12 +227,12 @@ public class AmigaHunkAnalyzer extends AbstractAnalyzer {
 			List<ParameterImpl> params = new ArrayList<>();
 			Program program = fpa.getCurrentProgram();
 			for (var arg : func.getArgs()) {
-				var dataType = getAmigaDataType(arg.type, fdm);
+				var dataType = getAmigaDataType(arg.type, ndk);
 				params.add(new ParameterImpl(arg.name, dataType, program.getRegister(arg.reg), program));
 			}
 
 			var retType = func.getReturnType();
-			var returnValue = retType.equals("VOID") ? new ReturnParameterImpl(VoidDataType.dataType, VariableStorage.VOID_STORAGE, program) : new ReturnParameterImpl(getAmigaDataType(retType, fdm), program.getRegister("D0"), program);
+			var returnValue = retType.equals("VOID") ? new ReturnParameterImpl(VoidDataType.dataType, VariableStorage.VOID_STORAGE, program) : new ReturnParameterImpl(getAmigaDataType(retType, ndk), program.getRegister("D0"), program);
 			function.updateFunction(null, returnValue, FunctionUpdateType.CUSTOM_STORAGE, true, SourceType.ANALYSIS, params.toArray(ParameterImpl[]::new));
 			DataUtilities.createData(program, funcAddress, new ArrayDataType(ByteDataType.dataType, 6, -1), -1, false, ClearDataMode.CLEAR_ALL_UNDEFINED_CONFLICT_DATA);
 		}
@@ -250,7 +254,7 @@ public class AmigaHunkAnalyzer extends AbstractAnalyzer {
 							if (val >= 0) {
 								return false;
 							}
-							FdFunction[] funcs = funcsList.getLibsFunctionsByBias(filter, val);
+							FdFunction[] funcs = biasIndex.get(val);
 							
 							for (FdFunction func : funcs) {
 								MemoryBlock libMemory = program.getMemory().getBlock(func.getLib());
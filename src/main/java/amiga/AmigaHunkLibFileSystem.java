@@ -22,18 +22,15 @@ import ghidra.formats.gfilesystem.factory.GFileSystemFactoryByteProvider;
 import ghidra.formats.gfilesystem.factory.GFileSystemProbeByteProvider;
 import ghidra.formats.gfilesystem.fileinfo.FileAttributeType;
 import ghidra.formats.gfilesystem.fileinfo.FileAttributes;
+import ghidra.util.Msg;
 import ghidra.util.exception.CancelledException;
 import ghidra.util.task.TaskMonitor;
-import hunk.HunkBlock;
 import hunk.HunkBlockFile;
 import hunk.HunkBlockType;
-import hunk.HunkNameBlock;
 import hunk.HunkParseError;
 import hunk.HunkType;
-import hunk.HunkUnitBlock;
-import hunk.HunkLibBlock;
+import hunk.HunkVisitor;
 import hunk.HunkIndexUnitEntry;
-import hunk.HunkIndexBlock;
 
 @FileSystemInfo(
 		type = "amigahunklibfile",
@@ -69,130 +66,155 @@ public class AmigaHunkLibFileSystem implements GFileSystem {
 		BinaryReader reader = new BinaryReader(provider, false);
 		
 		try {
-			HunkBlockFile hbf = new HunkBlockFile(reader, false);
+			LibIndexer indexer = new LibIndexer();
+			HunkBlockFile.accept(reader, false, indexer);
+			indexer.finish();
+		} catch (HunkParseError e) {
+			return;
+		}
+	}
+	
+	/**
+	 * Indexes units and lib members in a single pass over the file. A HUNK_END
+	 * closes its unit only when the next top level block is a HUNK_UNIT or
+	 * the file ends, otherwise it is counted into the unit size.
+	 */
+	private class LibIndexer implements HunkVisitor {
+		private String unitName = null, lastName = "";
+		private int unitOffset = 0;
+		private int unitSize = 0;
+		private int pendingEndSize = -1;
+		private int depth = 0;
+		private int firstLibUnitOffset = -1;
+		private int libSize = -1;
+		private int libBlockIndex = 0;
+		private final List<Pair<Integer, String>> offsetAndName = new ArrayList<>();
+		
+		@Override
+		public boolean onBlock(HunkType type, long offset) throws HunkParseError {
+			if (depth > 0) {
+				if (firstLibUnitOffset == -1) {
+					firstLibUnitOffset = (int)offset;
+				}
+				
+				Msg.debug(this, String.format("0x%08X - %s", offset, type.name()));
+				return true;
+			}
 			
-			String unitName = null, lastName = "";
-			int unitOffset = 0;
-			int unitSize = 0;
-			int[] firstLibUnitOffset = {-1};
-			HunkLibBlock libBlock = null;
-			int libBlockIndex = 0;
+			if (pendingEndSize != -1) {
+				if (type == HunkType.HUNK_UNIT) {
+					storeUnit();
+				} else {
+					unitSize += pendingEndSize;
+				}
+				
+				pendingEndSize = -1;
+			}
+			
+			if (type == HunkType.HUNK_LIB) {
+				depth++;
+			} else if (type == HunkType.HUNK_INDEX && libSize == -1) {
+				throw new HunkParseError("HUNK_INDEX doesn't contain corresponding HUNK_LIB block");
+			}
+			
+			return true;
+		}
+		
+		@Override
+		public void onUnit(String name) {
+			unitName = name;
+		}
+		
+		@Override
+		public void onName(String name) {
+			if (depth == 0) {
+				lastName = name;
+			}
+		}
+		
+		@Override
+		public void onIndexUnit(HunkIndexUnitEntry unitEntry) {
+			int offset = firstLibUnitOffset + unitEntry.getFirstHunkLongOff() * 4;
 			
-			final List<Pair<Integer, HunkBlock>> blocks = hbf.getHunkBlocks();
+			offsetAndName.add(new Pair<Integer, String>(offset, unitEntry.getName()));
 			
-			for (int i = 0; i < blocks.size(); ++i) {
-				HunkBlock bb = blocks.get(i).second;
-				HunkType type = bb.getHunkType();
-				int hunkOffset = blocks.get(i).first;
+			Msg.debug(this, String.format("HunkOffset: 0x%08X, Name: %s", offset, unitEntry.getName()));
+		}
+		
+		@Override
+		public void onBlockEnd(HunkType type, long offset, int size) {
+			if (type == HunkType.HUNK_LIB) {
+				depth--;
 				
-				switch (type) {
-				case HUNK_UNIT: {
-					unitOffset = hunkOffset;
-					unitSize = bb.getSize();
-					unitName = ((HunkUnitBlock)bb).getName();
-				} break;
-				case HUNK_LIB: {
-					for (Pair<Integer, HunkBlock> block : ((HunkLibBlock)bb).getHunkBlocks()) {
-						if (firstLibUnitOffset[0] == -1) {
-							firstLibUnitOffset[0] = block.first;
-						}
-						
-						System.out.println(String.format("0x%08X - %s", block.first, block.second.getClass().getSimpleName()));
-					}
-					
-					libBlock = (HunkLibBlock)bb;
+				if (depth == 0) {
+					libSize = size;
 					libBlockIndex++;
-				} break;
-				case HUNK_INDEX: {
-					if (libBlock == null) {
-						throw new HunkParseError("HUNK_INDEX doesn't contain corresponding HUNK_LIB block");
-					}
-					
-					List<Pair<Integer, String>> offsetAndName = new ArrayList<>();
-					
-					for (HunkIndexUnitEntry unitEntry : ((HunkIndexBlock)bb).getHunkIndexUnitEntries()) {
-						int offset = unitEntry.getFirstHunkLongOff() * 4;
-						
-//						final List<Pair<Integer, HunkBlock>> libHunkBlocks = libBlock.getHunkBlocks();
-//						
-//						Pair<Integer, HunkBlock> block = libHunkBlocks.stream().filter(e -> e.first == (firstLibUnitOffset[0] + offset)).findFirst().get();
-//						
-//						if (block == null) {
-//							throw new HunkParseError("Cannot find corresponding index block");
-//						}
-						
-						offsetAndName.add(new Pair<Integer, String>(firstLibUnitOffset[0] + offset, unitEntry.getName()));
-						
-						System.out.println(String.format("HunkOffset: 0x%08X, Name: %s", firstLibUnitOffset[0] + offset, unitEntry.getName()));
-						
-						// int subItemSiz = ((i + 1 == blocks.size()) || ((i + 1 < blocks.size()) && (blocks.get(i + 1).second.getHunkType() == HunkType.HUNK_UNIT)));
-						
-//						for (HunkIndexHunkEntry hunkEntry : unitEntry.getHunkIndexHunkEntries()) {
-//							System.out.println(String.format("Entry name: %s, Type: %s, Size: %d", hunkEntry.getName(), HunkType.fromInteger(hunkEntry.getHunkCtype()).name(), hunkEntry.getHunkLongs() * 4));
-//							
-//							for (HunkIndexSymbolDef symDef : hunkEntry.getSymDefs()) {
-//								System.out.println(String.format("Def name: %s, Value: %d, Type: %d", symDef.getName(), symDef.getValue(), symDef.getSymCtype()));
-//							}
-//							
-//							for (HunkIndexSymbolRef symRef : hunkEntry.getSymRefs()) {
-//								System.out.println(String.format("Ref name: %s, Width: %d", symRef.getName(), symRef.getWidth()));
-//							}
-//						}
-					}
-					
-					List<Pair<String, Pair<Integer, Integer>>> nameAndSizeOffset = new ArrayList<>();
-					
-					for (int j = 0; j < offsetAndName.size(); ++j) {
-						int offset1 = offsetAndName.get(j).first;
-						int offset2 = (j + 1 < offsetAndName.size()) ? offsetAndName.get(j + 1).first : (firstLibUnitOffset[0] + libBlock.getSize());
-						nameAndSizeOffset.add(new Pair<String, Pair<Integer, Integer>>(offsetAndName.get(j).second, new Pair<>(offset2 - offset1, offset1)));
-					}
-					
-					LibHunkItem item = new LibHunkItem();
-					item.name = String.format("LIB_%02d", libBlockIndex);
-					item.offset = firstLibUnitOffset[0];
-					item.size = libBlock.getSize() + bb.getSize();
-					
-					fsih.storeFile(item.name, -1, true, -1, item);
-					
-					for (Pair<String, Pair<Integer, Integer>> nameSizeOffset : nameAndSizeOffset) {
-						LibHunkItem subItem = new LibHunkItem();
-						
-						subItem.offset = nameSizeOffset.second.second;
-						subItem.name = nameSizeOffset.first;
-						subItem.size = nameSizeOffset.second.first;
-						
-						fsih.storeFile(String.format("%s/%s", item.name, subItem.name), fsih.getFileCount(), false, subItem.size, subItem);
-					}
-					
-					libBlock = null;
-					firstLibUnitOffset[0] = -1;
-				} break;
-				case HUNK_NAME: {
-					lastName = ((HunkNameBlock)bb).getName();
-					unitSize += bb.getSize();
-				} break;
-				case HUNK_END: {
-					if ((i + 1 == blocks.size()) || ((i + 1 < blocks.size()) && (blocks.get(i + 1).second.getHunkType() == HunkType.HUNK_UNIT))) { 
-						LibHunkItem item = new LibHunkItem();
-						
-						item.offset = unitOffset;
-						item.name = unitName.isEmpty() ? lastName : unitName;
-						item.size = unitSize + bb.getSize();
-						
-						fsih.storeFile(String.format("%04d_%s.o", fsih.getFileCount() + 1, item.name), fsih.getFileCount(), false, item.size, item);
-					} else {
-						unitSize += bb.getSize();
-					}
-				} break;
-				default: {
-					unitSize += bb.getSize();
-				} break;
 				}
+				return;
 			}
 			
-		} catch (HunkParseError e) {
-			return;
+			if (depth > 0) {
+				return;
+			}
+			
+			switch (type) {
+			case HUNK_UNIT: {
+				unitOffset = (int)offset;
+				unitSize = size;
+			} break;
+			case HUNK_INDEX: {
+				storeLib(size);
+			} break;
+			case HUNK_END: {
+				pendingEndSize = size;
+			} break;
+			default: {
+				unitSize += size;
+			} break;
+			}
+		}
+		
+		void finish() {
+			if (pendingEndSize != -1) {
+				storeUnit();
+				pendingEndSize = -1;
+			}
+		}
+		
+		private void storeUnit() {
+			LibHunkItem item = new LibHunkItem();
+			
+			item.offset = unitOffset;
+			item.name = (unitName == null || unitName.isEmpty()) ? lastName : unitName;
+			item.size = unitSize + pendingEndSize;
+			
+			fsih.storeFile(String.format("%04d_%s.o", fsih.getFileCount() + 1, item.name), fsih.getFileCount(), false, item.size, item);
+		}
+		
+		private void storeLib(int indexSize) {
+			LibHunkItem item = new LibHunkItem();
+			item.name = String.format("LIB_%02d", libBlockIndex);
+			item.offset = firstLibUnitOffset;
+			item.size = libSize + indexSize;
+			
+			fsih.storeFile(item.name, -1, true, -1, item);
+			
+			for (int j = 0; j < offsetAndName.size(); ++j) {
+				int offset1 = offsetAndName.get(j).first;
+				int offset2 = (j + 1 < offsetAndName.size()) ? offsetAndName.get(j + 1).first : (firstLibUnitOffset + libSize);
+				
+				LibHunkItem subItem = new LibHunkItem();
+				
+				subItem.offset = offset1;
+				subItem.name = offsetAndName.get(j).second;
+				subItem.size = offset2 - offset1;
+				
+				fsih.storeFile(String.format("%s/%s", item.name, subItem.name), fsih.getFileCount(), false, subItem.size, subItem);
+			}
+			
+			offsetAndName.clear();
+			libSize = -1;
+			firstLibUnitOffset = -1;
 		}
 	}
 
@@ -274,6 +296,8 @@ public class AmigaHunkLibFileSystem implements GFileSystem {
 	public static class AmigaHunkLibFileSystemFactory
 			implements GFileSystemFactoryByteProvider<AmigaHunkLibFileSystem>, GFileSystemProbeByteProvider {
 
+		private static final int MAX_PROBE_BLOCKS = 0x1000;
+
 		@Override
 		public AmigaHunkLibFileSystem create(FSRLRoot targetFSRL,
 				ByteProvider byteProvider, FileSystemService fsService, TaskMonitor monitor)
@@ -288,16 +312,47 @@ public class AmigaHunkLibFileSystem implements GFileSystem {
 		public boolean probe(ByteProvider byteProvider, FileSystemService fsService,
 				TaskMonitor monitor) throws IOException, CancelledException {
 			
-			if (!HunkBlockFile.isHunkBlockFile(new BinaryReader(byteProvider, false))) {
+			BinaryReader reader = new BinaryReader(byteProvider, false);
+			HunkBlockType hbtFirst = HunkBlockFile.probe(reader);
+			
+			if (hbtFirst != HunkBlockType.TYPE_LIB && hbtFirst != HunkBlockType.TYPE_UNIT) {
 				return false;
 			}
-
-			BinaryReader reader = new BinaryReader(byteProvider, false);
-			HunkBlockType hbtFirst = HunkBlockFile.peekType(reader);
-			HunkBlockFile hbf = new HunkBlockFile(reader, hbtFirst == HunkBlockType.TYPE_LOADSEG);
 			
-			long unitsCount = hbf.getHunkBlocks().stream().filter(e -> ((e.second.getHunkType() == HunkType.HUNK_UNIT) || (e.second.getHunkType() == HunkType.HUNK_LIB))).count();
-			return ((hbtFirst == HunkBlockType.TYPE_LIB || hbtFirst == HunkBlockType.TYPE_UNIT) && unitsCount > 1);
+			// stop walking as soon as a second unit or lib shows up, or after a bounded number
+			// of blocks: segment payloads are skipped by their size, so a large first unit still counts
+			int[] unitsCount = {0};
+			
+			HunkBlockFile.accept(reader, false, new HunkVisitor() {
+				private int depth = 0;
+				private int blocks = 0;
+				
+				@Override
+				public boolean onBlock(HunkType type, long offset) {
+					if (++blocks > MAX_PROBE_BLOCKS) {
+						return false;
+					}
+					
+					if (depth == 0 && (type == HunkType.HUNK_UNIT || type == HunkType.HUNK_LIB)) {
+						unitsCount[0]++;
+					}
+					
+					if (type == HunkType.HUNK_LIB) {
+						depth++;
+					}
+					
+					return unitsCount[0] <= 1;
+				}
+				
+				@Override
+				public void onBlockEnd(HunkType type, long offset, int size) {
+					if (type == HunkType.HUNK_LIB) {
+						depth--;
+					}
+				}
+			});
+			
+			return unitsCount[0] > 1;
 		}
 	}
 
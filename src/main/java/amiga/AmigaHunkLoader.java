@@ -17,11 +17,17 @@ package amiga;
 
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import ghidra.app.plugin.core.reloc.InstructionStasher;
 import ghidra.app.util.Option;
@@ -33,48 +39,67 @@ import ghidra.app.util.importer.MessageLog;
 import ghidra.app.util.opinion.AbstractLibrarySupportLoader;
 import ghidra.app.util.opinion.LoadSpec;
 import ghidra.app.util.opinion.Loader;
-import ghidra.framework.Application;
 import ghidra.framework.model.DomainObject;
 import ghidra.program.flatapi.FlatProgramAPI;
 import ghidra.program.model.address.Address;
 import ghidra.program.model.data.DWordDataType;
-import ghidra.program.model.data.DataUtilities;
-import ghidra.program.model.data.DataUtilities.ClearDataMode;
+import ghidra.program.model.data.DataType;
+import ghidra.program.model.data.Undefined;
 import ghidra.program.model.lang.Language;
 import ghidra.program.model.lang.LanguageCompilerSpecPair;
 import ghidra.program.model.lang.LanguageNotFoundException;
+import ghidra.program.model.lang.Register;
+import ghidra.program.model.listing.CodeUnit;
+import ghidra.program.model.listing.Function;
+import ghidra.program.model.listing.Function.FunctionUpdateType;
+import ghidra.program.model.listing.Listing;
+import ghidra.program.model.listing.Parameter;
+import ghidra.program.model.listing.ParameterImpl;
 import ghidra.program.model.listing.Program;
+import ghidra.program.model.listing.VariableStorage;
 import ghidra.program.model.mem.Memory;
 import ghidra.program.model.mem.MemoryAccessException;
 import ghidra.program.model.mem.MemoryBlock;
+import ghidra.program.model.pcode.Varnode;
+import ghidra.program.model.reloc.Relocation.Status;
+import ghidra.program.model.reloc.RelocationTable;
 import ghidra.program.model.symbol.SourceType;
-import ghidra.program.model.symbol.Symbol;
-import ghidra.program.model.symbol.SymbolTable;
 import ghidra.program.model.util.CodeUnitInsertionException;
+import ghidra.util.exception.DuplicateNameException;
+import ghidra.util.exception.InvalidInputException;
 import ghidra.util.task.TaskMonitor;
 import hunk.BinFmtHunk;
 import hunk.BinImage;
+import hunk.Decrunchers;
 import hunk.HunkBlockFile;
 import hunk.HunkBlockType;
+import hunk.HunkDebugLine;
+import hunk.HunkDebugStabs;
 import hunk.HunkParseError;
-import hunk.Reloc;
+import hunk.HunkType;
+import hunk.LinkMap;
+import hunk.OverlayManager;
+import hunk.OverlayNode;
+import hunk.RelocIndex;
+import hunk.RelocTable;
 import hunk.Relocate;
 import hunk.Segment;
 import hunk.SegmentType;
 import hunk.XDefinition;
 import hunk.XReference;
+import hunk.XReferenceType;
 
 public class AmigaHunkLoader extends AbstractLibrarySupportLoader {
 	public static final int DEF_IMAGE_BASE = 0x21F000;
 
 	static final String OPTION_NAME = "ImageBase";
+	public static final String OVERLAY_IMAGE_BASE = "Hunk Overlay Image Base";
+	public static final String HUNK_EXECUTABLE = "Hunk Executable";
 	public static Address imageBase = null;
 
 	static final String defsSegmName = "DEFS";
 	static final String refsSegmName = "REFS";
 	static final int defsSegmImageBaseOffset = 0x10000;
-	static int refsLastIndex = 0;
-	static int defsLastIndex = 0;
 
 	@Override
 	public String getName() {
@@ -89,8 +114,13 @@ public class AmigaHunkLoader extends AbstractLibrarySupportLoader {
 	public Collection<LoadSpec> findSupportedLoadSpecs(ByteProvider provider) {
 		List<LoadSpec> loadSpecs = new ArrayList<>();
 		try {
-			if(HunkBlockFile.isHunkBlockFile(new BinaryReader(provider, false)))
-				loadSpecs.add(new LoadSpec(this, 0, new LanguageCompilerSpecPair("68000:BE:32:default", "default"), true));
+			LanguageCompilerSpecPair lcs = new LanguageCompilerSpecPair("68000:BE:32:default", "default");
+			
+			// packed files are only recognised by their header, load fails when they don't unpack to a hunk file
+			if(HunkBlockFile.probe(new BinaryReader(provider, false)) != HunkBlockType.TYPE_UNKNOWN)
+				loadSpecs.add(new LoadSpec(this, 0, lcs, true));
+			else if(Decrunchers.identify(provider) != null)
+				loadSpecs.add(new LoadSpec(this, 0, lcs, false));
 		} catch(Exception e) {
 		}
 
@@ -99,36 +129,33 @@ public class AmigaHunkLoader extends AbstractLibrarySupportLoader {
 
 	@Override
 	protected void load(ByteProvider provider, LoadSpec loadSpec, List<Option> options, Program program, TaskMonitor monitor, MessageLog log) throws IOException {
-		refsLastIndex = 0;
-		defsLastIndex = 0;
-		
 		FlatProgramAPI fpa = new FlatProgramAPI(program);
 		Memory mem = program.getMemory();
 
+		provider = Decrunchers.unpack(provider, log);
 		BinaryReader reader = new BinaryReader(provider, false);
 
 		// executable
 		HunkBlockType type = HunkBlockFile.peekType(reader);
-		HunkBlockFile hbf = new HunkBlockFile(reader, type == HunkBlockType.TYPE_LOADSEG);
 		switch (type) {
 		case TYPE_LOADSEG: 
 		case TYPE_UNIT:
+		case TYPE_LIB:
 			try {
-				loadExecutable(imageBase, type == HunkBlockType.TYPE_LOADSEG, hbf, fpa, monitor, mem, log);
+				loadExecutable(imageBase, type == HunkBlockType.TYPE_LOADSEG, provider, fpa, monitor, mem, log);
 			} catch (Throwable e) {
 				e.printStackTrace();
 				log.appendException(e);
 			}
 		break;
-		case TYPE_LIB:
-		break;
 		default:
-		break;
+			// packed files are offered by their header alone
+			throw new IOException(String.format("%s doesn't unpack to a hunk file", provider.getName()));
 		}
 	}
 
-	private static void loadExecutable(Address imageBase, boolean isExecutable, HunkBlockFile hbf, FlatProgramAPI fpa, TaskMonitor monitor, Memory mem, MessageLog log) throws Throwable {
-		BinImage bi = BinFmtHunk.loadImage(hbf, log);
+	private static void loadExecutable(Address imageBase, boolean isExecutable, ByteProvider provider, FlatProgramAPI fpa, TaskMonitor monitor, Memory mem, MessageLog log) throws Throwable {
+		BinImage bi = BinFmtHunk.loadImage(provider, log);
 		
 		if (bi == null) {
 			return;
@@ -146,6 +173,15 @@ public class AmigaHunkLoader extends AbstractLibrarySupportLoader {
 			return;
 		}
 		
+		log.appendMsg(String.format("Relocated %s", rel.getStats()));
+		
+		try (LoadPipeline pipe = new LoadPipeline(fpa, "Load hunk file", log)) {
+			loadImage(bi, _imageBase, addrs, rel, datas, isExecutable, provider, pipe, mem, log);
+		}
+	}
+	
+	private static void loadImage(BinImage bi, int _imageBase, int[] addrs, Relocate rel, List<byte[]> datas, boolean isExecutable, ByteProvider provider, LoadPipeline pipe, Memory mem, MessageLog log) throws Throwable {
+		FlatProgramAPI fpa = pipe.getFlatApi();
 		int lastSectAddress = 0;
 
 		for (Segment seg : bi.getSegments()) {
@@ -156,93 +192,384 @@ public class AmigaHunkLoader extends AbstractLibrarySupportLoader {
 				lastSectAddress = segOffset + size;
 			}
 
-			ByteArrayInputStream segBytes = new ByteArrayInputStream(datas.get(seg.getId()));
-
-			if (segBytes.available() == 0) {
+			if (size == 0) {
 				continue;
 			}
 
+			byte[] relocated = datas.get(seg.getId());
+			InputStream segBytes = (relocated != null) ? new ByteArrayInputStream(relocated) : seg.getDataStream();
+
 			boolean exec = seg.getType() == SegmentType.SEGMENT_TYPE_CODE;
 			boolean write = seg.getType() == SegmentType.SEGMENT_TYPE_DATA;
 
-			AmigaUtils.createSegment(segBytes, fpa, seg.getName(), segOffset, size, write, exec, log);
-			relocateSegment(seg, segOffset, datas, mem, fpa, log);
+			pipe.createBlock(seg.getName(), segOffset, segBytes, size, write, exec);
+			
+			if (relocated != null) {
+				recordRelocations(seg, segOffset, relocated, rel, fpa);
+			}
 		}
 		
-		for (Segment seg : bi.getSegments()) {
-			int segOffset = addrs[seg.getId()];
-
-			applySegmentDefs(seg, segOffset, fpa, fpa.getCurrentProgram().getSymbolTable(), log, lastSectAddress);
-		}
+		applyExternals(bi.getSegments(), addrs, pipe, log, lastSectAddress);
 		
 		Address startAddr = fpa.toAddr(addrs[0]);
 		
-		var fdm = fpa.openDataTypeArchive(Application.getModuleDataFile("amiga_ndk39.gdt").getFile(false), true);
-		AmigaUtils.createExecBaseSegment(fpa, fdm, log);
-		AmigaUtils.createCustomSegment(fpa, fdm, log);
+		NdkArchive ndk = NdkArchive.getInstance();
+		AmigaUtils.createExecBaseSegment(pipe, ndk, log);
+		AmigaUtils.createCustomSegment(pipe, ndk, log);
 		AmigaUtils.addTypes(fpa.getCurrentProgram(), log);
-		AmigaUtils.analyzeResident(mem, fpa, fdm, startAddr, log);
+		
+		// the resident scan creates its data and functions directly, what is staged goes in first
+		pipe.commit();
+		AmigaUtils.analyzeResident(mem, fpa, ndk, startAddr, log);
 		
 		if(isExecutable)
-			AmigaUtils.setFunction(fpa, startAddr, "start", log);
+			pipe.addFunction(startAddr, "start");
+		
+		addSymbols(bi.getSegments(), pipe, addrs);
+		pipe.commit();
+		applyLineTables(bi.getSegments(), addrs, fpa);
+		applyStabs(bi.getSegments(), addrs, fpa, log);
+		
+		// HUNK_DREL32 is absolute only in executables, the rebase has to know which it got
+		fpa.getCurrentProgram().getOptions(Program.PROGRAM_INFO).setBoolean(HUNK_EXECUTABLE, bi.isExecutable());
+		
+		if (bi.hasOverlays()) {
+			fpa.getCurrentProgram().getOptions(Program.PROGRAM_INFO).setInt(OVERLAY_IMAGE_BASE, _imageBase);
+			
+			log.appendMsg(String.format("%d overlay nodes not loaded, use LoadHunkOverlay.java to load them", new OverlayManager(provider, bi).getNodes().length));
+		}
+	}
+	
+	/**
+	 * Loads the segments of an overlay node and of its ancestors into overlay blocks
+	 * placed after the root segments, the level 1 node first. A node that is already
+	 * loaded is left as it is.
+	 * 
+	 * @param root the root image the overlays belong to
+	 * @param imageBase the image base the root was loaded at
+	 */
+	public static List<MemoryBlock> loadOverlayNode(Program program, BinImage root, OverlayManager overlays, OverlayNode node, int imageBase, TaskMonitor monitor, MessageLog log) throws HunkParseError {
+		Memory mem = program.getMemory();
+		List<MemoryBlock> blocks = new ArrayList<>();
+		
+		Relocate rootRel = new Relocate(root);
+		int[] rootAddrs = rootRel.getSeqAddresses(imageBase);
+		int dataBase = rootRel.getDataBase(rootAddrs);
+		int nodeBase = imageBase;
+		
+		for (Segment seg : root.getSegments()) {
+			nodeBase = Math.max(nodeBase, rootAddrs[seg.getId()] + seg.getSize());
+		}
+		
+		int[] addrs = overlays.getAddresses(node, rootAddrs, (nodeBase + 3) & ~3);
+		
+		for (OverlayNode pathNode : overlays.getPath(node)) {
+			for (Segment seg : overlays.getSegments(pathNode)) {
+				String name = String.format("%s_%s", pathNode.getName(), seg.getName());
+				
+				if (mem.getBlock(name) != null || seg.getSize() == 0) {
+					continue;
+				}
+				
+				byte[] relocated = Relocate.relocate(seg, addrs, dataBase);
+				int transId = program.startTransaction(String.format("Load overlay %s", name));
+				
+				try {
+					InputStream segBytes = (relocated != null) ? new ByteArrayInputStream(relocated) : seg.getDataStream();
+					Address start = program.getAddressFactory().getDefaultAddressSpace().getAddress(addrs[seg.getId()]);
+					MemoryBlock block = mem.createInitializedBlock(name, start, segBytes, seg.getSize(), monitor, true);
+					
+					block.setRead(true);
+					block.setWrite(seg.getType() == SegmentType.SEGMENT_TYPE_DATA);
+					block.setExecute(seg.getType() == SegmentType.SEGMENT_TYPE_CODE);
+					
+					for (hunk.Symbol symbol : seg.getSymbols(seg)) {
+						program.getSymbolTable().createLabel(block.getStart().add(symbol.getOffset()), symbol.getName(), SourceType.IMPORTED);
+					}
+					
+					blocks.add(block);
+				} catch (Exception e) {
+					log.appendException(e);
+				} finally {
+					program.endTransaction(transId, true);
+				}
+			}
+		}
 		
-		addSymbols(bi.getSegments(), fpa.getCurrentProgram().getSymbolTable(), addrs, fpa);
+		return blocks;
 	}
 
-	private static void addSymbols(Segment segs[], SymbolTable st, int addrs[], FlatProgramAPI fpa) throws Throwable {
+	/**
+	 * Puts the source position of every LINE debug entry into an EOL comment, in a single transaction.
+	 */
+	private static void applyLineTables(Segment segs[], int addrs[], FlatProgramAPI fpa) {
+		Program program = fpa.getCurrentProgram();
+		Listing listing = program.getListing();
+		int transId = program.startTransaction("Apply source lines");
+		
+		try {
+			for (Segment seg : segs) {
+				for (HunkDebugLine lines : seg.getLineTables()) {
+					for (int i = 0; i < lines.size(); ++i) {
+						int offset = lines.getOffset(i);
+						
+						if (offset < 0 || offset >= seg.getSize()) {
+							continue;
+						}
+						
+						listing.setComment(fpa.toAddr(addrs[seg.getId()] + offset), CodeUnit.EOL_COMMENT, String.format("%s:%d", lines.getSourceFile(), lines.getLine(i)));
+					}
+				}
+			}
+		} finally {
+			program.endTransaction(transId, true);
+		}
+	}
+
+	/**
+	 * Names the functions listed by the N_FUN stabs of the segments, their values are segment offsets.
+	 */
+	private static void applyStabs(Segment segs[], int addrs[], FlatProgramAPI fpa, MessageLog log) {
+		Program program = fpa.getCurrentProgram();
+		int transId = program.startTransaction("Apply stabs");
+		
+		try {
+			for (Segment seg : segs) {
+				for (HunkDebugStabs stabs : seg.getStabs()) {
+					StabsTypes types;
+					List<HunkDebugStabs.Stab> functions;
+					
+					try {
+						types = new StabsTypes(stabs, program.getDataTypeManager());
+						functions = stabs.getFunctions();
+					} catch (IOException e) {
+						log.appendMsg(String.format("Can't read the stabs of segment %d: %s", seg.getId(), e.getMessage()));
+						continue;
+					}
+					
+					for (HunkDebugStabs.Stab fn : functions) {
+						int offset = fn.getValue();
+						
+						if (offset < 0 || offset >= seg.getSize()) {
+							continue;
+						}
+						
+						// one function that can't be applied doesn't stop the others
+						try {
+							applyFunction(fpa.toAddr(addrs[seg.getId()] + offset), fn, stabs, types, fpa);
+						} catch (IOException | InvalidInputException | DuplicateNameException e) {
+							log.appendMsg(String.format("Can't apply the stabs of %s: %s", fn.getName(), e.getMessage()));
+						}
+					}
+				}
+			}
+		} finally {
+			program.endTransaction(transId, true);
+		}
+	}
+	
+	private static void applyFunction(Address addr, HunkDebugStabs.Stab fn, HunkDebugStabs stabs, StabsTypes types, FlatProgramAPI fpa) throws IOException, InvalidInputException, DuplicateNameException {
+		fpa.getCurrentProgram().getSymbolTable().createLabel(addr, fn.getName(), SourceType.IMPORTED);
+		
+		Function func = fpa.getFunctionAt(addr);
+		
+		if (func == null) {
+			func = fpa.createFunction(addr, fn.getName());
+		}
+		
+		if (func != null) {
+			applySignature(func, fn, stabs.getParameters(fn), types);
+		}
+	}
+	
+	/**
+	 * Gives a function the return and parameter types of its stabs. Stack parameters
+	 * keep the storage of the calling convention, a function taking parameters in
+	 * registers gets custom storage with the stack ones at their frame offsets.
+	 */
+	private static void applySignature(Function func, HunkDebugStabs.Stab fn, List<HunkDebugStabs.Stab> stabParams, StabsTypes types) throws IOException, InvalidInputException, DuplicateNameException {
+		Program program = func.getProgram();
+		boolean custom = false;
+		
+		for (HunkDebugStabs.Stab param : stabParams) {
+			custom |= param.isRegisterParameter();
+		}
+		
+		List<Parameter> params = new ArrayList<>();
+		
+		for (HunkDebugStabs.Stab param : stabParams) {
+			DataType dt = types.getType(param);
+			
+			if (dt == null || dt.getLength() <= 0) {
+				dt = Undefined.getUndefinedDataType(4);
+			}
+			
+			if (!custom) {
+				params.add(new ParameterImpl(param.getName(), dt, program));
+			} else if (param.isRegisterParameter()) {
+				params.add(new ParameterImpl(param.getName(), dt, getRegisterStorage(program, param.getValue(), dt.getLength()), program));
+			} else {
+				// the value is the offset from the frame pointer, the return address is 4 bytes below the first parameter
+				params.add(new ParameterImpl(param.getName(), dt, param.getValue() - 4, program));
+			}
+		}
+		
+		DataType ret = types.getType(fn);
+		
+		if (ret == null) {
+			ret = func.getReturnType();
+		}
+		
+		if (custom) {
+			func.setCustomVariableStorage(true);
+			func.setReturn(ret, program.getCompilerSpec().getDefaultCallingConvention().getReturnLocation(ret, program), SourceType.IMPORTED);
+			func.replaceParameters(params, FunctionUpdateType.CUSTOM_STORAGE, true, SourceType.IMPORTED);
+		} else {
+			func.setReturnType(ret, SourceType.IMPORTED);
+			func.replaceParameters(params, FunctionUpdateType.DYNAMIC_STORAGE_ALL_PARAMS, true, SourceType.IMPORTED);
+		}
+	}
+	
+	/**
+	 * Returns the low {@code length} bytes of a register by stabs number, D0-D7 are 0-7 and A0-A7 are 8-15.
+	 */
+	private static VariableStorage getRegisterStorage(Program program, int regNum, int length) throws InvalidInputException {
+		Register reg = (regNum >= 0 && regNum < 16) ? program.getRegister(String.format("%s%d", (regNum < 8) ? "D" : "A", regNum & 7)) : null;
+		
+		if (reg == null || length > reg.getMinimumByteSize()) {
+			throw new InvalidInputException(String.format("No register %d for a %d byte parameter", regNum, length));
+		}
+		
+		return new VariableStorage(program, new Varnode(reg.getAddress().add(reg.getMinimumByteSize() - length), length));
+	}
+	
+	private static void addSymbols(Segment segs[], LoadPipeline pipe, int addrs[]) throws Throwable {
+		FlatProgramAPI fpa = pipe.getFlatApi();
 		for (Segment seg : segs) {
 			hunk.Symbol[] symbols = seg.getSymbols(seg);
 			if(symbols.length > 0) {
 				for(hunk.Symbol symbol : symbols) {
 					String name = symbol.getName();
 					int offset = symbol.getOffset();
-					st.createLabel(fpa.toAddr(addrs[seg.getId()]+offset), name, SourceType.IMPORTED);
+					pipe.addLabel(fpa.toAddr(addrs[seg.getId()]+offset), name, SourceType.IMPORTED);
 				}
 			}
 		}
 	}
 
-	private static void relocateSegment(Segment seg, int segOffset, final List<byte[]> datas, Memory mem, FlatProgramAPI fpa, MessageLog log) {
-		Segment[] toSegs = seg.getRelocationsToSegments();
-
-		for (Segment toSeg : toSegs) {
-			Reloc[] reloc = seg.getRelocations(toSeg);
-
-			for (Reloc r : reloc) {
-				int dataOffset = r.getOffset();
-
-				ByteBuffer buf = ByteBuffer.wrap(datas.get(seg.getId()));
-				int newAddr = 0;
+	/**
+	 * Records the relocations of a segment whose block was created from its relocated
+	 * bytes, the memory itself is not written again. The original bytes are sliced
+	 * from the copy the relocation kept.
+	 */
+	private static void recordRelocations(Segment seg, int segOffset, byte[] relocated, Relocate rel, FlatProgramAPI fpa) {
+		RelocIndex relocs = seg.getRelocIndex();
+		RelocationTable table = fpa.getCurrentProgram().getRelocationTable();
+
+		ByteBuffer buf = ByteBuffer.wrap(relocated);
+		byte[] original = rel.getOriginal(seg);
+
+		for (int t = 0; t < relocs.getTargets().length; ++t) {
+			for (RelocTable run : relocs.getTables(t)) {
+				int type = run.getType().getValue();
+				int width = run.getWidth();
 				
-				try {
-					switch (r.getWidth()) {
+				for (int i = 0; i < run.size(); ++i) {
+					int dataOffset = run.getOffset(i);
+					long value;
+					
+					switch (width) {
 					case 4:
-						newAddr = buf.getInt(dataOffset) + r.getAddend();
+						value = buf.getInt(dataOffset);
 						break;
 					case 2:
-						newAddr = buf.getShort(dataOffset) + r.getAddend();
+						value = buf.getShort(dataOffset);
 						break;
-					case 1:
-						newAddr = buf.get(dataOffset) + r.getAddend();
+					default:
+						value = buf.get(dataOffset);
 						break;
 					}
-					patchReference(mem, fpa.toAddr(segOffset + dataOffset), newAddr, r.getWidth());
-				} catch (MemoryAccessException | CodeUnitInsertionException e) {
-					log.appendException(e);
-					return;
+					
+					byte[] bytes = Arrays.copyOfRange(original, dataOffset, dataOffset + width);
+					// an 8 or 16 bit value that didn't fit is left as it was in the file
+					Status status = rel.isOverflow(seg, dataOffset) ? Status.FAILURE : Status.APPLIED;
+					table.add(fpa.toAddr(segOffset + dataOffset), status, type, new long[] { value }, bytes, null);
 				}
 			}
 		}
 	}
 	
-	private static void applySegmentDefs(Segment seg, int segOffset, FlatProgramAPI fpa, SymbolTable st, MessageLog log, int lastSectAddress) throws Throwable {
-		if (seg.getSegmentInfo().getDefinitions() == null) {
+	/**
+	 * Labels the definitions of all segments, then creates the DEFS and REFS blocks
+	 * once at their final sizes and patches the references. Names are resolved
+	 * through one map built here, the symbol table is not queried per site.
+	 */
+	private static void applyExternals(Segment segs[], int addrs[], LoadPipeline pipe, MessageLog log, int lastSectAddress) throws Throwable {
+		FlatProgramAPI fpa = pipe.getFlatApi();
+		Memory mem = fpa.getCurrentProgram().getMemory();
+		Map<String, Integer> resolved = new HashMap<>();
+		Map<String, Integer> defsValues = new LinkedHashMap<>();
+		LinkMap linkMap = LinkMap.build(segs);
+		
+		// the first global definition wins across units, local labels only fill the gaps
+		for (String name : linkMap.getNames()) {
+			if (linkMap.getSegment(name) != null) {
+				resolved.put(name, linkMap.getAddress(name, addrs));
+			}
+		}
+		
+		for (Segment seg : segs) {
+			applySegmentDefs(seg, addrs[seg.getId()], pipe, resolved, defsValues);
+		}
+		
+		defsValues.keySet().removeAll(resolved.keySet());
+		createDefsBlock(mem, pipe, defsValues, resolved);
+		
+		Set<String> refsNames = new LinkedHashSet<>();
+		
+		for (Segment seg : segs) {
+			if (seg.getReferences() == null) {
+				continue;
+			}
+			
+			for (final XReference entry : seg.getReferences()) {
+				if (!resolved.containsKey(entry.getName())) {
+					refsNames.add(entry.getName());
+				}
+			}
+		}
+		
+		if (!linkMap.getUnresolved().isEmpty()) {
+			log.appendMsg(String.format("Unresolved external references: %d", linkMap.getUnresolved().size()));
+		}
+		
+		createRefsBlock(mem, pipe, refsNames, lastSectAddress, resolved);
+		
+		// no instructions exist yet, so the sites are patched without stashing any
+		for (Segment seg : segs) {
+			applySegmentRefs(seg, addrs[seg.getId()], fpa, resolved, lastSectAddress);
+		}
+		
+		Integer startup = resolved.get("___startup");
+		
+		if (startup != null && mem.contains(fpa.toAddr(startup))) {
+			pipe.addFunction(fpa.toAddr(startup), "___startup");
+		}
+	}
+	
+	/**
+	 * Labels the definitions inside the loaded memory, the values of the others are
+	 * collected into {@code defsValues} for the DEFS block.
+	 */
+	private static void applySegmentDefs(Segment seg, int segOffset, LoadPipeline pipe, Map<String, Integer> resolved, Map<String, Integer> defsValues) throws Throwable {
+		if (seg.getDefinitions() == null) {
 			return;
 		}
 		
+		FlatProgramAPI fpa = pipe.getFlatApi();
 		Memory mem = fpa.getCurrentProgram().getMemory();
 		
-		for (final XDefinition entry : seg.getSegmentInfo().getDefinitions()) {
+		for (final XDefinition entry : seg.getDefinitions()) {
 			Address defAddr = fpa.toAddr(entry.getOffset());
 			
 			if (!entry.isAbsolute()) {
@@ -250,138 +577,134 @@ public class AmigaHunkLoader extends AbstractLibrarySupportLoader {
 			}
 			
 			if (mem.contains(defAddr)) {
-				st.createLabel(defAddr, entry.getName(), SourceType.USER_DEFINED);
-				
-				if (entry.getName().equals("___startup")) {
-					AmigaUtils.setFunction(fpa, defAddr, entry.getName(), log);
-				}
+				pipe.addLabel(defAddr, entry.getName(), SourceType.USER_DEFINED);
+				resolved.putIfAbsent(entry.getName(), (int) defAddr.getOffset());
 			} else {
-				addDefinition(mem, fpa, st, entry.getName(), entry.getOffset());
+				defsValues.putIfAbsent(entry.getName(), entry.getOffset());
 			}
 		}
-		
-		if (seg.getSegmentInfo().getReferences() == null) {
+	}
+	
+	/**
+	 * Patches all sites of each reference, the value of the symbol is looked up once.
+	 * Before any code is disassembled the sites are patched in a copy of the segment
+	 * and the changed range is written back with a single call.
+	 */
+	private static void applySegmentRefs(Segment seg, int segOffset, FlatProgramAPI fpa, Map<String, Integer> resolved, int lastSectAddress) throws Throwable {
+		if (seg.getReferences() == null || seg.getReferences().isEmpty()) {
 			return;
 		}
 		
-		for (final XReference entry : seg.getSegmentInfo().getReferences()) {
-			for (Integer offset : entry.getOffsets()) {
-				Address fromAddr = fpa.toAddr(segOffset + offset);
-				int newAddr = 0;
+		Program program = fpa.getCurrentProgram();
+		Memory mem = program.getMemory();
+		boolean hasCode = program.getListing().getNumInstructions() > 0;
+		byte[] contents = null;
+		int dirtyStart = Integer.MAX_VALUE;
+		int dirtyEnd = 0;
+		
+		if (!hasCode && seg.getSize() > 0) {
+			contents = new byte[seg.getSize()];
+			mem.getBytes(fpa.toAddr(segOffset), contents);
+		}
+		
+		for (final XReference entry : seg.getReferences()) {
+			int symAddr = resolved.getOrDefault(entry.getName(), 0);
+			int width = entry.getWidth();
+			List<Integer> offsets = entry.getOffsets();
+			byte[] bytes = new byte[width];
+			
+			for (int i = 0; i < offsets.size(); ++i) {
+				int siteAddr = segOffset + offsets.get(i);
+				int value;
 				
 				switch (entry.getType()) {
-				case R_ABS: {
-					newAddr = addReference(mem, fpa, st, entry.getName(), lastSectAddress);
-					patchReference(mem, fromAddr, newAddr, entry.getWidth());
-				} break;
-				case R_SD: {
-					newAddr = addReference(mem, fpa, st, entry.getName(), lastSectAddress);
-					patchReference(mem, fromAddr, (int) (newAddr - lastSectAddress), entry.getWidth());
-				} break;
-				case R_PC: {
-					newAddr = addReference(mem, fpa, st, entry.getName(), lastSectAddress);
-					patchReference(mem, fromAddr, (int) (newAddr - fromAddr.getOffset()), entry.getWidth());
-				} break;
+				case R_SD:
+					value = symAddr - lastSectAddress;
+					break;
+				case R_PC:
+					value = symAddr - siteAddr;
+					break;
+				default:
+					value = symAddr;
+					break;
 				}
 				
+				for (int j = 0; j < width; ++j) {
+					bytes[j] = (byte) (value >> ((width - 1 - j) * 8));
+				}
+				
+				Address fromAddr = fpa.toAddr(siteAddr);
+				int offset = offsets.get(i);
+				
+				if (contents != null && offset >= 0 && offset + width <= contents.length) {
+					System.arraycopy(bytes, 0, contents, offset, width);
+					dirtyStart = Math.min(dirtyStart, offset);
+					dirtyEnd = Math.max(dirtyEnd, offset + width);
+				} else {
+					patchReference(mem, fromAddr, bytes, hasCode);
+				}
+				
+				if (entry.getType() == XReferenceType.R_ABS && width == 4) {
+					// recorded so a rebase moves it along with the REFS block
+					program.getRelocationTable().add(fromAddr, Status.APPLIED, HunkType.HUNK_ABSRELOC32.getValue(), new long[] { symAddr }, null, entry.getName());
+				}
 			}
 		}
-	}
-	
-	private static void patchReference(Memory mem, Address fromAddr, int toAddr, int width) throws MemoryAccessException, CodeUnitInsertionException {
-		InstructionStasher instructionStasher = new InstructionStasher(mem.getProgram(), fromAddr);
-		switch (width) {
-		case 4:
-			mem.setBytes(fromAddr, intToBytes(toAddr));
-			break;
-		case 2:
-			mem.setBytes(fromAddr, shortToBytes((short) toAddr));
-			break;
-		case 1:
-			mem.setBytes(fromAddr, new byte[] {(byte) toAddr});
-			break;
-		}
-		instructionStasher.restore();
-	}
-
-	private static int addReference(Memory mem, FlatProgramAPI fpa, SymbolTable st, String name, int lastSectAddress) throws Throwable {
-		List<Symbol> syms = st.getGlobalSymbols(name);
 		
-		if (syms.size() > 0) {
-			return (int) syms.get(0).getAddress().getOffset();
+		if (dirtyStart < dirtyEnd) {
+			mem.setBytes(fpa.toAddr(segOffset + dirtyStart), contents, dirtyStart, dirtyEnd - dirtyStart);
 		}
-		
-		MemoryBlock block = mem.getBlock(refsSegmName);
-		
-		if (block == null) {
-			int transId = mem.getProgram().startTransaction(String.format("Create %s block", refsSegmName));
-			block = mem.createUninitializedBlock(refsSegmName, fpa.toAddr(lastSectAddress), 4, false);
-			mem.getProgram().endTransaction(transId, true);
-		}
-		
-		Address newAddress = block.getStart().add(refsLastIndex * 4);
-		expandBlockByDword(mem, block, newAddress, false);
-		
-		st.createLabel(newAddress, name, SourceType.IMPORTED);
-		refsLastIndex++;
-		
-		return (int) newAddress.getOffset();
 	}
 	
-	private static int addDefinition(Memory mem, FlatProgramAPI fpa, SymbolTable st, String name, int value) throws Throwable {
-		List<Symbol> syms = st.getGlobalSymbols(name);
-		
-		if (syms.size() > 0) {
-			return (int) syms.get(0).getAddress().getOffset();
+	private static void patchReference(Memory mem, Address fromAddr, byte[] bytes, boolean hasCode) throws MemoryAccessException, CodeUnitInsertionException {
+		if (!hasCode || mem.getProgram().getListing().getInstructionContaining(fromAddr) == null) {
+			mem.setBytes(fromAddr, bytes);
+			return;
 		}
 		
-		MemoryBlock block = mem.getBlock(defsSegmName);
+		InstructionStasher instructionStasher = new InstructionStasher(mem.getProgram(), fromAddr);
+		mem.setBytes(fromAddr, bytes);
+		instructionStasher.restore();
+	}
 
-		if (block == null) {
-			int transId = mem.getProgram().startTransaction(String.format("Create %s block", defsSegmName));
-			block = mem.createInitializedBlock(defsSegmName, fpa.toAddr(getImageBase(defsSegmImageBaseOffset)), 4, (byte) 0x00, TaskMonitor.DUMMY, false);
-			mem.getProgram().endTransaction(transId, true);
+	/**
+	 * Creates the REFS block with one dword per unresolved reference.
+	 */
+	private static void createRefsBlock(Memory mem, LoadPipeline pipe, Collection<String> names, int lastSectAddress, Map<String, Integer> resolved) throws Throwable {
+		if (names.isEmpty()) {
+			return;
 		}
 		
-		Address newAddress = block.getStart().add(defsLastIndex * 4);
-		expandBlockByDword(mem, block, newAddress, true);
-		
-		st.createLabel(newAddress, name, SourceType.USER_DEFINED);
-		mem.setInt(newAddress, value);
-		DataUtilities.createData(mem.getProgram(), newAddress, DWordDataType.dataType, -1, true, ClearDataMode.CLEAR_ALL_UNDEFINED_CONFLICT_DATA);
-		defsLastIndex++;
+		MemoryBlock block = mem.createUninitializedBlock(refsSegmName, pipe.getFlatApi().toAddr(lastSectAddress), names.size() * 4L, false);
+		Address addr = block.getStart();
 		
-		return (int) newAddress.getOffset();
+		for (String name : names) {
+			pipe.addLabel(addr, name, SourceType.IMPORTED);
+			resolved.put(name, (int) addr.getOffset());
+			addr = addr.add(4);
+		}
 	}
 	
-	private static void expandBlockByDword(Memory mem, MemoryBlock block, Address appendAddress, boolean initialized) throws Throwable {
-		if (block.getStart().equals(appendAddress)) {
+	/**
+	 * Creates the DEFS block holding the values of the definitions outside the loaded memory.
+	 */
+	private static void createDefsBlock(Memory mem, LoadPipeline pipe, Map<String, Integer> values, Map<String, Integer> resolved) throws Throwable {
+		if (values.isEmpty()) {
 			return;
 		}
 		
-		int transId = mem.getProgram().startTransaction(String.format("Expand %s block", block.getName()));
-		MemoryBlock tmp = mem.createUninitializedBlock(block.getName() + ".exp", appendAddress, 4, false);
-		mem.getProgram().endTransaction(transId, true);
+		ByteBuffer bytes = ByteBuffer.allocate(values.size() * 4);
+		values.values().forEach(bytes::putInt);
 		
-		if (initialized) {
-			tmp = mem.convertToInitialized(tmp, (byte)0x00);
-		}
+		MemoryBlock block = mem.createInitializedBlock(defsSegmName, pipe.getFlatApi().toAddr(getImageBase(defsSegmImageBaseOffset)), new ByteArrayInputStream(bytes.array()), bytes.capacity(), TaskMonitor.DUMMY, false);
+		Address addr = block.getStart();
 		
-		mem.join(block, tmp);
-	}
-
-	private static byte[] intToBytes(int x) {
-		ByteBuffer buffer = ByteBuffer.allocate(Integer.BYTES);
-		buffer.order(ByteOrder.BIG_ENDIAN);
-		buffer.putInt(x);
-		return buffer.array();
-	}
-	
-	private static byte[] shortToBytes(short x) {
-		ByteBuffer buffer = ByteBuffer.allocate(Short.BYTES);
-		buffer.order(ByteOrder.BIG_ENDIAN);
-		buffer.putShort(x);
-		return buffer.array();
+		for (String name : values.keySet()) {
+			pipe.addLabel(addr, name, SourceType.USER_DEFINED);
+			resolved.put(name, (int) addr.getOffset());
+			pipe.addData(addr, DWordDataType.dataType);
+			addr = addr.add(4);
+		}
 	}
 
 	@Override
@@ -0,0 +1,170 @@
+package amiga;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+import ghidra.app.plugin.core.reloc.InstructionStasher;
+import ghidra.app.util.importer.MessageLog;
+import ghidra.framework.options.Options;
+import ghidra.program.model.address.Address;
+import ghidra.program.model.listing.Listing;
+import ghidra.program.model.listing.Program;
+import ghidra.program.model.mem.Memory;
+import ghidra.program.model.mem.MemoryBlock;
+import ghidra.program.model.reloc.Relocation;
+import ghidra.util.task.TaskMonitor;
+import hunk.HunkType;
+
+/**
+ * Moves an imported hunk program to a new image base. The absolute relocations
+ * recorded at import are re-applied with the delta in place and the loaded
+ * blocks are moved together with their symbols and references. PC and base
+ * relative relocations need no change, their ends move by the same delta.
+ */
+public final class AmigaHunkRebase {
+	
+	private static final Set<Integer> ABSOLUTE_TYPES = Set.of(
+			HunkType.HUNK_ABSRELOC32.getValue(),
+			HunkType.HUNK_RELOC32SHORT.getValue());
+	
+	private AmigaHunkRebase() {
+	}
+	
+	/**
+	 * Returns the lowest address of the blocks a rebase moves.
+	 */
+	public static Address getImageBase(Program program) {
+		List<MemoryBlock> blocks = getMovedBlocks(program);
+		return blocks.isEmpty() ? null : blocks.get(0).getStart();
+	}
+	
+	/**
+	 * Moves the hunk segments and the DEFS and REFS blocks so that the first segment
+	 * starts at {@code newBase}. The EXEC and Custom blocks stay at their hardware
+	 * addresses. A program with loaded overlay nodes is not rebased, overlay blocks
+	 * can't be moved and their code points into the root segments.
+	 *
+	 * @return the number of relocations adjusted
+	 */
+	public static int rebase(Program program, Address newBase, TaskMonitor monitor, MessageLog log) throws Exception {
+		for (MemoryBlock block : program.getMemory().getBlocks()) {
+			if (block.isOverlay()) {
+				log.appendMsg(String.format("Not rebased, overlay block %s is loaded. Import the file again at the new base and load its overlays after that", block.getName()));
+				return 0;
+			}
+		}
+		
+		List<MemoryBlock> blocks = getMovedBlocks(program);
+		
+		if (blocks.isEmpty()) {
+			return 0;
+		}
+		
+		long delta = newBase.getOffset() - blocks.get(0).getStart().getOffset();
+		
+		if (delta == 0) {
+			return 0;
+		}
+		
+		int transId = program.startTransaction("Rebase hunk program");
+		boolean success = false;
+		
+		try {
+			int count = applyDelta(program, blocks, (int)delta, monitor);
+			
+			// move the block furthest along the direction first so no block lands on one not yet moved
+			if (delta > 0) {
+				blocks.sort(Comparator.comparing(MemoryBlock::getStart).reversed());
+			}
+			
+			Memory mem = program.getMemory();
+			
+			for (MemoryBlock block : blocks) {
+				monitor.checkCanceled();
+				monitor.setMessage(String.format("Moving %s", block.getName()));
+				mem.moveBlock(block, block.getStart().add(delta), monitor);
+			}
+			
+			Options info = program.getOptions(Program.PROGRAM_INFO);
+			
+			if (info.contains(AmigaHunkLoader.OVERLAY_IMAGE_BASE)) {
+				info.setInt(AmigaHunkLoader.OVERLAY_IMAGE_BASE, (int)newBase.getOffset());
+			}
+			
+			log.appendMsg(String.format("Rebased to %s, %d relocations adjusted", newBase, count));
+			success = true;
+			return count;
+		} finally {
+			program.endTransaction(transId, success);
+		}
+	}
+	
+	private static int applyDelta(Program program, List<MemoryBlock> blocks, int delta, TaskMonitor monitor) throws Exception {
+		Memory mem = program.getMemory();
+		Listing listing = program.getListing();
+		Iterator<Relocation> relocs = program.getRelocationTable().getRelocations();
+		// units relocate HUNK_DREL32 against the data base, it moves with the blocks
+		boolean isExecutable = program.getOptions(Program.PROGRAM_INFO).getBoolean(AmigaHunkLoader.HUNK_EXECUTABLE, true);
+		int count = 0;
+		
+		monitor.setMessage("Adjusting relocations");
+		
+		while (relocs.hasNext()) {
+			Relocation reloc = relocs.next();
+			Address addr = reloc.getAddress();
+			
+			if (!isAbsolute(reloc.getType(), isExecutable) || !isMoved(blocks, addr)) {
+				continue;
+			}
+			
+			if ((++count & 0xFFF) == 0) {
+				monitor.checkCanceled();
+			}
+			
+			int value = mem.getInt(addr) + delta;
+			
+			// only sites under an instruction pay for a stash and restore
+			if (listing.getInstructionContaining(addr) == null) {
+				mem.setInt(addr, value);
+			} else {
+				InstructionStasher stasher = new InstructionStasher(program, addr);
+				mem.setInt(addr, value);
+				stasher.restore();
+			}
+		}
+		
+		return count;
+	}
+	
+	private static boolean isAbsolute(int type, boolean isExecutable) {
+		return ABSOLUTE_TYPES.contains(type) || (isExecutable && type == HunkType.HUNK_DREL32.getValue());
+	}
+	
+	private static boolean isMoved(List<MemoryBlock> blocks, Address addr) {
+		for (MemoryBlock block : blocks) {
+			if (block.contains(addr)) {
+				return true;
+			}
+		}
+		
+		return false;
+	}
+	
+	private static List<MemoryBlock> getMovedBlocks(Program program) {
+		List<MemoryBlock> blocks = new ArrayList<>();
+		
+		for (MemoryBlock block : program.getMemory().getBlocks()) {
+			if (block.isOverlay() || block.getName().equals(AmigaUtils.EXEC_BLOCK) || block.getName().equals(AmigaUtils.CUSTOM_BLOCK)) {
+				continue;
+			}
+			
+			blocks.add(block);
+		}
+		
+		blocks.sort(Comparator.comparing(MemoryBlock::getStart));
+		return blocks;
+	}
+}
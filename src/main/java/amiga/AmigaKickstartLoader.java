@@ -26,7 +26,6 @@ import ghidra.app.util.bin.ByteProviderInputStream;
 import ghidra.app.util.importer.MessageLog;
 import ghidra.app.util.opinion.AbstractLibrarySupportLoader;
 import ghidra.app.util.opinion.LoadSpec;
-import ghidra.framework.Application;
 import ghidra.program.flatapi.FlatProgramAPI;
 import ghidra.program.model.lang.LanguageCompilerSpecPair;
 import ghidra.program.model.listing.Program;
@@ -64,13 +63,16 @@ public class AmigaKickstartLoader extends AbstractLibrarySupportLoader {
 	}
 
 	private static void loadKickstart(ByteProvider provider, long imageBase, FlatProgramAPI fpa, TaskMonitor monitor, Memory mem, MessageLog log) throws Throwable {
-		var block = AmigaUtils.createSegment(new ByteProviderInputStream(provider), fpa, "ROM", imageBase, provider.length(), false, true, log);
-		var startAddr = block.getStart().add(2);
+		try (LoadPipeline pipe = new LoadPipeline(fpa, "Load Kickstart ROM", log)) {
+			var block = pipe.createBlock("ROM", imageBase, new ByteProviderInputStream(provider), provider.length(), false, true);
+			var startAddr = block.getStart().add(2);
 
-		var fdm = fpa.openDataTypeArchive(Application.getModuleDataFile("amiga_ndk39.gdt").getFile(false), true);
-		AmigaUtils.createCustomSegment(fpa, fdm, log);
-		AmigaUtils.addTypes(fpa.getCurrentProgram(), log);
-		AmigaUtils.analyzeResident(mem, fpa, fdm, startAddr, log);
-		AmigaUtils.setFunction(fpa, startAddr, "start", log);
+			NdkArchive ndk = NdkArchive.getInstance();
+			AmigaUtils.createCustomSegment(pipe, ndk, log);
+			AmigaUtils.addTypes(fpa.getCurrentProgram(), log);
+			pipe.commit();
+			AmigaUtils.analyzeResident(mem, fpa, ndk, startAddr, log);
+			pipe.addFunction(startAddr, "start");
+		}
 	}
 }
@@ -27,17 +27,13 @@ import ghidra.app.util.bin.ByteProvider;
 import ghidra.app.util.importer.MessageLog;
 import ghidra.app.util.opinion.AbstractLibrarySupportLoader;
 import ghidra.app.util.opinion.LoadSpec;
-import ghidra.framework.Application;
 import ghidra.program.flatapi.FlatProgramAPI;
 import ghidra.program.model.data.DataType;
 import ghidra.program.model.data.DataTypeConflictHandler;
-import ghidra.program.model.data.DataUtilities;
-import ghidra.program.model.data.DataUtilities.ClearDataMode;
 import ghidra.program.model.lang.LanguageCompilerSpecPair;
 import ghidra.program.model.listing.Program;
 import ghidra.program.model.mem.Memory;
 import ghidra.program.model.symbol.SourceType;
-import ghidra.util.exception.InvalidInputException;
 import ghidra.util.task.TaskMonitor;
 import structs.M68KVectors;
 import uss.UssFile;
@@ -73,37 +69,31 @@ public class AmigaUssLoader extends AbstractLibrarySupportLoader {
 
 	private static void loadUss(ByteProvider provider, FlatProgramAPI fpa, TaskMonitor monitor, Memory mem, MessageLog log) throws Throwable {
 		var uss = new UssFile(new BinaryReader(provider, false), monitor, log);
-		for(var m : uss.memBlocks) {
-			var block = AmigaUtils.createSegment(m.content != null ? new ByteArrayInputStream(m.content) : null, fpa, m.name, m.start, m.length, true, true, log);
-		}
 
-		var fdm = fpa.openDataTypeArchive(Application.getModuleDataFile("amiga_ndk39.gdt").getFile(false), true);
+		try (LoadPipeline pipe = new LoadPipeline(fpa, "Load USS state", log)) {
+			for(var m : uss.memBlocks) {
+				pipe.createBlock(m.name, m.start, m.content != null ? new ByteArrayInputStream(m.content) : null, m.length, true, true);
+			}
 
-		DataUtilities.createData(fpa.getCurrentProgram(), fpa.toAddr(0xdff000), AmigaUtils.getAmigaDataType(fdm, "Custom"), -1, false, ClearDataMode.CLEAR_ALL_UNDEFINED_CONFLICT_DATA);
-		fpa.createLabel(fpa.toAddr(0xdff000), "Custom", false);
+			pipe.addData(fpa.toAddr(0xdff000), AmigaUtils.getAmigaDataType(NdkArchive.getInstance(), "Custom"));
+			pipe.addLabel(fpa.toAddr(0xdff000), "Custom", SourceType.USER_DEFINED);
 
-		AmigaUtils.addTypes(fpa.getCurrentProgram(), log);
-		try {
-			DataType exceptionTable = fpa.getCurrentProgram().getDataTypeManager().addDataType(new M68KVectors().toDataType(), DataTypeConflictHandler.DEFAULT_HANDLER);
-			DataUtilities.createData(fpa.getCurrentProgram(), fpa.toAddr(0), exceptionTable, -1, false, ClearDataMode.CLEAR_ALL_UNDEFINED_CONFLICT_DATA);
-			fpa.createLabel(fpa.toAddr(0), "ExceptionVectors", false);
-		} catch (Exception e) {
-			log.appendException(e);
-		}
+			AmigaUtils.addTypes(fpa.getCurrentProgram(), log);
+			try {
+				DataType exceptionTable = fpa.getCurrentProgram().getDataTypeManager().addDataType(new M68KVectors().toDataType(), DataTypeConflictHandler.DEFAULT_HANDLER);
+				pipe.addData(fpa.toAddr(0), exceptionTable);
+				pipe.addLabel(fpa.toAddr(0), "ExceptionVectors", SourceType.USER_DEFINED);
+			} catch (Exception e) {
+				log.appendException(e);
+			}
 
-		// set PC
-		var pcAddr = fpa.toAddr(uss.registers[15]);
-		try {
-			fpa.disassemble(pcAddr);
-			fpa.addEntryPoint(pcAddr);
-			fpa.getCurrentProgram().getSymbolTable().createLabel(pcAddr, "pc", SourceType.IMPORTED);
-		} catch (InvalidInputException e) {
-			log.appendException(e);
+			// set PC
+			pipe.addEntryPoint(fpa.toAddr(uss.registers[15]), "pc");
 		}
 
 		// TODO: CIA, ROM, CPU state, descriptions
 
-		//AmigaUtils.analyzeResident(mem, fpa, fdm, startAddr, log);
+		//AmigaUtils.analyzeResident(mem, fpa, ndk, startAddr, log);
 		//AmigaUtils.setFunction(fpa, startAddr, "start", log);
 	}
 }
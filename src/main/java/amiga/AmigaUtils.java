@@ -23,7 +23,6 @@ import ghidra.program.model.data.DataType;
 import ghidra.program.model.data.DataTypeConflictHandler;
 import ghidra.program.model.data.DataUtilities;
 import ghidra.program.model.data.DataUtilities.ClearDataMode;
-import ghidra.program.model.data.FileDataTypeManager;
 import ghidra.program.model.data.PointerDataType;
 import ghidra.program.model.data.Structure;
 import ghidra.program.model.data.StructureDataType;
@@ -48,11 +47,11 @@ import structs.InitTable;
 public class AmigaUtils {
 	static final byte[] RTC_MATCHWORD = new byte[] { 0x4A, (byte) 0xFC };
 	static final byte RTF_AUTOINIT = (byte) (1 << 7);
+	static final String EXEC_BLOCK = "EXEC";
+	static final String CUSTOM_BLOCK = "Custom";
 
-	public static DataType getAmigaDataType(FileDataTypeManager fdm, String type) {
-		var list = new ArrayList<DataType>();
-		fdm.findDataTypes(type, list);
-		return !list.isEmpty() ? list.get(0) : null;
+	public static DataType getAmigaDataType(NdkArchive ndk, String type) {
+		return ndk.get(type);
 	}
 
 	public static MemoryBlock createSegment(InputStream stream, FlatProgramAPI fpa, String name, long address, long size, boolean write, boolean execute, MessageLog log) {
@@ -74,29 +73,22 @@ public class AmigaUtils {
 		}
 	}
 
-	public static void createExecBaseSegment(FlatProgramAPI fpa, FileDataTypeManager fdm, MessageLog log) {
-		MemoryBlock exec = createSegment(null, fpa, "EXEC", 0x4, 4, false, false, log);
+	public static void createExecBaseSegment(LoadPipeline pipe, NdkArchive ndk, MessageLog log) {
+		MemoryBlock exec = pipe.createBlock(EXEC_BLOCK, 0x4, null, 4, false, false);
 		
-		Program program = fpa.getCurrentProgram();
-
-		try {
-			DataUtilities.createData(program, exec.getStart(), new PointerDataType(getAmigaDataType(fdm, "ExecBase")), -1, false, ClearDataMode.CLEAR_ALL_UNDEFINED_CONFLICT_DATA);
-		} catch (CodeUnitInsertionException e) {
-			log.appendException(e);
+		if (exec != null) {
+			pipe.addData(exec.getStart(), new PointerDataType(getAmigaDataType(ndk, "ExecBase")));
 		}
 	}
 
-	public static void createCustomSegment(FlatProgramAPI fpa, FileDataTypeManager fdm, MessageLog log) {
+	public static void createCustomSegment(LoadPipeline pipe, NdkArchive ndk, MessageLog log) {
 		// TODO: CIA
 		log.appendMsg("Creating custom chips memory block");
-		var block = createSegment(null, fpa, "Custom", 0xdff000, 0x200, true, false, log);
-		var program = fpa.getCurrentProgram();
-		try {
-			var regs = AmigaUtils.getAmigaDataType(fdm, "Custom");
-			DataUtilities.createData(program, block.getStart(), regs, -1, false, ClearDataMode.CLEAR_ALL_UNDEFINED_CONFLICT_DATA);
-			fpa.createLabel(block.getStart(), "Custom", false);
-		} catch (Exception e) {
-			log.appendException(e);
+		var block = pipe.createBlock(CUSTOM_BLOCK, 0xdff000, null, 0x200, true, false);
+		
+		if (block != null) {
+			pipe.addData(block.getStart(), AmigaUtils.getAmigaDataType(ndk, "Custom"));
+			pipe.addLabel(block.getStart(), "Custom", SourceType.USER_DEFINED);
 		}
 	}
 
@@ -118,7 +110,7 @@ public class AmigaUtils {
 		return null;
 	}
 
-	public static void analyzeResident(Memory mem, FlatProgramAPI fpa, FileDataTypeManager fdm, Address startAddr, MessageLog log) {
+	public static void analyzeResident(Memory mem, FlatProgramAPI fpa, NdkArchive ndk, Address startAddr, MessageLog log) {
 		Program program = fpa.getCurrentProgram();
 		ReferenceManager refMgr = program.getReferenceManager();
 		var funcsList = new FdFunctionsInLibs();
@@ -138,7 +130,7 @@ public class AmigaUtils {
 					continue;
 				}
 
-				DataUtilities.createData(program, addr, AmigaUtils.getAmigaDataType(fdm, "Resident"), -1, false, ClearDataMode.CLEAR_ALL_UNDEFINED_CONFLICT_DATA);
+				DataUtilities.createData(program, addr, AmigaUtils.getAmigaDataType(ndk, "Resident"), -1, false, ClearDataMode.CLEAR_ALL_UNDEFINED_CONFLICT_DATA);
 				byte rt_Flags = mem.getByte(addr.add(10));
 
 				var NameAddr = addr.getNewAddress(mem.getInt(addr.add(14), true));
@@ -166,7 +158,7 @@ public class AmigaUtils {
 					List<ParameterImpl> params = new ArrayList<>();
 					
 					Structure baseStruct = new StructureDataType("BaseLib", 0);
-					baseStruct.add(AmigaUtils.getAmigaDataType(fdm, "Library"), "base", null);
+					baseStruct.add(AmigaUtils.getAmigaDataType(ndk, "Library"), "base", null);
 					baseStruct.add(WordDataType.dataType, "field0", null);
 
 					params.add(new ParameterImpl("libBase", PointerDataType.dataType, program.getRegister("A6"), program));
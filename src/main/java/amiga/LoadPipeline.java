@@ -0,0 +1,183 @@
+package amiga;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import ghidra.app.util.importer.MessageLog;
+import ghidra.program.flatapi.FlatProgramAPI;
+import ghidra.program.model.address.Address;
+import ghidra.program.model.data.DataType;
+import ghidra.program.model.data.DataUtilities;
+import ghidra.program.model.data.DataUtilities.ClearDataMode;
+import ghidra.program.model.listing.Program;
+import ghidra.program.model.mem.MemoryBlock;
+import ghidra.program.model.symbol.SourceType;
+import ghidra.program.model.symbol.SymbolTable;
+
+/**
+ * Runs a load in one transaction with change events suppressed. Memory blocks
+ * are created at once since the loaders read them back, labels, data and
+ * functions are staged and committed in batches by {@link #commit()}: data
+ * first, then labels, then functions and entry points, which disassemble.
+ */
+public final class LoadPipeline implements AutoCloseable {
+	
+	private static final class Label {
+		final Address addr;
+		final String name;
+		final SourceType source;
+		
+		Label(Address addr, String name, SourceType source) {
+			this.addr = addr;
+			this.name = name;
+			this.source = source;
+		}
+	}
+	
+	private static final class Data {
+		final Address addr;
+		final DataType type;
+		
+		Data(Address addr, DataType type) {
+			this.addr = addr;
+			this.type = type;
+		}
+	}
+	
+	private static final class Entry {
+		final Address addr;
+		final String name;
+		final boolean function;
+		
+		Entry(Address addr, String name, boolean function) {
+			this.addr = addr;
+			this.name = name;
+			this.function = function;
+		}
+	}
+	
+	private final FlatProgramAPI fpa;
+	private final Program program;
+	private final MessageLog log;
+	private final int transId;
+	private final boolean eventsWereEnabled;
+	
+	private final List<Label> labels = new ArrayList<>();
+	private final List<Data> datas = new ArrayList<>();
+	private final List<Entry> entries = new ArrayList<>();
+	
+	public LoadPipeline(FlatProgramAPI fpa, String description, MessageLog log) {
+		this.fpa = fpa;
+		this.program = fpa.getCurrentProgram();
+		this.log = log;
+		
+		eventsWereEnabled = program.isSendingEvents();
+		program.setEventsEnabled(false);
+		transId = program.startTransaction(description);
+	}
+	
+	public FlatProgramAPI getFlatApi() {
+		return fpa;
+	}
+	
+	/**
+	 * Creates a memory block right away, inside the pipeline transaction.
+	 */
+	public MemoryBlock createBlock(String name, long address, InputStream stream, long size, boolean write, boolean execute) {
+		try {
+			MemoryBlock block = fpa.createMemoryBlock(name, fpa.toAddr(address), stream, size, false);
+			block.setRead(true);
+			block.setWrite(write);
+			block.setExecute(execute);
+			return block;
+		} catch (Exception e) {
+			log.appendException(e);
+			return null;
+		}
+	}
+	
+	public void addLabel(Address addr, String name, SourceType source) {
+		labels.add(new Label(addr, name, source));
+	}
+	
+	public void addData(Address addr, DataType type) {
+		if (type == null) {
+			log.appendMsg(String.format("No data type for %s", addr));
+			return;
+		}
+		
+		datas.add(new Data(addr, type));
+	}
+	
+	/**
+	 * Stages a function, created the way {@link AmigaUtils#setFunction} does.
+	 */
+	public void addFunction(Address addr, String name) {
+		entries.add(new Entry(addr, name, true));
+	}
+	
+	/**
+	 * Stages an entry point that is disassembled and labelled but gets no function.
+	 */
+	public void addEntryPoint(Address addr, String name) {
+		entries.add(new Entry(addr, name, false));
+	}
+	
+	/**
+	 * Applies everything staged so far.
+	 */
+	public void commit() {
+		for (Data data : datas) {
+			try {
+				DataUtilities.createData(program, data.addr, data.type, -1, false, ClearDataMode.CLEAR_ALL_UNDEFINED_CONFLICT_DATA);
+			} catch (Exception e) {
+				log.appendException(e);
+			}
+		}
+		
+		datas.clear();
+		
+		SymbolTable st = program.getSymbolTable();
+		
+		for (Label label : labels) {
+			try {
+				st.createLabel(label.addr, label.name, label.source);
+			} catch (Exception e) {
+				log.appendException(e);
+			}
+		}
+		
+		labels.clear();
+		
+		for (Entry entry : entries) {
+			if (entry.function) {
+				AmigaUtils.setFunction(fpa, entry.addr, entry.name, log);
+				continue;
+			}
+			
+			try {
+				fpa.disassemble(entry.addr);
+				fpa.addEntryPoint(entry.addr);
+				st.createLabel(entry.addr, entry.name, SourceType.IMPORTED);
+			} catch (Exception e) {
+				log.appendException(e);
+			}
+		}
+		
+		entries.clear();
+	}
+	
+	/**
+	 * Commits what is staged, ends the transaction and turns events back on.
+	 */
+	@Override
+	public void close() {
+		try {
+			commit();
+		} finally {
+			program.endTransaction(transId, true);
+			program.setEventsEnabled(eventsWereEnabled);
+		}
+	}
+}
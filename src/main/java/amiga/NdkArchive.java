@@ -0,0 +1,64 @@
+package amiga;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import ghidra.framework.Application;
+import ghidra.program.model.data.DataType;
+import ghidra.program.model.data.FileDataTypeManager;
+
+/**
+ * The NDK 3.9 data type archive, opened read-only on first use and shared by
+ * the loaders and the analyzer. It is opened once per JVM and never closed,
+ * it lives as long as the extension does. Names are looked up through an
+ * index built when the archive is opened.
+ */
+public final class NdkArchive {
+	
+	static final String ARCHIVE_NAME = "amiga_ndk39.gdt";
+	
+	private static NdkArchive instance;
+	
+	private final FileDataTypeManager fdm;
+	private final Map<String, DataType> byName;
+	
+	private NdkArchive(FileDataTypeManager fdm, Map<String, DataType> byName) {
+		this.fdm = fdm;
+		this.byName = byName;
+	}
+	
+	public static synchronized NdkArchive getInstance() throws IOException {
+		if (instance == null) {
+			FileDataTypeManager fdm = FileDataTypeManager.openFileArchive(Application.getModuleDataFile(ARCHIVE_NAME), false);
+			instance = new NdkArchive(fdm, buildIndex(fdm));
+		}
+		
+		return instance;
+	}
+	
+	private static Map<String, DataType> buildIndex(FileDataTypeManager fdm) {
+		Map<String, DataType> map = new HashMap<>();
+		Iterator<DataType> it = fdm.getAllDataTypes();
+		
+		while (it.hasNext()) {
+			DataType dt = it.next();
+			// the first of several types sharing a name wins, as with findDataTypes
+			map.putIfAbsent(dt.getName(), dt);
+		}
+		
+		return map;
+	}
+	
+	public FileDataTypeManager getDataTypeManager() {
+		return fdm;
+	}
+	
+	/**
+	 * Returns the data type named {@code name}, null if the archive has none.
+	 */
+	public DataType get(String name) {
+		return byName.get(name);
+	}
+}
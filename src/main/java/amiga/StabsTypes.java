@@ -0,0 +1,558 @@
+package amiga;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BooleanSupplier;
+
+import ghidra.program.model.data.AbstractFloatDataType;
+import ghidra.program.model.data.AbstractIntegerDataType;
+import ghidra.program.model.data.ArrayDataType;
+import ghidra.program.model.data.CategoryPath;
+import ghidra.program.model.data.CharDataType;
+import ghidra.program.model.data.Composite;
+import ghidra.program.model.data.DataType;
+import ghidra.program.model.data.DataTypeConflictHandler;
+import ghidra.program.model.data.DataTypeManager;
+import ghidra.program.model.data.Enum;
+import ghidra.program.model.data.EnumDataType;
+import ghidra.program.model.data.FunctionDefinitionDataType;
+import ghidra.program.model.data.PointerDataType;
+import ghidra.program.model.data.Structure;
+import ghidra.program.model.data.StructureDataType;
+import ghidra.program.model.data.TypedefDataType;
+import ghidra.program.model.data.Undefined;
+import ghidra.program.model.data.Union;
+import ghidra.program.model.data.UnionDataType;
+import ghidra.program.model.data.VoidDataType;
+import hunk.HunkDebugStabs;
+import hunk.HunkDebugStabs.Stab;
+
+/**
+ * Data types of the GCC stabs of one debug block, resolved on demand. Type
+ * numbers are local to a compilation unit, a unit starts with each run of
+ * N_SO entries. Asking for the type of a stab parses its descriptor, a type
+ * number it uses that isn't known yet is looked for by parsing the entries of
+ * its unit in table order, only as far as its definition. Named types that
+ * are met are added to the program under {@code /stabs}. Bit fields are left
+ * undefined, descriptors this parser doesn't know (C++ classes) only lose
+ * their own definitions.
+ */
+final class StabsTypes {
+	
+	static final CategoryPath CATEGORY = new CategoryPath("/stabs");
+	
+	private final HunkDebugStabs stabs;
+	private final DataTypeManager dtm;
+	private final int[] unitStarts;
+	private final int[] cursors;
+	private final Map<String, DataType> types = new HashMap<>();
+	private final Map<String, DataType> tags = new HashMap<>();
+	private final Set<String> pendingTags = new HashSet<>();
+	private final Map<Integer, DataType> symbolTypes = new HashMap<>();
+	private final Set<Integer> parsed = new HashSet<>();
+	private final List<DataType> named = new ArrayList<>();
+	private int anonymous;
+	private boolean advancing;
+	
+	StabsTypes(HunkDebugStabs stabs, DataTypeManager dtm) throws IOException {
+		this.stabs = stabs;
+		this.dtm = dtm;
+		
+		// a unit starts at the first entry of each run of N_SO entries
+		int[] so = stabs.getIndices(HunkDebugStabs.N_SO);
+		int[] starts = new int[so.length];
+		int count = 0;
+		
+		for (int i = 0; i < so.length; ++i) {
+			if (i == 0 || so[i - 1] != so[i] - 1) {
+				starts[count++] = so[i];
+			}
+		}
+		
+		unitStarts = Arrays.copyOf(starts, count);
+		cursors = new int[count + 1];
+		
+		for (int unit = 1; unit <= count; ++unit) {
+			cursors[unit] = unitStarts[unit - 1];
+		}
+	}
+	
+	/**
+	 * Returns the type of a function, parameter or variable stab, null if it is not known.
+	 * The type of a function is its return type.
+	 */
+	DataType getType(Stab stab) throws IOException {
+		DataType dt = define(stab);
+		
+		for (DataType type : named) {
+			dtm.resolve(type, DataTypeConflictHandler.DEFAULT_HANDLER);
+		}
+		
+		named.clear();
+		return dt;
+	}
+	
+	/**
+	 * Returns the unit of the entry at {@code index}, 0 before the first N_SO entry.
+	 */
+	private int getUnit(int index) {
+		int pos = Arrays.binarySearch(unitStarts, index);
+		return (pos >= 0) ? pos + 1 : -pos - 1;
+	}
+	
+	private int getUnitEnd(int unit) {
+		return (unit < unitStarts.length) ? unitStarts[unit] : stabs.size();
+	}
+	
+	private DataType define(Stab stab) throws IOException {
+		if (!parsed.add(stab.getIndex())) {
+			return symbolTypes.get(stab.getIndex());
+		}
+		
+		String str = stab.getDescriptor();
+		
+		// constants carry a value, not a type
+		if (stab.getType() == HunkDebugStabs.N_SO || str.isEmpty() || str.charAt(0) == 'c') {
+			return null;
+		}
+		
+		Parser parser = new Parser(str, getUnit(stab.getIndex()));
+		char kind = str.charAt(0);
+		boolean isTag = kind == 'T';
+		boolean isTypedef = kind == 't' || str.startsWith("Tt");
+		
+		if (Character.isLetter(kind)) {
+			parser.pos = str.startsWith("Tt") ? 2 : 1;
+		}
+		
+		String name = ((isTag || isTypedef) && !stab.getName().isEmpty()) ? stab.getName() : null;
+		
+		try {
+			DataType dt = parser.parseType(name);
+			
+			if (dt == null) {
+				return null;
+			}
+			
+			symbolTypes.put(stab.getIndex(), dt);
+			
+			// "int:t1=r1;..." names a base type, it needs no typedef
+			if (name != null && !parser.isBaseType) {
+				named.add(name.equals(dt.getName()) ? dt : new TypedefDataType(CATEGORY, name, dt, dtm));
+			}
+			
+			return dt;
+		} catch (RuntimeException e) {
+			// the rest of the descriptor can't be parsed, the types read so far are kept
+			return null;
+		}
+	}
+	
+	/**
+	 * Returns the type numbered {@code key}, parsing the entries of its unit until it is defined.
+	 */
+	private DataType lookup(String key, int unit) throws IOException {
+		advance(unit, () -> types.containsKey(key));
+		return types.get(key);
+	}
+	
+	/**
+	 * Parses the entries of {@code unit} that weren't parsed yet, in table order, until
+	 * {@code found} holds and the tags referred to before their definitions are defined.
+	 */
+	private void advance(int unit, BooleanSupplier found) throws IOException {
+		// a nested lookup is served by the run in progress
+		if (advancing || (found.getAsBoolean() && pendingTags.isEmpty())) {
+			return;
+		}
+		
+		advancing = true;
+		
+		try {
+			int end = getUnitEnd(unit);
+			
+			while (cursors[unit] < end && (!found.getAsBoolean() || !pendingTags.isEmpty())) {
+				define(stabs.getStab(cursors[unit]++));
+			}
+		} finally {
+			// tags still pending at the end of the unit are opaque
+			pendingTags.clear();
+			advancing = false;
+		}
+	}
+	
+	private String getTypeName(String name, String prefix) {
+		return (name != null) ? name : String.format("%s_%d", prefix, ++anonymous);
+	}
+	
+	private static BigInteger parseBound(String text) {
+		boolean negative = text.startsWith("-");
+		String digits = negative ? text.substring(1) : text;
+		BigInteger value = (digits.length() > 1 && digits.startsWith("0")) ? new BigInteger(digits, 8) : new BigInteger(digits);
+		return negative ? value.negate() : value;
+	}
+	
+	/**
+	 * Parses one type descriptor, type numbers are keyed by the unit of its entry.
+	 */
+	private final class Parser {
+		private final String str;
+		private final int unit;
+		private int pos;
+		private int depth;
+		private boolean isBaseType;
+		
+		Parser(String str, int unit) {
+			this.str = str;
+			this.unit = unit;
+		}
+		
+		private char peek() {
+			return (pos < str.length()) ? str.charAt(pos) : 0;
+		}
+		
+		private void expect(char c) {
+			if (peek() != c) {
+				throw new IllegalArgumentException(String.format("Expected '%c' at %d of %s", c, pos, str));
+			}
+			
+			++pos;
+		}
+		
+		/**
+		 * Returns the text up to the next {@code c} and moves past it.
+		 */
+		private String until(char c) {
+			int end = str.indexOf(c, pos);
+			
+			if (end < 0) {
+				throw new IllegalArgumentException(String.format("Missing '%c' in %s", c, str));
+			}
+			
+			String text = str.substring(pos, end);
+			pos = end + 1;
+			return text;
+		}
+		
+		private String parseTypeNumber() {
+			int start = pos;
+			
+			if (peek() == '(') {
+				until(')');
+			} else {
+				while (Character.isDigit(peek())) {
+					++pos;
+				}
+			}
+			
+			if (pos == start) {
+				throw new IllegalArgumentException(String.format("Expected a type number at %d of %s", pos, str));
+			}
+			
+			return unit + ":" + str.substring(start, pos);
+		}
+		
+		private DataType parseType(String name) throws IOException {
+			++depth;
+			
+			try {
+				if (peek() != '(' && !Character.isDigit(peek())) {
+					return parseBody(null, name);
+				}
+				
+				String key = parseTypeNumber();
+				
+				if (peek() != '=') {
+					return lookup(key, unit);
+				}
+				
+				++pos;
+				
+				// type attributes such as @s32;
+				while (peek() == '@') {
+					until(';');
+				}
+				
+				DataType dt = parseBody(key, name);
+				
+				if (dt != null) {
+					types.put(key, dt);
+				}
+				
+				return dt;
+			} finally {
+				--depth;
+			}
+		}
+		
+		private DataType parseBody(String key, String name) throws IOException {
+			char c = peek();
+			
+			if (c == '(' || Character.isDigit(c)) {
+				int start = pos;
+				
+				// a type defined as itself is void
+				if (parseTypeNumber().equals(key)) {
+					return baseType(VoidDataType.dataType);
+				}
+				
+				pos = start;
+				return parseType(null);
+			}
+			
+			++pos;
+			
+			switch (c) {
+			case 'r':
+				return baseType(parseRange(name));
+			case '*':
+			case '&':
+				return new PointerDataType(parseType(null), 4, dtm);
+			case 'k':
+			case 'B':
+				// const and volatile
+				return parseType(null);
+			case 'f': {
+				DataType ret = parseType(null);
+				FunctionDefinitionDataType fn = new FunctionDefinitionDataType(CATEGORY, getTypeName(name, "func"), dtm);
+				fn.setReturnType((ret != null) ? ret : DataType.DEFAULT);
+				return fn;
+			}
+			case 's':
+				return parseComposite(key, name, false);
+			case 'u':
+				return parseComposite(key, name, true);
+			case 'e':
+				return parseEnum(name);
+			case 'a':
+				return parseArray();
+			case 'x':
+				return parseCrossReference();
+			default:
+				throw new IllegalArgumentException(String.format("Unsupported type '%c' in %s", c, str));
+			}
+		}
+		
+		private DataType baseType(DataType dt) {
+			if (depth == 1) {
+				isBaseType = true;
+			}
+			
+			return dt;
+		}
+		
+		/**
+		 * Reads {@code r<type>;<lower>;<upper>;}. The bounds give the size and signedness
+		 * of an integer type, a floating point type has its size as the lower bound and
+		 * 0 as the upper one.
+		 */
+		private DataType parseRange(String name) {
+			parseTypeNumber();
+			expect(';');
+			
+			String lowerText = until(';');
+			String upperText = until(';');
+			BigInteger lower = parseBound(lowerText);
+			BigInteger upper = parseBound(upperText);
+			
+			if ("char".equals(name)) {
+				return CharDataType.dataType;
+			}
+			
+			if (upper.signum() == 0 && lower.signum() > 0) {
+				DataType dt = AbstractFloatDataType.getFloatDataType(lower.intValue(), dtm);
+				return (dt != null) ? dt : Undefined.getUndefinedDataType(lower.intValue());
+			}
+			
+			// unsigned int is printed as 0;-1; by some compilers
+			if (lower.signum() == 0 && upper.signum() < 0) {
+				return AbstractIntegerDataType.getUnsignedDataType(4, dtm);
+			}
+			
+			boolean signed;
+			int bits;
+			
+			if (lower.signum() < 0) {
+				signed = true;
+				bits = upper.bitLength() + 1;
+			} else if (lowerText.startsWith("0") && lower.bitLength() > upper.bitLength()) {
+				// 64 bit bounds are printed in octal, a negative lower bound as its bit pattern
+				signed = true;
+				bits = lower.bitLength();
+			} else {
+				signed = false;
+				bits = Math.max(1, upper.bitLength());
+			}
+			
+			int size = 1;
+			
+			while (size < 8 && size * 8 < bits) {
+				size *= 2;
+			}
+			
+			return signed ? AbstractIntegerDataType.getSignedDataType(size, dtm) : AbstractIntegerDataType.getUnsignedDataType(size, dtm);
+		}
+		
+		/**
+		 * Reads {@code s<size><name>:<type>,<bit offset>,<bit size>;...;}, or the same after {@code u}
+		 * for a union. A composite declared earlier by a cross reference gets its definition here.
+		 */
+		private DataType parseComposite(String key, String name, boolean isUnion) throws IOException {
+			int start = pos;
+			
+			while (Character.isDigit(peek())) {
+				++pos;
+			}
+			
+			int size = Integer.parseInt(str.substring(start, pos));
+			String tagKey = (name != null) ? unit + ":" + name : null;
+			DataType declared = (tagKey != null) ? tags.get(tagKey) : null;
+			Composite comp;
+			
+			if (declared instanceof Composite && declared.isNotYetDefined() && (declared instanceof Union) == isUnion) {
+				comp = (Composite)declared;
+			} else if (isUnion) {
+				comp = new UnionDataType(CATEGORY, getTypeName(name, "union"), dtm);
+			} else {
+				comp = new StructureDataType(CATEGORY, getTypeName(name, "struct"), 0, dtm);
+			}
+			
+			if (comp instanceof Structure && size > 0) {
+				((Structure)comp).growStructure(size);
+			}
+			
+			// members may point back at the type being defined
+			if (key != null) {
+				types.put(key, comp);
+			}
+			
+			if (tagKey != null) {
+				tags.put(tagKey, comp);
+				pendingTags.remove(tagKey);
+			}
+			
+			while (peek() != ';') {
+				String member = until(':');
+				DataType dt = parseType(null);
+				expect(',');
+				int bitOffset = Integer.parseInt(until(','));
+				int bitSize = Integer.parseInt(until(';'));
+				
+				addMember(comp, member, dt, bitOffset, bitSize);
+			}
+			
+			++pos;
+			return comp;
+		}
+		
+		private static void addMember(Composite comp, String name, DataType dt, int bitOffset, int bitSize) {
+			// bit fields and members of unknown size stay undefined
+			if (dt == null || dt.getLength() <= 0 || bitOffset % 8 != 0 || bitSize != dt.getLength() * 8) {
+				return;
+			}
+			
+			try {
+				if (comp instanceof Structure) {
+					Structure struct = (Structure)comp;
+					int offset = bitOffset / 8;
+					
+					if (offset + dt.getLength() <= struct.getLength()) {
+						struct.replaceAtOffset(offset, dt, dt.getLength(), name, null);
+					}
+				} else {
+					comp.add(dt, name, null);
+				}
+			} catch (IllegalArgumentException e) {
+				// overlaps a member placed before, the first one is kept
+			}
+		}
+		
+		/**
+		 * Reads {@code e<name>:<value>,...;}.
+		 */
+		private DataType parseEnum(String name) {
+			String tagKey = (name != null) ? unit + ":" + name : null;
+			DataType declared = (tagKey != null) ? tags.get(tagKey) : null;
+			Enum en = (declared instanceof Enum && ((Enum)declared).getCount() == 0) ? (Enum)declared : new EnumDataType(CATEGORY, getTypeName(name, "enum"), 4, dtm);
+			
+			while (peek() != ';') {
+				String item = until(':');
+				long value = Long.parseLong(until(','));
+				
+				try {
+					en.add(item, value);
+				} catch (IllegalArgumentException e) {
+					// a duplicate name, the first value is kept
+				}
+			}
+			
+			++pos;
+			
+			if (tagKey != null) {
+				tags.put(tagKey, en);
+				pendingTags.remove(tagKey);
+			}
+			
+			return en;
+		}
+		
+		/**
+		 * Reads {@code ar<index type>;<lower>;<upper>;<element type>}. Arrays without a
+		 * known bound or element size have no type.
+		 */
+		private DataType parseArray() throws IOException {
+			expect('r');
+			parseTypeNumber();
+			expect(';');
+			
+			long lower = parseBound(until(';')).longValue();
+			long upper = parseBound(until(';')).longValue();
+			DataType elem = parseType(null);
+			long count = upper - lower + 1;
+			
+			if (elem == null || elem.getLength() <= 0 || count <= 0 || count * elem.getLength() > Integer.MAX_VALUE) {
+				return null;
+			}
+			
+			return new ArrayDataType(elem, (int)count, elem.getLength(), dtm);
+		}
+		
+		/**
+		 * Reads {@code x<s|u|e><name>:}, a composite or enum referred to by its tag before
+		 * or after its definition. A definition that comes later in the unit is looked for.
+		 */
+		private DataType parseCrossReference() throws IOException {
+			char kind = str.charAt(pos++);
+			String tag = until(':');
+			String tagKey = unit + ":" + tag;
+			DataType dt = tags.get(tagKey);
+			
+			if (dt == null) {
+				switch (kind) {
+				case 'u':
+					dt = new UnionDataType(CATEGORY, tag, dtm);
+					break;
+				case 'e':
+					dt = new EnumDataType(CATEGORY, tag, 4, dtm);
+					break;
+				default:
+					dt = new StructureDataType(CATEGORY, tag, 0, dtm);
+					break;
+				}
+				
+				tags.put(tagKey, dt);
+				pendingTags.add(tagKey);
+				advance(unit, () -> true);
+			}
+			
+			return dt;
+		}
+	}
+}
@@ -0,0 +1,63 @@
+package fd;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Functions of a set of libraries indexed by LVO bias, for the library call
+ * analyzer. Built once per library filter, a lookup is one array access and
+ * returns a shared array.
+ */
+public final class FdBiasIndex {
+	
+	private static final FdFunction[] NONE = new FdFunction[0];
+	
+	private final FdFunction[][] byOffset;
+	
+	private FdBiasIndex(FdFunction[][] byOffset) {
+		this.byOffset = byOffset;
+	}
+	
+	/**
+	 * Indexes the functions of the libraries in {@code filter}, of all libraries if it is null or empty.
+	 */
+	public static FdBiasIndex build(FdFunctionsInLibs libs, List<String> filter) {
+		List<FdFunction> funcs = new ArrayList<>();
+		int max = -1;
+		
+		for (FdFunction func : libs.getFunctionsByLibs(filter)) {
+			// LVOs are negative offsets from the library base
+			if (func.getBias() < 0) {
+				funcs.add(func);
+				max = Math.max(max, -func.getBias());
+			}
+		}
+		
+		int[] counts = new int[max + 1];
+		
+		for (FdFunction func : funcs) {
+			++counts[-func.getBias()];
+		}
+		
+		FdFunction[][] byOffset = new FdFunction[max + 1][];
+		
+		for (int i = 0; i <= max; ++i) {
+			byOffset[i] = (counts[i] == 0) ? NONE : new FdFunction[counts[i]];
+			counts[i] = 0;
+		}
+		
+		for (FdFunction func : funcs) {
+			int offset = -func.getBias();
+			byOffset[offset][counts[offset]++] = func;
+		}
+		
+		return new FdBiasIndex(byOffset);
+	}
+	
+	/**
+	 * Returns the functions at {@code bias} in library order. The array is shared and must not be modified.
+	 */
+	public FdFunction[] get(int bias) {
+		return (bias < 0 && -bias < byOffset.length) ? byOffset[-bias] : NONE;
+	}
+}
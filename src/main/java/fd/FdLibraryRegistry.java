@@ -0,0 +1,139 @@
+package fd;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import ghidra.framework.Application;
+
+/**
+ * JVM-wide registry of the library function tables, shared by the analyzer
+ * and the loaders. Only the library names are read up front, from the SFD
+ * database or from the headers of the SFD files, a table is loaded the first
+ * time it is asked for. Names are compared ignoring case.
+ */
+public final class FdLibraryRegistry {
+	
+	private static final class Holder {
+		static final FdLibraryRegistry INSTANCE = new FdLibraryRegistry();
+	}
+	
+	private final List<String> names = new ArrayList<>();
+	private final Map<String, Integer> index = new HashMap<>();
+	private final Map<String, File> files = new HashMap<>();
+	private final Map<String, FdLibFunctions> tables = new ConcurrentHashMap<>();
+	private SfdDatabase db;
+	
+	private FdLibraryRegistry() {
+		try {
+			db = SfdDatabase.open(Application.getModuleDataFile(SfdDatabase.FILE_NAME).getFile(false));
+			
+			for (String lib : db.getLibraryNames()) {
+				add(lib, null);
+			}
+			return;
+		} catch (IOException e) {
+			db = null;
+		}
+		
+		try {
+			File[] sfds = Application.getModuleDataSubDirectory("sfd").getFile(false).listFiles((dir, name) -> name.endsWith(".sfd"));
+			Arrays.sort(sfds);
+			
+			for (File sfd : sfds) {
+				add(readLibName(sfd), sfd);
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+	
+	public static FdLibraryRegistry getInstance() {
+		return Holder.INSTANCE;
+	}
+	
+	private void add(String lib, File file) {
+		String key = lib.toLowerCase();
+		
+		if (index.putIfAbsent(key, names.size()) == null) {
+			names.add(key);
+			
+			if (file != null) {
+				files.put(key, file);
+			}
+		}
+	}
+	
+	/**
+	 * Returns the library name an SFD file declares, without parsing its functions.
+	 */
+	private static String readLibName(File sfd) throws IOException {
+		String name = sfd.getName();
+		name = name.substring(0, name.lastIndexOf('.'));
+		
+		try (BufferedReader reader = new BufferedReader(new FileReader(sfd))) {
+			String line;
+			
+			while ((line = reader.readLine()) != null) {
+				if (line.startsWith("==libname")) {
+					return line.substring("==libname".length() + 1).replace('.', '_');
+				}
+				
+				if (line.startsWith("==bias") || line.startsWith("==end")) {
+					break;
+				}
+			}
+		}
+		
+		return name;
+	}
+	
+	/**
+	 * Returns the lower case names of all libraries, in registry order.
+	 */
+	public List<String> getLibraryNames() {
+		return Collections.unmodifiableList(names);
+	}
+	
+	/**
+	 * Returns the position of {@code lib} in {@link #getLibraryNames()}, -1 if there is no such library.
+	 */
+	public int indexOf(String lib) {
+		return index.getOrDefault(lib.toLowerCase(), -1);
+	}
+	
+	/**
+	 * Returns the function table of {@code lib}, loading it on first use. Returns
+	 * null if there is no such library or it can't be read.
+	 */
+	public FdLibFunctions getLibrary(String lib) {
+		String key = lib.toLowerCase();
+		
+		if (!index.containsKey(key)) {
+			return null;
+		}
+		
+		return tables.computeIfAbsent(key, this::load);
+	}
+	
+	private FdLibFunctions load(String key) {
+		if (db == null) {
+			return FdParser.readSfdFile(files.get(key).getPath());
+		}
+		
+		try {
+			return db.getLibrary(key);
+		} catch (IOException e) {
+			e.printStackTrace();
+			return null;
+		}
+	}
+}
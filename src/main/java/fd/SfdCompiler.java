@@ -0,0 +1,132 @@
+package fd;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Build-time compiler of the {@code data/sfd} files into the binary database read
+ * by {@link SfdDatabase}. Run it through the {@code compileSfd} Gradle task
+ * whenever an SFD file changes.
+ */
+public final class SfdCompiler {
+	
+	private final ByteArrayOutputStream stringBytes = new ByteArrayOutputStream();
+	private final Map<String, Integer> stringOffsets = new HashMap<>();
+	
+	private SfdCompiler() {
+	}
+	
+	public static void main(String[] args) throws IOException {
+		if (args.length != 2) {
+			System.err.println("usage: SfdCompiler <sfd directory> <output file>");
+			System.exit(1);
+		}
+		
+		File[] files = new File(args[0]).listFiles((dir, name) -> name.endsWith(".sfd"));
+		
+		if (files == null) {
+			throw new IOException(String.format("Can't list %s", args[0]));
+		}
+		
+		// sorted so the output does not depend on the file system order
+		Arrays.sort(files);
+		
+		List<FdLibFunctions> libs = new ArrayList<>();
+		
+		for (File file : files) {
+			FdLibFunctions lib = FdParser.readSfdFile(file.getPath());
+			
+			if (lib == null) {
+				throw new IOException(String.format("Can't parse %s", file));
+			}
+			
+			libs.add(lib);
+		}
+		
+		try (OutputStream out = new FileOutputStream(args[1])) {
+			write(libs, out);
+		}
+		
+		System.out.format("Compiled %d libraries into %s%n", libs.size(), args[1]);
+	}
+	
+	public static void write(List<FdLibFunctions> libs, OutputStream out) throws IOException {
+		new SfdCompiler().compile(libs, out);
+	}
+	
+	private void compile(List<FdLibFunctions> libs, OutputStream out) throws IOException {
+		ByteArrayOutputStream records = new ByteArrayOutputStream();
+		DataOutputStream rec = new DataOutputStream(records);
+		int[] offsets = new int[libs.size()];
+		int directoryEnd = SfdDatabase.HEADER_SIZE + libs.size() * SfdDatabase.LIB_ENTRY_SIZE;
+		
+		for (int i = 0; i < libs.size(); ++i) {
+			offsets[i] = directoryEnd + rec.size();
+			
+			for (FdFunction func : libs.get(i).getFunctions()) {
+				rec.writeInt(intern(func.getName(false)));
+				rec.writeInt(intern(func.getReturnType()));
+				rec.writeInt(func.getBias());
+				rec.writeInt(func.getArgs().size());
+				
+				for (FdFunction.Arg arg : func.getArgs()) {
+					rec.writeInt(intern(arg.name));
+					rec.writeInt(intern(arg.type));
+					rec.writeInt(intern(arg.reg));
+				}
+			}
+		}
+		
+		DataOutputStream data = new DataOutputStream(out);
+		data.writeInt(SfdDatabase.MAGIC);
+		data.writeInt(SfdDatabase.VERSION);
+		data.writeInt(libs.size());
+		data.writeInt(directoryEnd + rec.size());
+		
+		for (int i = 0; i < libs.size(); ++i) {
+			FdLibFunctions lib = libs.get(i);
+			data.writeInt(intern(lib.getBaseName()));
+			data.writeInt(lib.getFunctions().length);
+			data.writeInt(offsets[i]);
+		}
+		
+		records.writeTo(data);
+		stringBytes.writeTo(data);
+		data.flush();
+	}
+	
+	private int intern(String s) throws IOException {
+		if (s == null) {
+			return -1;
+		}
+		
+		Integer offset = stringOffsets.get(s);
+		
+		if (offset != null) {
+			return offset;
+		}
+		
+		byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+		
+		if (bytes.length > 0xFFFF) {
+			throw new IOException(String.format("String too long: %s", s.substring(0, 32)));
+		}
+		
+		offset = stringBytes.size();
+		stringBytes.write(bytes.length >> 8);
+		stringBytes.write(bytes.length);
+		stringBytes.write(bytes);
+		stringOffsets.put(s, offset);
+		return offset;
+	}
+}
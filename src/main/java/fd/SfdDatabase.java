@@ -0,0 +1,134 @@
+package fd;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Read side of the binary SFD database written by {@link SfdCompiler}. The file
+ * is memory-mapped, only the header and the library directory are read when
+ * it is opened, the functions of a library are decoded on first request.
+ *
+ * <pre>
+ * header:    magic, version, library count, string table offset
+ * directory: per library name, function count, function records offset
+ * function:  name, return type, bias, argument count, then per argument name, type, register
+ * strings:   u16 length and UTF-8 bytes, referenced by offset into the table, -1 is null
+ * </pre>
+ * All values are big-endian ints unless noted.
+ */
+public final class SfdDatabase {
+	
+	static final int MAGIC = 0x53464442; // SFDB
+	static final int VERSION = 1;
+	static final int HEADER_SIZE = 16;
+	static final int LIB_ENTRY_SIZE = 12;
+	
+	public static final String FILE_NAME = "sfd.bin";
+	
+	private final ByteBuffer buf;
+	private final int strings;
+	private final String[] libs;
+	private final Map<String, Integer> libIndex = new HashMap<>();
+	
+	private SfdDatabase(ByteBuffer buf) throws IOException {
+		this.buf = buf;
+		
+		if (buf.capacity() < HEADER_SIZE || buf.getInt(0) != MAGIC) {
+			throw new IOException("Not an SFD database");
+		}
+		
+		if (buf.getInt(4) != VERSION) {
+			throw new IOException(String.format("Unsupported SFD database version: %d", buf.getInt(4)));
+		}
+		
+		int count = buf.getInt(8);
+		strings = buf.getInt(12);
+		
+		if (count < 0 || strings < HEADER_SIZE + count * LIB_ENTRY_SIZE || strings > buf.capacity()) {
+			throw new IOException("Corrupt SFD database header");
+		}
+		
+		libs = new String[count];
+		
+		for (int i = 0; i < count; ++i) {
+			libs[i] = getString(buf.getInt(HEADER_SIZE + i * LIB_ENTRY_SIZE));
+			libIndex.put(libs[i].toLowerCase(), i);
+		}
+	}
+	
+	public static SfdDatabase open(File file) throws IOException {
+		try (FileChannel ch = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			// the mapping stays valid after the channel is closed
+			return new SfdDatabase(ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size()));
+		}
+	}
+	
+	/**
+	 * Returns the base names of the libraries, in the order they were compiled.
+	 */
+	public String[] getLibraryNames() {
+		return libs.clone();
+	}
+	
+	/**
+	 * Decodes the functions of library {@code name}, compared ignoring case. Returns
+	 * null if the database has no such library.
+	 */
+	public FdLibFunctions getLibrary(String name) throws IOException {
+		Integer index = libIndex.get(name.toLowerCase());
+		
+		if (index == null) {
+			return null;
+		}
+		
+		int entry = HEADER_SIZE + index * LIB_ENTRY_SIZE;
+		String lib = libs[index];
+		int count = buf.getInt(entry + 4);
+		int pos = buf.getInt(entry + 8);
+		
+		FdLibFunctions table = new FdLibFunctions(lib);
+		
+		try {
+			for (int i = 0; i < count; ++i) {
+				FdFunction func = new FdFunction(lib, getString(buf.getInt(pos)), getString(buf.getInt(pos + 4)), buf.getInt(pos + 8), false);
+				int args = buf.getInt(pos + 12);
+				pos += 16;
+				
+				for (int j = 0; j < args; ++j) {
+					func.addArg(getString(buf.getInt(pos)), getString(buf.getInt(pos + 4)), getString(buf.getInt(pos + 8)));
+					pos += 12;
+				}
+				
+				table.addFunction(func);
+			}
+		} catch (IOException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new IOException(String.format("Corrupt SFD database entry for %s", lib), e);
+		}
+		
+		return table;
+	}
+	
+	private String getString(int offset) throws IOException {
+		if (offset == -1) {
+			return null;
+		}
+		
+		int pos = strings + offset;
+		
+		if (offset < 0 || pos + 2 > buf.capacity()) {
+			throw new IOException("Corrupt SFD database string");
+		}
+		
+		byte[] bytes = new byte[buf.getShort(pos) & 0xFFFF];
+		buf.get(pos + 2, bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+}
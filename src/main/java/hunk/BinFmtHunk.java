@@ -1,15 +1,67 @@
 package hunk;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 
+import ghidra.app.util.bin.BinaryReader;
+import ghidra.app.util.bin.ByteProvider;
 import ghidra.app.util.importer.MessageLog;
 
 public final class BinFmtHunk {
+	
+	/**
+	 * Upper bound for the memory size of a hunk, no Amiga program needs more
+	 * and a corrupt size must not turn into a huge allocation.
+	 */
+	static final int MAX_SEGMENT_SIZE = 0x10000000;
 
+	/**
+	 * Loads the image of a hunk file, a file imported before is restored from
+	 * {@link BinImageCache} without parsing it again.
+	 */
+	public static BinImage loadImage(ByteProvider provider, MessageLog log) {
+		BinImageCache cache = BinImageCache.getInstance();
+		String key = null;
+		
+		try {
+			key = BinImageCache.hash(provider);
+			BinImage bi = cache.get(key, provider);
+			
+			if (bi != null) {
+				return bi;
+			}
+		} catch (IOException e) {
+			log.appendMsg(String.format("Hunk image cache unavailable: %s", e.getMessage()));
+		}
+		
+		BinaryReader reader = new BinaryReader(provider, false);
+		HunkBlockFile hbf;
+		
+		try {
+			hbf = new HunkBlockFile(reader, HunkBlockFile.peekType(reader) == HunkBlockType.TYPE_LOADSEG);
+		} catch (HunkParseError e) {
+			log.appendException(e);
+			return null;
+		}
+		
+		BinImage bi = loadImage(hbf, log);
+		
+		if (bi != null && key != null) {
+			cache.put(key, bi);
+		}
+		
+		return bi;
+	}
+	
 	public static BinImage loadImage(HunkBlockFile hbf, MessageLog log) {
 		try {
+			if (hbf.getHunkBlockType() != HunkBlockType.TYPE_LOADSEG) {
+				// object files and link libraries are linked unit by unit
+				return HunkLinker.link(hbf);
+			}
+			
 			HunkLoadSegFile lsf = new HunkLoadSegFile();
 			lsf.parseBlockFile(hbf);
 			return createImageFromLoadSegFile(lsf);
@@ -23,73 +75,94 @@ public final class BinFmtHunk {
 		int num = 0;
 		
 		BinImage bi = new BinImage();
+		bi.setExecutable(true);
 		
 		HunkSegment[] segs = lsf.getSegments();
 		
 		for (HunkSegment seg : segs) {
-			int size = seg.getSizeLongs() * 4;
-			byte[] data;
-
-			HunkSegmentBlock segBlock = seg.getSegmentBlock();
-			if (segBlock == null) {
-				continue;
-			}
-
-			data = segBlock.getData();
+			Segment bs = createSegment(seg, num);
 			
-			SegmentType segType;
-			if (seg.getHunkType() == HunkType.HUNK_CODE) {
-				segType = SegmentType.SEGMENT_TYPE_CODE;
-			} else if (seg.getHunkType() == HunkType.HUNK_DATA) {
-				segType = SegmentType.SEGMENT_TYPE_DATA;
-			} else if (seg.getHunkType() == HunkType.HUNK_BSS ) {
-				segType = SegmentType.SEGMENT_TYPE_BSS;
-			} else if (seg.getHunkType() == HunkType.HUNK_SYMBOL) {
-				segType = SegmentType.SEGMENT_TYPE_DATA;
-			} else {
-				throw new HunkParseError(String.format("Unknown Segment Type for BinImage: %d", seg.getHunkType().getValue()));
+			if (bs != null) {
+				num++;
+				bi.addSegment(bs);
 			}
-			
-			Segment bs = new Segment(segType, size, data, num++);
-			bs.setSegmentInfo(seg);
-			bi.addSegment(bs);
 		}
 		
 		Segment[] biSegs = bi.getSegments();
 		
 		for (Segment seg : biSegs) {
-			HunkSegment hSeg = seg.getSegmentInfo();
-			HunkRelocBlock[] relocBlocks = hSeg.getRelocBlocks();
-			HunkSymbolBlock[] symbolBlocks = hSeg.getSymbolBlocks();
-			
-			if (relocBlocks != null) {
-				addHunkRelocs(relocBlocks, seg, biSegs);
-			}
-			if(symbolBlocks != null) {
-				addHunkSymbols(symbolBlocks, seg, biSegs);
-			}
+			addSegmentInfo(seg, biSegs, biSegs);
+		}
+		
+		if (lsf.getOverlay() != null) {
+			bi.setOverlayTable(lsf.getOverlay().getTable());
 		}
 		
 		return bi;
 	}
 	
+	static Segment createSegment(HunkSegment seg, int num) throws HunkParseError {
+		if (seg.getSizeLongs() < 0 || seg.getSizeLongs() > MAX_SEGMENT_SIZE / 4) {
+			throw new HunkParseError(String.format("Invalid hunk size: %d longs", seg.getSizeLongs()));
+		}
+		
+		int size = seg.getSizeLongs() * 4;
+		ByteProvider data;
+
+		HunkSegmentBlock segBlock = seg.getSegmentBlock();
+		if (segBlock == null) {
+			return null;
+		}
+
+		data = segBlock.getData();
+		
+		SegmentType segType;
+		if (seg.getHunkType() == HunkType.HUNK_CODE) {
+			segType = SegmentType.SEGMENT_TYPE_CODE;
+		} else if (seg.getHunkType() == HunkType.HUNK_DATA) {
+			segType = SegmentType.SEGMENT_TYPE_DATA;
+		} else if (seg.getHunkType() == HunkType.HUNK_BSS ) {
+			segType = SegmentType.SEGMENT_TYPE_BSS;
+		} else if (seg.getHunkType() == HunkType.HUNK_SYMBOL) {
+			segType = SegmentType.SEGMENT_TYPE_DATA;
+		} else {
+			throw new HunkParseError(String.format("Unknown Segment Type for BinImage: %d", seg.getHunkType().getValue()));
+		}
+		
+		Segment bs = new Segment(segType, size, data, segBlock.getDataOffset(), num);
+		bs.setSegmentInfo(seg);
+		return bs;
+	}
+	
+	/**
+	 * Adds the relocations and symbols of a segment.
+	 * 
+	 * @param hunkSegs segments by hunk number, the relocation targets
+	 * @param localSegs segments of the same load unit, searched for symbol hunks
+	 */
+	static void addSegmentInfo(Segment seg, Segment[] hunkSegs, Segment[] localSegs) throws HunkParseError {
+		HunkSegment hSeg = seg.getSegmentInfo();
+		HunkRelocBlock[] relocBlocks = hSeg.getRelocBlocks();
+		HunkSymbolBlock[] symbolBlocks = hSeg.getSymbolBlocks();
+		
+		if (relocBlocks != null) {
+			addHunkRelocs(relocBlocks, seg, hunkSegs);
+		}
+		if(symbolBlocks != null) {
+			addHunkSymbols(symbolBlocks, seg, localSegs);
+		}
+	}
+	
 	private static void addHunkRelocs(HunkRelocBlock[] relocBlocks, Segment seg, Segment[] allSegs) throws HunkParseError {
 		for (HunkRelocBlock blk : relocBlocks) {
 			for (RelocData r : blk.getRelocs()) {
 				int hunkNum = r.getHunkNum();
-				Reloc[] offsets = r.getRelocs();
 				
-				if (hunkNum >= allSegs.length) {
+				if (hunkNum < 0 || hunkNum >= allSegs.length || allSegs[hunkNum] == null) {
 					throw new HunkParseError("Invalid hunk segment number");
 				}
 				
-				Segment toSeg = allSegs[hunkNum];
-				
-				List<Reloc> rl = new ArrayList<>();
-				rl.addAll(Arrays.asList(seg.getRelocations(toSeg)));
-				rl.addAll(Arrays.asList(offsets));
-				
-				seg.addRelocations(toSeg, rl);
+				seg.addRelocations(allSegs[hunkNum], blk.getHunkType(), r.getOffsets());
 			}
 		}
 	}
@@ -6,9 +6,12 @@ import java.util.List;
 public class BinImage {
 
 	private final List<Segment> segments;
+	private int[] overlayTable;
+	private boolean executable;
 
 	BinImage() {
 		segments = new ArrayList<>();
+		overlayTable = null;
 	}
 
 	void addSegment(Segment seg) {
@@ -19,4 +22,30 @@ public class BinImage {
 	public Segment[] getSegments() {
 		return segments.toArray(Segment[]::new);
 	}
+	
+	void setOverlayTable(int[] overlayTable) {
+		this.overlayTable = overlayTable;
+	}
+	
+	/**
+	 * Returns the raw HUNK_OVERLAY table of the root, null if the file has no overlays.
+	 */
+	int[] getOverlayTable() {
+		return overlayTable;
+	}
+	
+	public boolean hasOverlays() {
+		return overlayTable != null;
+	}
+	
+	void setExecutable(boolean executable) {
+		this.executable = executable;
+	}
+	
+	/**
+	 * Returns true for a LoadSeg executable, false for an image linked from object or library units.
+	 */
+	public boolean isExecutable() {
+		return executable;
+	}
 }
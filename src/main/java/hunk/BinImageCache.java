@@ -0,0 +1,545 @@
+package hunk;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import ghidra.app.util.bin.ByteProvider;
+import ghidra.app.util.bin.ByteProviderWrapper;
+import ghidra.framework.Application;
+
+/**
+ * Cache of parsed {@link BinImage}s keyed by the SHA-256 of the file contents.
+ * Images are kept in a compact binary form, in memory as a small LRU and on
+ * disk under the Ghidra user cache directory. Segment payloads are not stored,
+ * a restored image points into the provider it is restored for. The disk cache
+ * drops entries unused for {@link #MAX_AGE_DAYS} and the least recently used
+ * ones past {@link #MAX_DISK_BYTES}.
+ */
+public final class BinImageCache {
+	
+	private static final int MAGIC = 0x41484943; // "AHIC"
+	private static final int VERSION = 7;
+	private static final int MAX_ENTRIES = 16;
+	static final long MAX_DISK_BYTES = 64L << 20;
+	static final int MAX_AGE_DAYS = 30;
+	
+	private static final class Holder {
+		static final BinImageCache INSTANCE = create();
+	}
+	
+	/**
+	 * Directory of the disk cache, null if entries are kept in memory only.
+	 */
+	private final File cacheDir;
+	private final Map<String, byte[]> entries;
+	
+	BinImageCache(File cacheDir) {
+		this.cacheDir = cacheDir;
+		this.entries = new LinkedHashMap<>(MAX_ENTRIES, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+			
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, byte[]> eldest) {
+				return size() > MAX_ENTRIES;
+			}
+		};
+	}
+	
+	public static BinImageCache getInstance() {
+		return Holder.INSTANCE;
+	}
+	
+	private static BinImageCache create() {
+		// without an initialized application, as in tests and headless tools, there is no cache directory
+		if (!Application.isInitialized()) {
+			return new BinImageCache(null);
+		}
+		
+		try {
+			return new BinImageCache(new File(Application.getUserCacheDirectory(), "amiga-hunk"));
+		} catch (RuntimeException e) {
+			return new BinImageCache(null);
+		}
+	}
+	
+	/**
+	 * Returns the key of the provider contents.
+	 */
+	public static String hash(ByteProvider provider) throws IOException {
+		MessageDigest digest;
+		
+		try {
+			digest = MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IOException(e);
+		}
+		
+		byte[] buf = new byte[0x10000];
+		
+		try (InputStream stream = provider.getInputStream(0)) {
+			int read;
+			
+			while ((read = stream.read(buf)) > 0) {
+				digest.update(buf, 0, read);
+			}
+		}
+		
+		StringBuilder sb = new StringBuilder();
+		
+		for (byte b : digest.digest()) {
+			sb.append(String.format("%02x", b));
+		}
+		
+		return sb.toString();
+	}
+	
+	/**
+	 * Returns the image stored for {@code key} with its segments bound to {@code provider},
+	 * or null if it is not cached.
+	 */
+	public BinImage get(String key, ByteProvider provider) {
+		byte[] bytes;
+		
+		synchronized (entries) {
+			bytes = entries.get(key);
+		}
+		
+		if (bytes == null) {
+			if (cacheDir == null) {
+				return null;
+			}
+			
+			File file = getFile(key);
+			
+			if (!file.isFile()) {
+				return null;
+			}
+			
+			try {
+				bytes = Files.readAllBytes(file.toPath());
+			} catch (IOException e) {
+				return null;
+			}
+			
+			// the modification time orders the entries for eviction
+			file.setLastModified(System.currentTimeMillis());
+			
+			synchronized (entries) {
+				entries.put(key, bytes);
+			}
+		}
+		
+		try {
+			return read(new DataInputStream(new ByteArrayInputStream(bytes)), provider);
+		} catch (IOException | RuntimeException e) {
+			// stale or damaged entry, it is replaced by the next put
+			synchronized (entries) {
+				entries.remove(key);
+			}
+			return null;
+		}
+	}
+	
+	public void put(String key, BinImage image) {
+		byte[] bytes;
+		
+		try {
+			ByteArrayOutputStream bos = new ByteArrayOutputStream();
+			write(new DataOutputStream(bos), image);
+			bytes = bos.toByteArray();
+		} catch (IOException e) {
+			return;
+		}
+		
+		synchronized (entries) {
+			entries.put(key, bytes);
+		}
+		
+		if (cacheDir == null) {
+			return;
+		}
+		
+		try {
+			Files.createDirectories(cacheDir.toPath());
+			
+			// write aside and move, a concurrent reader never sees a partial entry
+			File tmp = File.createTempFile(key, ".tmp", cacheDir);
+			Files.write(tmp.toPath(), bytes);
+			Files.move(tmp.toPath(), getFile(key).toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException e) {
+			// the disk cache is best effort
+		}
+		
+		prune(System.currentTimeMillis());
+	}
+	
+	/**
+	 * Deletes the disk entries unused for {@link #MAX_AGE_DAYS}, then the least
+	 * recently used ones until the rest fits in {@link #MAX_DISK_BYTES}.
+	 */
+	void prune(long now) {
+		File[] files = cacheDir.listFiles((dir, name) -> name.endsWith(".bin"));
+		
+		if (files == null) {
+			return;
+		}
+		
+		long minModified = now - TimeUnit.DAYS.toMillis(MAX_AGE_DAYS);
+		long total = 0;
+		
+		// newest first, once the size cap is hit everything older goes
+		Arrays.sort(files, Comparator.comparingLong(File::lastModified).reversed());
+		
+		for (File file : files) {
+			total += file.length();
+			
+			if (file.lastModified() < minModified || total > MAX_DISK_BYTES) {
+				file.delete();
+			}
+		}
+	}
+	
+	private File getFile(String key) {
+		return new File(cacheDir, key + ".bin");
+	}
+	
+	static void write(DataOutputStream out, BinImage image) throws IOException {
+		Segment[] segs = image.getSegments();
+		
+		out.writeInt(MAGIC);
+		out.writeInt(VERSION);
+		out.writeBoolean(image.isExecutable());
+		
+		int[] overlayTable = image.getOverlayTable();
+		out.writeInt((overlayTable == null) ? -1 : overlayTable.length);
+		
+		if (overlayTable != null) {
+			for (int value : overlayTable) {
+				out.writeInt(value);
+			}
+		}
+		
+		out.writeInt(segs.length);
+		
+		for (Segment seg : segs) {
+			out.writeByte(seg.getType().ordinal());
+			out.writeInt(seg.getSize());
+			out.writeInt(seg.getNum());
+			out.writeLong(seg.getDataOffset());
+			out.writeLong((seg.getData() == null) ? 0 : seg.getData().length());
+			writeString(out, seg.getHunkName());
+			
+			List<XDefinition> defs = seg.getDefinitions();
+			out.writeInt((defs == null) ? -1 : defs.size());
+			
+			if (defs != null) {
+				for (XDefinition def : defs) {
+					out.writeBoolean(def.isGlobal());
+					out.writeBoolean(def.isAbsolute());
+					writeString(out, def.getName());
+					out.writeInt(def.getOffset());
+				}
+			}
+			
+			HunkDebugLine[] lineTables = seg.getLineTables();
+			out.writeInt(lineTables.length);
+			
+			for (HunkDebugLine lines : lineTables) {
+				writeString(out, lines.getSourceFile());
+				out.writeInt(lines.size());
+				
+				for (int j = 0; j < lines.size(); ++j) {
+					out.writeInt(lines.getOffset(j));
+					out.writeInt(lines.getLine(j));
+				}
+			}
+			
+			HunkDebugStabs[] stabs = seg.getStabs();
+			out.writeInt(stabs.length);
+			
+			for (HunkDebugStabs stab : stabs) {
+				out.writeLong(stab.getFileOffset());
+				out.writeLong(stab.getData().length());
+			}
+			
+			List<XReference> refs = seg.getReferences();
+			out.writeInt((refs == null) ? -1 : refs.size());
+			
+			if (refs != null) {
+				for (XReference ref : refs) {
+					writeString(out, ref.getName());
+					out.writeByte(ref.getType().ordinal());
+					out.writeByte(ref.getWidth());
+					out.writeInt(ref.getOffsets().size());
+					
+					for (int offset : ref.getOffsets()) {
+						out.writeInt(offset);
+					}
+				}
+			}
+		}
+		
+		for (Segment seg : segs) {
+			RelocIndex index = seg.getRelocIndex();
+			Segment[] targets = index.getTargets();
+			out.writeInt(targets.length);
+			
+			for (int t = 0; t < targets.length; ++t) {
+				RelocTable[] tables = index.getTables(t);
+				
+				out.writeInt(targets[t].getId());
+				out.writeInt(tables.length);
+				
+				for (RelocTable table : tables) {
+					out.writeInt(table.getType().getValue());
+					out.writeInt(table.size());
+					
+					for (int i = 0; i < table.size(); ++i) {
+						out.writeInt(table.getOffset(i));
+					}
+				}
+			}
+			
+			targets = seg.getSymbolsToSegments();
+			out.writeInt(targets.length);
+			
+			for (Segment target : targets) {
+				Symbol[] symbols = seg.getSymbols(target);
+				
+				out.writeInt(target.getId());
+				out.writeInt(symbols.length);
+				
+				for (Symbol symbol : symbols) {
+					writeString(out, symbol.getName());
+					out.writeInt(symbol.getOffset());
+				}
+			}
+		}
+		
+		out.flush();
+	}
+	
+	static BinImage read(DataInputStream in, ByteProvider provider) throws IOException {
+		if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+			throw new IOException("Unsupported cache entry");
+		}
+		
+		SymbolPool pool = new SymbolPool();
+		BinImage image = new BinImage();
+		image.setExecutable(in.readBoolean());
+		
+		int overlayLongs = in.readInt();
+		
+		if (overlayLongs != -1) {
+			if (overlayLongs < 0 || overlayLongs * 4L > in.available()) {
+				throw new IOException("Truncated cache entry");
+			}
+			
+			int[] overlayTable = new int[overlayLongs];
+			
+			for (int i = 0; i < overlayLongs; ++i) {
+				overlayTable[i] = in.readInt();
+			}
+			
+			image.setOverlayTable(overlayTable);
+		}
+		
+		int count = in.readInt();
+		SegmentType[] types = SegmentType.values();
+		
+		for (int i = 0; i < count; ++i) {
+			SegmentType type = types[in.readUnsignedByte()];
+			int size = in.readInt();
+			int num = in.readInt();
+			long dataOffset = in.readLong();
+			long dataSize = in.readLong();
+			String name = readString(in);
+			
+			if (dataOffset + dataSize > provider.length()) {
+				throw new IOException("Cache entry does not match the file");
+			}
+			
+			ByteProvider data = (dataOffset < 0) ? null : new ByteProviderWrapper(provider, dataOffset, dataSize);
+			Segment seg = new Segment(type, size, data, dataOffset, num);
+			
+			List<XDefinition> defs = null;
+			int defsCount = in.readInt();
+			
+			if (defsCount > in.available()) {
+				throw new IOException("Truncated cache entry");
+			}
+			
+			if (defsCount >= 0) {
+				defs = new ArrayList<>(defsCount);
+				
+				for (int j = 0; j < defsCount; ++j) {
+					boolean isGlobal = in.readBoolean();
+					boolean isAbsolute = in.readBoolean();
+					int nameId = pool.intern(readString(in));
+					defs.add(new XDefinition(isGlobal, isAbsolute, pool, nameId, in.readInt()));
+				}
+			}
+			
+			HunkDebugLine[] lineTables = new HunkDebugLine[readCount(in, 5)];
+			
+			for (int j = 0; j < lineTables.length; ++j) {
+				String sourceFile = readString(in);
+				int[] offsets = new int[readCount(in, 8)];
+				int[] lines = new int[offsets.length];
+				
+				for (int k = 0; k < offsets.length; ++k) {
+					offsets[k] = in.readInt();
+					lines[k] = in.readInt();
+				}
+				
+				lineTables[j] = new HunkDebugLine(sourceFile, offsets, lines);
+			}
+			
+			seg.setLineTables(lineTables);
+			
+			HunkDebugStabs[] stabs = new HunkDebugStabs[readCount(in, 16)];
+			
+			for (int j = 0; j < stabs.length; ++j) {
+				long stabsOffset = in.readLong();
+				long stabsSize = in.readLong();
+				
+				if (stabsOffset < 0 || stabsSize < 8 || stabsOffset + stabsSize > provider.length()) {
+					throw new IOException("Cached stabs exceed the file size");
+				}
+				
+				stabs[j] = new HunkDebugStabs(new ByteProviderWrapper(provider, stabsOffset, stabsSize), stabsOffset);
+			}
+			
+			seg.setStabs(stabs);
+			
+			List<XReference> refs = null;
+			int refsCount = in.readInt();
+			
+			if (refsCount > in.available()) {
+				throw new IOException("Truncated cache entry");
+			}
+			
+			if (refsCount >= 0) {
+				refs = new ArrayList<>(refsCount);
+				
+				for (int j = 0; j < refsCount; ++j) {
+					int nameId = pool.intern(readString(in));
+					XReferenceType refType = XReferenceType.values()[in.readUnsignedByte()];
+					int width = in.readUnsignedByte();
+					int offsetsCount = readCount(in, 4);
+					List<Integer> offsets = new ArrayList<>(offsetsCount);
+					
+					for (int k = 0; k < offsetsCount; ++k) {
+						offsets.add(in.readInt());
+					}
+					
+					refs.add(new XReference(pool, nameId, refType, offsets, width));
+				}
+			}
+			
+			seg.setExternals(name, defs, refs);
+			image.addSegment(seg);
+		}
+		
+		Segment[] segs = image.getSegments();
+		Map<Integer, Segment> byId = new HashMap<>();
+		
+		for (Segment seg : segs) {
+			byId.put(seg.getId(), seg);
+		}
+		
+		for (Segment seg : segs) {
+			int targets = in.readInt();
+			
+			for (int i = 0; i < targets; ++i) {
+				Segment target = getTarget(byId, in.readInt());
+				int tables = in.readInt();
+				
+				for (int j = 0; j < tables; ++j) {
+					HunkType type = HunkType.fromInteger(in.readInt());
+					
+					if (type == null || !HunkRelocBlock.isRelocType(type)) {
+						throw new IOException("Wrong cached relocation type");
+					}
+					
+					int[] offsets = new int[readCount(in, 4)];
+					
+					for (int k = 0; k < offsets.length; ++k) {
+						offsets[k] = in.readInt();
+					}
+					
+					seg.addRelocations(target, type, offsets);
+				}
+			}
+			
+			targets = in.readInt();
+			
+			for (int i = 0; i < targets; ++i) {
+				Segment target = getTarget(byId, in.readInt());
+				int symbolsCount = readCount(in, 5);
+				List<Symbol> symbols = new ArrayList<>(symbolsCount);
+				
+				for (int j = 0; j < symbolsCount; ++j) {
+					int nameId = pool.intern(readString(in));
+					symbols.add(new Symbol(in.readInt(), pool, nameId));
+				}
+				
+				seg.addSymbols(target, symbols);
+			}
+		}
+		
+		return image;
+	}
+	
+	/**
+	 * Reads an element count and checks it against the bytes left in the entry.
+	 */
+	private static int readCount(DataInputStream in, int elementSize) throws IOException {
+		int count = in.readInt();
+		
+		if (count < 0 || (long)count * elementSize > in.available()) {
+			throw new IOException("Truncated cache entry");
+		}
+		
+		return count;
+	}
+	
+	private static Segment getTarget(Map<Integer, Segment> byId, int id) throws IOException {
+		Segment target = byId.get(id);
+		
+		if (target == null) {
+			throw new IOException(String.format("Invalid segment id in cache entry: %d", id));
+		}
+		
+		return target;
+	}
+	
+	private static void writeString(DataOutputStream out, String s) throws IOException {
+		out.writeBoolean(s != null);
+		
+		if (s != null) {
+			out.writeUTF(s);
+		}
+	}
+	
+	private static String readString(DataInputStream in) throws IOException {
+		return in.readBoolean() ? in.readUTF() : null;
+	}
+}
@@ -0,0 +1,21 @@
+package hunk;
+
+/**
+ * Unpacker for one cruncher format, registered with {@link Decrunchers}.
+ */
+public interface Decruncher {
+	
+	String getName();
+	
+	/**
+	 * Returns the length of the packed stream that starts the file as its header
+	 * declares it, or -1 when {@code header} is not of this format. {@code header}
+	 * holds at most {@link Decrunchers#HEADER_SIZE} bytes from the start of the file.
+	 */
+	long getStreamLength(byte[] header, long fileLength);
+	
+	/**
+	 * Unpacks {@code stream}, the bytes {@link #getStreamLength} declared.
+	 */
+	byte[] decrunch(byte[] stream) throws HunkParseError;
+}
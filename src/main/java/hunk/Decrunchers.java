@@ -0,0 +1,194 @@
+package hunk;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import ghidra.app.util.bin.BinaryReader;
+import ghidra.app.util.bin.ByteArrayProvider;
+import ghidra.app.util.bin.ByteProvider;
+import ghidra.app.util.importer.MessageLog;
+
+/**
+ * Decrunch stage run before the hunk parser. A file is unpacked when it starts
+ * with the header of a known packed stream, or when it is an executable whose
+ * first code hunk starts with a decrunch stub that points at such a header.
+ * Only the stream range that header declares is read, into memory.
+ */
+public final class Decrunchers {
+	
+	static final int MAX_UNPACKED_SIZE = 0x1000000;
+	static final int HEADER_SIZE = 16;
+	static final int STUB_SIZE = 0x200;
+	private static final int MAX_DEPTH = 4;
+	
+	private static final List<Decruncher> DECRUNCHERS = new CopyOnWriteArrayList<>(List.of(
+		new PowerPackerDecruncher(),
+		new ImploderDecruncher(),
+		new ShrinklerDecruncher()));
+	
+	private Decrunchers() {
+	}
+	
+	public static void register(Decruncher decruncher) {
+		DECRUNCHERS.add(decruncher);
+	}
+	
+	/**
+	 * Returns the decruncher whose header starts the file, or null. Reads at most
+	 * {@link #HEADER_SIZE} bytes.
+	 */
+	public static Decruncher identify(ByteProvider provider) throws IOException {
+		return identify(readHeader(provider), provider.length());
+	}
+	
+	private static byte[] readHeader(ByteProvider provider) throws IOException {
+		return provider.readBytes(0, Math.min(provider.length(), HEADER_SIZE));
+	}
+	
+	private static Decruncher identify(byte[] header, long length) {
+		for (Decruncher decruncher : DECRUNCHERS) {
+			if (decruncher.getStreamLength(header, length) >= 0) {
+				return decruncher;
+			}
+		}
+		
+		return null;
+	}
+	
+	/**
+	 * Returns the unpacked hunk file, or {@code provider} itself when it doesn't
+	 * start with a packed stream that unpacks to a hunk file.
+	 */
+	public static ByteProvider unpack(ByteProvider provider, MessageLog log) throws IOException {
+		for (int depth = 0; depth < MAX_DEPTH; ++depth) {
+			ByteProvider unpacked = unpackOnce(provider, log);
+			
+			if (unpacked == null) {
+				break;
+			}
+			
+			provider = unpacked;
+		}
+		
+		return provider;
+	}
+	
+	private static ByteProvider unpackOnce(ByteProvider provider, MessageLog log) throws IOException {
+		byte[] header = readHeader(provider);
+		long length = provider.length();
+		Decruncher decruncher = identify(header, length);
+		
+		if (decruncher != null) {
+			return decrunch(decruncher, provider, 0, decruncher.getStreamLength(header, length), length, log);
+		}
+		
+		long[] code = findFirstCode(provider);
+		
+		if (code == null) {
+			return null;
+		}
+		
+		byte[] stub = provider.readBytes(code[0], Math.min(code[1], STUB_SIZE));
+		
+		for (int pos = 0; pos + 4 <= stub.length; pos += 2) {
+			long target = getLeaTarget(stub, pos);
+			
+			if (target < 0 || target + HEADER_SIZE > code[1]) {
+				continue;
+			}
+			
+			long available = code[1] - target;
+			header = provider.readBytes(code[0] + target, HEADER_SIZE);
+			decruncher = identify(header, available);
+			
+			if (decruncher != null) {
+				return decrunch(decruncher, provider, code[0] + target, decruncher.getStreamLength(header, available), available, log);
+			}
+		}
+		
+		return null;
+	}
+	
+	/**
+	 * Returns the hunk offset a {@code lea (d16,pc),An} at {@code pos} of the stub
+	 * loads, -1 if there is no such instruction. Decrunch stubs find their stream this way.
+	 */
+	private static long getLeaTarget(byte[] stub, int pos) {
+		int op = ((stub[pos] & 0xFF) << 8) | (stub[pos + 1] & 0xFF);
+		
+		if ((op & 0xF1FF) != 0x41FA) {
+			return -1;
+		}
+		
+		short disp = (short)(((stub[pos + 2] & 0xFF) << 8) | (stub[pos + 3] & 0xFF));
+		long target = pos + 2 + disp;
+		return (target >= 0 && (target & 1) == 0) ? target : -1;
+	}
+	
+	private static ByteProvider decrunch(Decruncher decruncher, ByteProvider provider, long offset, long streamLength, long available, MessageLog log) throws IOException {
+		if (streamLength > available) {
+			log.appendMsg(String.format("%s stream is truncated: %d of %d bytes", decruncher.getName(), available, streamLength));
+			return null;
+		}
+		
+		if (streamLength > MAX_UNPACKED_SIZE) {
+			log.appendMsg(String.format("%s stream is too large: %d bytes", decruncher.getName(), streamLength));
+			return null;
+		}
+		
+		try {
+			byte[] bytes = decruncher.decrunch(provider.readBytes(offset, streamLength));
+			ByteProvider unpacked = new ByteArrayProvider(provider.getName(), bytes);
+			
+			if (HunkBlockFile.probe(new BinaryReader(unpacked, false)) == HunkBlockType.TYPE_UNKNOWN && identify(unpacked) == null) {
+				log.appendMsg(String.format("Unpacked %s data is not a hunk file", decruncher.getName()));
+				return null;
+			}
+			
+			log.appendMsg(String.format("Unpacked %s data: %d bytes", decruncher.getName(), bytes.length));
+			return unpacked;
+		} catch (HunkParseError e) {
+			log.appendMsg(String.format("Can't unpack %s data: %s", decruncher.getName(), e.getMessage()));
+			return null;
+		}
+	}
+	
+	/**
+	 * Returns the file offset and size of the data of the first hunk of an
+	 * executable when it is {@code HUNK_CODE}, clamped to the file length.
+	 */
+	private static long[] findFirstCode(ByteProvider provider) throws IOException {
+		BinaryReader reader = new BinaryReader(provider, false);
+		
+		if (HunkBlockFile.peekType(reader) != HunkBlockType.TYPE_LOADSEG) {
+			return null;
+		}
+		
+		long[] range = {-1, 0};
+		
+		try {
+			HunkBlockFile.accept(reader, true, new HunkVisitor() {
+				@Override
+				public boolean onBlock(HunkType type, long offset) {
+					return range[0] < 0 && offset <= HunkBlockFile.PROBE_LIMIT;
+				}
+				
+				@Override
+				public void onSegment(HunkType type, long dataOffset, int sizeLongs) {
+					range[0] = (type == HunkType.HUNK_CODE) ? dataOffset : Long.MAX_VALUE;
+					range[1] = (sizeLongs & 0x3FFFFFFFL) * 4;
+				}
+			});
+		} catch (HunkParseError e) {
+			return null;
+		}
+		
+		if (range[0] < 0 || range[0] == Long.MAX_VALUE) {
+			return null;
+		}
+		
+		range[1] = Math.min(range[1], provider.length() - range[0]);
+		return (range[1] > 0) ? range : null;
+	}
+}
@@ -1,22 +1,51 @@
 package hunk;
 
 import java.io.IOException;
-import java.nio.ByteBuffer;
-import java.nio.charset.CharacterCodingException;
-import java.nio.charset.CodingErrorAction;
 import java.nio.charset.StandardCharsets;
 
 import ghidra.app.util.bin.BinaryReader;
+import ghidra.app.util.bin.ByteArrayProvider;
+import ghidra.app.util.bin.ByteProvider;
 
 public abstract class HunkBlock {
 	private HunkType blkId;
+	private final BinaryReader reader;
+	private final boolean isExecutable;
+	private final SymbolPool pool;
+	private boolean decoded;
 	protected int hunkSize;
 	protected int startPos;
 	
-	HunkBlock(HunkType blkId, BinaryReader reader) {
+	HunkBlock(HunkType blkId, BinaryReader reader, boolean isExecutable, SymbolPool pool) {
 		this.blkId = blkId;
+		this.reader = reader;
+		this.isExecutable = isExecutable;
+		this.pool = pool;
 		startPos = (int)reader.getPointerIndex();
 		hunkSize = 4;
+		decoded = false;
+	}
+	
+	/**
+	 * Checks a size declared in the file against the remaining file length,
+	 * before anything is allocated or skipped for it.
+	 */
+	protected static void checkRemaining(BinaryReader reader, long count) throws IOException {
+		long pos = reader.getPointerIndex();
+		
+		if (count < 0 || pos + count > reader.length()) {
+			throw new IOException(String.format("Block data exceeds file size at 0x%08X", pos));
+		}
+	}
+	
+	protected static byte[] readBytes(BinaryReader reader, long count) throws IOException {
+		checkRemaining(reader, count);
+		return reader.readNextByteArray((int)count);
+	}
+	
+	protected static void skipBytes(BinaryReader reader, long count) throws IOException {
+		checkRemaining(reader, count);
+		reader.setPointerIndex(reader.getPointerIndex() + count);
 	}
 	
 	static String readName(BinaryReader reader) throws IOException {
@@ -30,7 +59,7 @@ public abstract class HunkBlock {
 	}
 	
 	protected static String readNameSize(BinaryReader reader, int longs) throws IOException {
-		byte[] bytes = reader.readNextByteArray((longs & 0xFFFFFF) * 4);
+		byte[] bytes = readBytes(reader, (longs & 0xFFFFFF) * 4);
 		
 		if (bytes.length < (longs & 0xFFFFFF) * 4) {
 			return null;
@@ -44,24 +73,42 @@ public abstract class HunkBlock {
 			return null;
 		}
 		
+		// every byte maps to a character in ISO-8859-1, no decoder is needed
+		return new String(array, offset, getNameLength(array, offset), StandardCharsets.ISO_8859_1);
+	}
+	
+	/**
+	 * Reads a name of {@code longs} longs and returns its id in the symbol pool.
+	 */
+	protected static int readNameId(BinaryReader reader, SymbolPool pool, int longs) throws IOException {
+		byte[] bytes = readBytes(reader, (longs & 0xFFFFFF) * 4);
+		return pool.intern(bytes, 0, getNameLength(bytes, 0));
+	}
+	
+	protected static int readNameId(BinaryReader reader, SymbolPool pool) throws IOException {
+		int longsCount = reader.readNextInt();
+		
+		if (longsCount == 0) {
+			return SymbolPool.EMPTY;
+		}
+		
+		return readNameId(reader, pool, longsCount);
+	}
+	
+	protected static int getNameIdFromOffset(SymbolPool pool, byte[] array, int offset) {
+		return pool.intern(array, offset, getNameLength(array, offset));
+	}
+	
+	private static int getNameLength(byte[] array, int offset) {
 		int indexEnd = offset;
 		while (indexEnd < array.length && array[indexEnd] != 0) {
 			++indexEnd;
 		}
-		int length = indexEnd - offset;
-		if (length > 0) {
-			try {
-				return StandardCharsets.ISO_8859_1.newDecoder()
-						.onMalformedInput(CodingErrorAction.REPLACE)
-						.onUnmappableCharacter(CodingErrorAction.REPLACE)
-						.replaceWith("?")
-						.decode(ByteBuffer.wrap(array, offset, length)).toString();
-			} catch (CharacterCodingException e) {
-				// this should never happen due to CodingErrorAction.REPLACE
-				return "?".repeat(length);
-			}
-		}
-		return new String();
+		return Math.max(0, indexEnd - offset);
+	}
+	
+	protected SymbolPool getSymbolPool() {
+		return pool;
 	}
 	
 	public HunkType getHunkType() {
@@ -102,7 +149,7 @@ public abstract class HunkBlock {
 		}
 	}
 	
-	static HunkBlock fromHunkType(Object type, BinaryReader reader, boolean isExecutable) throws HunkParseError {
+	static HunkBlock fromHunkType(Object type, BinaryReader reader, boolean isExecutable, SymbolPool pool) throws HunkParseError {
 
 	    if (type == null) {
 	        return null;
@@ -110,49 +157,43 @@ public abstract class HunkBlock {
 
 		switch ((HunkType)type) {
 		case HUNK_HEADER:
-			return new HunkHeaderBlock(reader, isExecutable);
+			return new HunkHeaderBlock(reader, isExecutable, pool);
 		case HUNK_CODE:
 		case HUNK_DATA:
 		case HUNK_BSS:
-			return new HunkSegmentBlock((HunkType)type, reader, isExecutable);
+			return new HunkSegmentBlock((HunkType)type, reader, isExecutable, pool);
 		case HUNK_ABSRELOC32:
-			return new HunkRelocLongBlock((HunkType)type, reader, isExecutable, 4);
 		case HUNK_RELRELOC16:
-			return new HunkRelocLongBlock((HunkType)type, reader, isExecutable, 2);
 		case HUNK_RELRELOC8:
-			return new HunkRelocLongBlock((HunkType)type, reader, isExecutable, 1);
 		case HUNK_DREL32:
-			if (isExecutable) {
-				return new HunkRelocWordBlock((HunkType)type, reader, isExecutable, 4);
-			} else {
-				return new HunkRelocLongBlock((HunkType)type, reader, isExecutable, 4);
-			}
 		case HUNK_DREL16:
-			return new HunkRelocLongBlock((HunkType)type, reader, isExecutable, 2);
 		case HUNK_DREL8:
-			return new HunkRelocLongBlock((HunkType)type, reader, isExecutable, 1);
 		case HUNK_RELOC32SHORT:
-			return new HunkRelocWordBlock((HunkType)type, reader, isExecutable, 4);
+			if (HunkRelocBlock.isWordFormat((HunkType)type, isExecutable)) {
+				return new HunkRelocWordBlock((HunkType)type, reader, isExecutable, pool, HunkRelocBlock.getWidth((HunkType)type));
+			} else {
+				return new HunkRelocLongBlock((HunkType)type, reader, isExecutable, pool, HunkRelocBlock.getWidth((HunkType)type));
+			}
 		case HUNK_END:
-			return new HunkEndBlock(reader, isExecutable);
+			return new HunkEndBlock(reader, isExecutable, pool);
 		case HUNK_DEBUG:
-			return new HunkDebugBlock(reader, isExecutable);
+			return new HunkDebugBlock(reader, isExecutable, pool);
 		case HUNK_SYMBOL:
-			return new HunkSymbolBlock(reader, isExecutable);
+			return new HunkSymbolBlock(reader, isExecutable, pool);
 		case HUNK_OVERLAY:
-			return new HunkOverlayBlock(reader, isExecutable);
+			return new HunkOverlayBlock(reader, isExecutable, pool);
 		case HUNK_BREAK:
-			return new HunkBreakBlock(reader, isExecutable);
+			return new HunkBreakBlock(reader, isExecutable, pool);
 		case HUNK_UNIT:
-			return new HunkUnitBlock(reader, isExecutable);
+			return new HunkUnitBlock(reader, isExecutable, pool);
 		case HUNK_NAME:
-			return new HunkNameBlock(reader, isExecutable);
+			return new HunkNameBlock(reader, isExecutable, pool);
 		case HUNK_EXT:
-			return new HunkExtBlock(reader, isExecutable);
+			return new HunkExtBlock(reader, isExecutable, pool);
 		case HUNK_LIB:
-			return new HunkLibBlock(reader, isExecutable);
+			return new HunkLibBlock(reader, isExecutable, pool);
 		case HUNK_INDEX:
-			return new HunkIndexBlock(reader, isExecutable);
+			return new HunkIndexBlock(reader, isExecutable, pool);
 		default:
 			return null;
 		}
@@ -160,6 +201,55 @@ public abstract class HunkBlock {
 	
 	abstract void parse(BinaryReader reader, boolean isExecutable) throws HunkParseError;
 	
+	/**
+	 * Moves the reader past the block contents. Small blocks are decoded right
+	 * away, blocks with large payloads override this to only scan their extent
+	 * and are decoded by {@link #decode()} on first access.
+	 */
+	void skip(BinaryReader reader) throws HunkParseError {
+		parse(reader, isExecutable);
+		decoded = true;
+	}
+	
+	final synchronized void decode() throws HunkParseError {
+		if (decoded) {
+			return;
+		}
+		
+		try {
+			parse(openContents(), isExecutable);
+		} catch (HunkParseError e) {
+			throw e;
+		} catch (IOException e) {
+			throw new HunkParseError(e);
+		}
+		
+		decoded = true;
+	}
+	
+	/**
+	 * Returns a reader over the block contents for {@link #decode()}. The contents
+	 * are copied out in one transfer, so blocks can be decoded concurrently
+	 * without sharing the file reader.
+	 */
+	BinaryReader openContents() throws IOException {
+		ByteProvider provider = reader.getByteProvider();
+		byte[] bytes;
+		
+		synchronized (provider) {
+			bytes = provider.readBytes(startPos, hunkSize - 4);
+		}
+		
+		return new BinaryReader(new ByteArrayProvider(bytes), reader.isLittleEndian());
+	}
+	
+	/**
+	 * Returns a reader over the block contents at their original file offsets.
+	 */
+	final BinaryReader openFileContents() {
+		return reader.clone(startPos);
+	}
+	
 	protected void calcHunkSize(BinaryReader reader) {
 		hunkSize += reader.getPointerIndex() - startPos;
 	}
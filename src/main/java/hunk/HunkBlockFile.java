@@ -10,13 +10,75 @@ import ghidra.app.util.bin.BinaryReader;
 public class HunkBlockFile {
 	private List<Pair<Integer, HunkBlock>> blocksList;
 	private HunkBlockType blockType;
+	private final SymbolPool symbolPool;
 
+	/**
+	 * Probes stop at blocks starting past this many bytes.
+	 */
+	public static final int PROBE_LIMIT = 0x10000;
+	
 	public static boolean isHunkBlockFile(BinaryReader reader) {
 		return peekType(reader) != HunkBlockType.TYPE_UNKNOWN;
 	}
 	
+	/**
+	 * Returns the file type once the leading blocks up to the first segment were
+	 * checked against the file size, reading only a bounded part of the file.
+	 * Files that don't lead to a segment within {@link #PROBE_LIMIT} bytes are
+	 * {@link HunkBlockType#TYPE_UNKNOWN}.
+	 */
+	public static HunkBlockType probe(BinaryReader reader) {
+		HunkBlockType type = peekType(reader);
+		
+		if (type == HunkBlockType.TYPE_UNKNOWN) {
+			return type;
+		}
+		
+		boolean[] found = {false};
+		
+		try {
+			accept(reader.clone(reader.getPointerIndex()), type == HunkBlockType.TYPE_LOADSEG, new HunkVisitor() {
+				private boolean first = true;
+				
+				@Override
+				public boolean onBlock(HunkType blkType, long offset) {
+					boolean leading = first;
+					first = false;
+					
+					if (found[0] || offset > PROBE_LIMIT) {
+						return false;
+					}
+					
+					switch (blkType) {
+					case HUNK_HEADER:
+					case HUNK_UNIT:
+					case HUNK_LIB:
+						return leading;
+					case HUNK_NAME:
+					case HUNK_CODE:
+					case HUNK_DATA:
+					case HUNK_BSS:
+						return true;
+					default:
+						return false;
+					}
+				}
+				
+				@Override
+				public void onSegment(HunkType blkType, long dataOffset, int sizeLongs) {
+					found[0] = true;
+				}
+			});
+		} catch (HunkParseError e) {
+			return HunkBlockType.TYPE_UNKNOWN;
+		}
+		
+		return found[0] ? type : HunkBlockType.TYPE_UNKNOWN;
+	}
+	
 	public HunkBlockFile(BinaryReader reader, boolean isExecutable) throws HunkParseError {
 		blocksList = new ArrayList<>();
+		symbolPool = new SymbolPool();
 		blockType = peekType(reader);
 		parse(reader, isExecutable);
 	}
@@ -25,6 +87,10 @@ public class HunkBlockFile {
 		return blocksList;
 	}
 	
+	/**
+	 * Builds the block index: every block is only scanned for its type, offset
+	 * and size here, block contents are decoded on first access.
+	 */
 	private void parse(BinaryReader reader, boolean isExecutable) throws HunkParseError {
 		try {
 			long pos = reader.getPointerIndex();
@@ -32,7 +98,7 @@ public class HunkBlockFile {
 			while (pos + 4 <= reader.length()) {
 				int tag = reader.readNextInt();
 
-				HunkBlock block = HunkBlock.fromHunkType(HunkType.fromInteger(tag & HunkType.HUNK_TYPE_MASK), reader, isExecutable);
+				HunkBlock block = HunkBlock.fromHunkType(HunkType.fromInteger(tag & HunkType.HUNK_TYPE_MASK), reader, isExecutable, symbolPool);
 				
 				if (block == null) {
 					throw new HunkParseError(String.format("Unsupported hunk type: %04d", tag & HunkType.HUNK_TYPE_MASK));
@@ -47,6 +113,105 @@ public class HunkBlockFile {
 		}
 	}
 	
+	/**
+	 * Walks the blocks of a hunk file in a single pass without building the
+	 * block list, each block is decoded straight into the visitor callbacks.
+	 * Names are interned in a pool that lives for the walk only.
+	 */
+	public static void accept(BinaryReader reader, boolean isExecutable, HunkVisitor visitor) throws HunkParseError {
+		visitBlocks(reader, Long.MAX_VALUE, isExecutable, new SymbolPool(), visitor);
+	}
+	
+	private static boolean visitBlocks(BinaryReader reader, long endPos, boolean isExecutable, SymbolPool pool, HunkVisitor visitor) throws HunkParseError {
+		try {
+			long pos = reader.getPointerIndex();
+			
+			while (pos < endPos && pos + 4 <= reader.length()) {
+				int tag = reader.readNextInt();
+				HunkType type = HunkType.fromInteger(tag & HunkType.HUNK_TYPE_MASK);
+				
+				if (type == null) {
+					throw new HunkParseError(String.format("Unsupported hunk type: %04d", tag & HunkType.HUNK_TYPE_MASK));
+				}
+				
+				if (!visitor.onBlock(type, pos) || !visitBlock(type, reader, isExecutable, pool, visitor)) {
+					return false;
+				}
+				
+				long next = reader.getPointerIndex();
+				visitor.onBlockEnd(type, pos, (int)(next - pos));
+				
+				pos = next;
+			}
+		} catch (HunkParseError e) {
+			throw e;
+		} catch (IOException e) {
+			throw new HunkParseError(e);
+		}
+		
+		return true;
+	}
+	
+	private static boolean visitBlock(HunkType type, BinaryReader reader, boolean isExecutable, SymbolPool pool, HunkVisitor visitor) throws IOException {
+		switch (type) {
+		case HUNK_HEADER:
+			visitor.onHeader(HunkHeaderBlock.readHunkTable(reader));
+			break;
+		case HUNK_CODE:
+		case HUNK_DATA:
+		case HUNK_BSS:
+			HunkSegmentBlock.visit(type, reader, visitor);
+			break;
+		case HUNK_ABSRELOC32:
+		case HUNK_RELRELOC16:
+		case HUNK_RELRELOC8:
+		case HUNK_DREL32:
+		case HUNK_DREL16:
+		case HUNK_DREL8:
+		case HUNK_RELOC32SHORT:
+			HunkRelocBlock.visit(type, reader, isExecutable, visitor);
+			break;
+		case HUNK_END:
+			visitor.onEnd();
+			break;
+		case HUNK_DEBUG:
+			HunkDebugBlock.visit(reader, visitor);
+			break;
+		case HUNK_SYMBOL:
+			HunkSymbolBlock.visit(reader, pool, visitor);
+			break;
+		case HUNK_OVERLAY:
+			visitor.onOverlay(HunkOverlayBlock.readTable(reader));
+			break;
+		case HUNK_BREAK:
+			break;
+		case HUNK_UNIT:
+			visitor.onUnit(HunkBlock.readName(reader));
+			break;
+		case HUNK_NAME:
+			visitor.onName(HunkBlock.readName(reader));
+			break;
+		case HUNK_EXT:
+			HunkExtBlock.visit(reader, pool, visitor);
+			break;
+		case HUNK_LIB: {
+			int numLongs = reader.readNextInt();
+			return visitBlocks(reader, reader.getPointerIndex() + numLongs * 4L, isExecutable, pool, visitor);
+		}
+		case HUNK_INDEX:
+			HunkIndexBlock.visit(reader, pool, visitor);
+			break;
+		default:
+			throw new HunkParseError(String.format("Unsupported hunk type: %04d", type.getValue()));
+		}
+		
+		return true;
+	}
+	
+	public SymbolPool getSymbolPool() {
+		return symbolPool;
+	}
+	
 	public HunkBlockType getHunkBlockType() {
 		return blockType;
 	}
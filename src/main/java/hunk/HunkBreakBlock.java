@@ -4,10 +4,10 @@ import ghidra.app.util.bin.BinaryReader;
 
 class HunkBreakBlock extends HunkBlock {
 
-	public HunkBreakBlock(BinaryReader reader, boolean isExecutable) throws HunkParseError {
-		super(HunkType.HUNK_BREAK, reader);
+	public HunkBreakBlock(BinaryReader reader, boolean isExecutable, SymbolPool pool) throws HunkParseError {
+		super(HunkType.HUNK_BREAK, reader, isExecutable, pool);
 		
-		parse(reader, isExecutable);
+		skip(reader);
 		calcHunkSize(reader);
 	}
 
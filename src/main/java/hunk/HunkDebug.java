@@ -1,13 +1,17 @@
 package hunk;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 
 import ghidra.app.util.bin.BinaryReader;
 
 class HunkDebug {
 
-	public static DebugInfo decode(BinaryReader reader) throws HunkParseError {
+	/**
+	 * @param fileOffset file offset of the debug data, recorded for stabs so they can be read again lazily
+	 */
+	public static DebugInfo decode(BinaryReader reader, long fileOffset) throws HunkParseError {
 		long pos = reader.getPointerIndex();
 		
 		try {
@@ -17,13 +21,18 @@ class HunkDebug {
 				return null;
 			}
 		
-			reader.readNextInt();
+			int baseOffset = reader.readNextInt();
 			String tag = reader.readNextAsciiString(4);
 
 			switch (tag) {
-				case "LINE":
-					HunkBlock.readName(reader);
-					return new HunkDebugLine();
+				case "LINE": {
+					String srcFile = HunkBlock.readName(reader);
+					int count = (int)((reader.length() - reader.getPointerIndex()) / 8) * 2;
+					int[] pairs = new int[count];
+					
+					ByteBuffer.wrap(reader.readNextByteArray(count * 4)).asIntBuffer().get(pairs);
+					return new HunkDebugLine(srcFile, baseOffset, pairs);
+				}
 				case "HEAD":
 					byte[] dbgmagic = { 'D', 'B', 'G', 'V', '0', '1', 0, 0 };
 					byte[] tag2 = reader.readNextByteArray(8);
@@ -35,6 +44,10 @@ class HunkDebug {
 					reader.readNextByteArray((int) (dataSize - reader.getPointerIndex()));
 					return new HunkDebugAny();
 				default:
+					if (baseOffset == HunkDebugStabs.MAGIC) {
+						return new HunkDebugStabs(reader.getByteProvider(), fileOffset);
+					}
+					
 					reader.readNextByteArray((int) (dataSize - reader.getPointerIndex()));
 					return new HunkDebugAny();
 			}
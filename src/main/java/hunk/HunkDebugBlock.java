@@ -3,29 +3,78 @@ package hunk;
 import java.io.IOException;
 
 import ghidra.app.util.bin.BinaryReader;
+import ghidra.app.util.bin.ByteProvider;
+import ghidra.app.util.bin.ByteProviderWrapper;
 
 class HunkDebugBlock extends HunkBlock {
 
 	private byte[] debugData = null;
 	
-	public HunkDebugBlock(BinaryReader reader, boolean isExecutable) throws HunkParseError {
-		super(HunkType.HUNK_DEBUG, reader);
+	public HunkDebugBlock(BinaryReader reader, boolean isExecutable, SymbolPool pool) throws HunkParseError {
+		super(HunkType.HUNK_DEBUG, reader, isExecutable, pool);
 		
-		parse(reader, isExecutable);
+		skip(reader);
 		calcHunkSize(reader);
 	}
 
+	@Override
+	void skip(BinaryReader reader) throws HunkParseError {
+		try {
+			int numLongs = reader.readNextInt();
+			skipBytes(reader, numLongs * 4L);
+		} catch (IOException e) {
+			throw new HunkParseError(e);
+		}
+	}
+
 	@Override
 	void parse(BinaryReader reader, boolean isExecutable) throws HunkParseError {
 		try {
 			int numLongs = reader.readNextInt();
-			debugData = reader.readNextByteArray(numLongs * 4);
+			debugData = readBytes(reader, numLongs * 4L);
+		} catch (IOException e) {
+			throw new HunkParseError(e);
+		}
+	}
+	
+	static void visit(BinaryReader reader, HunkVisitor visitor) throws HunkParseError {
+		long dataOffset;
+		int size;
+		
+		try {
+			size = reader.readNextInt() * 4;
+			dataOffset = reader.getPointerIndex();
+			skipBytes(reader, size);
 		} catch (IOException e) {
 			throw new HunkParseError(e);
 		}
+		
+		visitor.onDebug(dataOffset, size);
+	}
+	
+	/**
+	 * Returns the offset of the debug data in the file the block was read from.
+	 */
+	long getDataOffset() {
+		return startPos + 4L;
+	}
+	
+	/**
+	 * Decodes the debug data through a view of the file, stabs keep the view
+	 * and read their tables from the file when they are used.
+	 */
+	DebugInfo decodeInfo() throws HunkParseError {
+		ByteProvider file = openFileContents().getByteProvider();
+		ByteProvider view = new ByteProviderWrapper(file, getDataOffset(), hunkSize - 8L);
+		
+		// segments are parsed concurrently and share the file provider
+		synchronized (file) {
+			return HunkDebug.decode(new BinaryReader(view, false), getDataOffset());
+		}
 	}
 	
-	public byte[] getData() {
+	public byte[] getData() throws HunkParseError {
+		decode();
 		return debugData;
 	}
 }
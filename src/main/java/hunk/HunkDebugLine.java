@@ -1,9 +1,85 @@
 package hunk;
 
-class HunkDebugLine extends DebugInfo {
-	
-	HunkDebugLine() {
+import java.util.Arrays;
 
+/**
+ * Source line table of a HUNK_DEBUG LINE block, kept as two parallel arrays
+ * sorted by segment offset.
+ */
+public final class HunkDebugLine extends DebugInfo {
+	
+	private final String sourceFile;
+	private final int[] offsets;
+	private final int[] lines;
+	
+	/**
+	 * @param pairs line and offset pairs as stored in the block, offsets relative to {@code baseOffset}
+	 */
+	HunkDebugLine(String sourceFile, int baseOffset, int[] pairs) {
+		this.sourceFile = sourceFile;
+		
+		int count = pairs.length / 2;
+		long[] sorted = new long[count];
+		
+		for (int i = 0; i < count; ++i) {
+			// SAS/C keeps flags in the upper byte of the line number
+			int line = pairs[i * 2] & 0xFFFFFF;
+			int offset = baseOffset + pairs[i * 2 + 1];
+			sorted[i] = ((long)offset << 32) | line;
+		}
+		
+		Arrays.sort(sorted);
+		
+		offsets = new int[count];
+		lines = new int[count];
+		
+		for (int i = 0; i < count; ++i) {
+			offsets[i] = (int)(sorted[i] >>> 32);
+			lines[i] = (int)sorted[i];
+		}
+	}
+	
+	HunkDebugLine(String sourceFile, int[] offsets, int[] lines) {
+		this.sourceFile = sourceFile;
+		this.offsets = offsets;
+		this.lines = lines;
+	}
+	
+	public String getSourceFile() {
+		return sourceFile;
+	}
+	
+	public int size() {
+		return offsets.length;
+	}
+	
+	public int getOffset(int index) {
+		return offsets[index];
+	}
+	
+	public int getLine(int index) {
+		return lines[index];
+	}
+	
+	/**
+	 * Returns the line the code at {@code offset} belongs to, -1 if it precedes the table.
+	 */
+	public int findLine(int offset) {
+		int index = Arrays.binarySearch(offsets, offset);
+		
+		if (index < 0) {
+			index = -index - 2;
+			
+			if (index < 0) {
+				return -1;
+			}
+		} else {
+			// the last entry of a run at the same offset wins
+			while (index + 1 < offsets.length && offsets[index + 1] == offset) {
+				++index;
+			}
+		}
+		
+		return lines[index];
 	}
-
 }
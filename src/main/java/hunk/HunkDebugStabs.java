@@ -0,0 +1,309 @@
+package hunk;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+import ghidra.app.util.bin.ByteProvider;
+
+/**
+ * GCC stabs carried in a HUNK_DEBUG block: the a.out magic 0x10B, the size of
+ * the symbol table, 12 byte symbol entries and the string table. Entries are
+ * indexed by type in one pass over the symbol table when first needed, their
+ * strings are only read when an entry is decoded.
+ */
+public final class HunkDebugStabs extends DebugInfo {
+	
+	public static final int MAGIC = 0x10B;
+	
+	public static final int N_GSYM = 0x20;
+	public static final int N_FUN = 0x24;
+	public static final int N_STSYM = 0x26;
+	public static final int N_LCSYM = 0x28;
+	public static final int N_RSYM = 0x40;
+	public static final int N_SLINE = 0x44;
+	public static final int N_SO = 0x64;
+	public static final int N_LSYM = 0x80;
+	public static final int N_PSYM = 0xA0;
+	
+	private static final int ENTRY_SIZE = 12;
+	private static final int[] NONE = new int[0];
+	
+	private final ByteProvider data;
+	private final long fileOffset;
+	private final int count;
+	private final long strtabOffset;
+	private ByteBuffer symtab;
+	private byte[] strtab;
+	private int[][] byType;
+	
+	/**
+	 * @param data the debug block contents
+	 * @param fileOffset file offset of the contents, kept to restore the stabs from a cached image
+	 */
+	public HunkDebugStabs(ByteProvider data, long fileOffset) throws IOException {
+		this.data = data;
+		this.fileOffset = fileOffset;
+		
+		long symSize = ByteBuffer.wrap(data.readBytes(4, 4)).getInt() & 0xFFFFFFFFL;
+		
+		if (8 + symSize > data.length()) {
+			throw new IOException("Stabs symbol table exceeds HUNK_DEBUG size");
+		}
+		
+		this.count = (int)(symSize / ENTRY_SIZE);
+		this.strtabOffset = 8 + symSize;
+	}
+	
+	ByteProvider getData() {
+		return data;
+	}
+	
+	long getFileOffset() {
+		return fileOffset;
+	}
+	
+	public int size() {
+		return count;
+	}
+	
+	/**
+	 * Returns the indices of the entries of a stab type in table order.
+	 */
+	public synchronized int[] getIndices(int type) throws IOException {
+		if (byType == null) {
+			buildIndex();
+		}
+		
+		int[] indices = byType[type & 0xFF];
+		return (indices == null) ? NONE : indices;
+	}
+	
+	public Stab getStab(int index) throws IOException {
+		ByteBuffer table = getSymtab();
+		int pos = Math.multiplyExact(index, ENTRY_SIZE);
+		
+		int strx = table.getInt(pos);
+		int type = table.get(pos + 4) & 0xFF;
+		int other = table.get(pos + 5) & 0xFF;
+		int desc = table.getShort(pos + 6);
+		int value = table.getInt(pos + 8);
+		
+		return new Stab(index, type, other, desc, value, readString(strx));
+	}
+	
+	/**
+	 * Returns the N_FUN entries that start a function, the entries closing a function have no name.
+	 */
+	public List<Stab> getFunctions() throws IOException {
+		List<Stab> functions = new ArrayList<>();
+		
+		for (int index : getIndices(N_FUN)) {
+			Stab stab = getStab(index);
+			
+			if (!stab.getName().isEmpty()) {
+				functions.add(stab);
+			}
+		}
+		
+		return functions;
+	}
+	
+	/**
+	 * Returns the parameters of a function in declaration order, those passed on the
+	 * stack and those passed in registers.
+	 */
+	public List<Stab> getParameters(Stab function) throws IOException {
+		List<Stab> params = getScoped(function, N_PSYM, false);
+		
+		for (Stab stab : getScoped(function, N_RSYM, false)) {
+			if (stab.isRegisterParameter()) {
+				params.add(stab);
+			}
+		}
+		
+		params.sort(Comparator.comparingInt(Stab::getIndex));
+		return params;
+	}
+	
+	/**
+	 * Returns the stack and register variables of a function, without local type definitions.
+	 */
+	public List<Stab> getLocals(Stab function) throws IOException {
+		List<Stab> locals = getScoped(function, N_LSYM, true);
+		
+		for (Stab stab : getScoped(function, N_RSYM, true)) {
+			if (!stab.isRegisterParameter()) {
+				locals.add(stab);
+			}
+		}
+		
+		return locals;
+	}
+	
+	/**
+	 * Returns the type definitions, the N_LSYM entries with a 't' or 'T' descriptor.
+	 */
+	public List<Stab> getTypes() throws IOException {
+		List<Stab> types = new ArrayList<>();
+		
+		for (int index : getIndices(N_LSYM)) {
+			Stab stab = getStab(index);
+			
+			if (stab.isTypeDefinition()) {
+				types.add(stab);
+			}
+		}
+		
+		return types;
+	}
+	
+	private List<Stab> getScoped(Stab function, int type, boolean skipTypes) throws IOException {
+		int[] functions = getIndices(N_FUN);
+		int next = Arrays.binarySearch(functions, function.getIndex());
+		int end = (next >= 0 && next + 1 < functions.length) ? functions[next + 1] : count;
+		
+		int[] indices = getIndices(type);
+		int from = Arrays.binarySearch(indices, function.getIndex());
+		from = (from < 0) ? -from - 1 : from + 1;
+		
+		List<Stab> stabs = new ArrayList<>();
+		
+		for (int i = from; i < indices.length && indices[i] < end; ++i) {
+			Stab stab = getStab(indices[i]);
+			
+			if (!skipTypes || !stab.isTypeDefinition()) {
+				stabs.add(stab);
+			}
+		}
+		
+		return stabs;
+	}
+	
+	private synchronized ByteBuffer getSymtab() throws IOException {
+		if (symtab == null) {
+			symtab = ByteBuffer.wrap(data.readBytes(8, (long)count * ENTRY_SIZE));
+		}
+		
+		return symtab;
+	}
+	
+	private void buildIndex() throws IOException {
+		ByteBuffer table = getSymtab();
+		int[] counts = new int[256];
+		
+		for (int i = 0; i < count; ++i) {
+			counts[table.get(i * ENTRY_SIZE + 4) & 0xFF]++;
+		}
+		
+		int[][] index = new int[256][];
+		
+		for (int type = 0; type < 256; ++type) {
+			if (counts[type] != 0) {
+				index[type] = new int[counts[type]];
+				counts[type] = 0;
+			}
+		}
+		
+		for (int i = 0; i < count; ++i) {
+			int type = table.get(i * ENTRY_SIZE + 4) & 0xFF;
+			index[type][counts[type]++] = i;
+		}
+		
+		byType = index;
+	}
+	
+	private synchronized byte[] getStrtab() throws IOException {
+		if (strtab == null) {
+			strtab = data.readBytes(strtabOffset, data.length() - strtabOffset);
+		}
+		
+		return strtab;
+	}
+	
+	private String readString(int strx) throws IOException {
+		byte[] table = getStrtab();
+		long pos = strx & 0xFFFFFFFFL;
+		
+		if (strx == 0 || pos >= table.length) {
+			return "";
+		}
+		
+		int end = (int)pos;
+		
+		while (end < table.length && table[end] != 0) {
+			++end;
+		}
+		
+		return new String(table, (int)pos, end - (int)pos, StandardCharsets.ISO_8859_1);
+	}
+	
+	/**
+	 * One decoded stab, the string is split at the first ':' into name and type descriptor.
+	 */
+	public static final class Stab {
+		private final int index;
+		private final int type;
+		private final int other;
+		private final int desc;
+		private final int value;
+		private final String name;
+		private final String descriptor;
+		
+		Stab(int index, int type, int other, int desc, int value, String string) {
+			this.index = index;
+			this.type = type;
+			this.other = other;
+			this.desc = desc;
+			this.value = value;
+			
+			int colon = string.indexOf(':');
+			this.name = (colon < 0) ? string : string.substring(0, colon);
+			this.descriptor = (colon < 0) ? "" : string.substring(colon + 1);
+		}
+		
+		public int getIndex() {
+			return index;
+		}
+		
+		public int getType() {
+			return type;
+		}
+		
+		public int getOther() {
+			return other;
+		}
+		
+		public int getDesc() {
+			return desc;
+		}
+		
+		public int getValue() {
+			return value;
+		}
+		
+		public String getName() {
+			return name;
+		}
+		
+		public String getDescriptor() {
+			return descriptor;
+		}
+		
+		public boolean isTypeDefinition() {
+			return descriptor.startsWith("t") || descriptor.startsWith("T");
+		}
+		
+		/**
+		 * Returns true for a parameter passed in a register, its value is the register number,
+		 * D0-D7 as 0-7 and A0-A7 as 8-15.
+		 */
+		public boolean isRegisterParameter() {
+			return type == N_RSYM && (descriptor.startsWith("P") || descriptor.startsWith("R"));
+		}
+	}
+}
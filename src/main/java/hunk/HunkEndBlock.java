@@ -4,10 +4,10 @@ import ghidra.app.util.bin.BinaryReader;
 
 class HunkEndBlock extends HunkBlock {
 
-	public HunkEndBlock(BinaryReader reader, boolean isExecutable) throws HunkParseError {
-		super(HunkType.HUNK_END, reader);
+	public HunkEndBlock(BinaryReader reader, boolean isExecutable, SymbolPool pool) throws HunkParseError {
+		super(HunkType.HUNK_END, reader, isExecutable, pool);
 		
-		parse(reader, isExecutable);
+		skip(reader);
 		calcHunkSize(reader);
 	}
 
@@ -12,19 +12,87 @@ class HunkExtBlock extends HunkBlock {
 	private List<XDefinition> xdefs;
 	private List<XReference> xrefs;
 	
-	HunkExtBlock(BinaryReader reader, boolean isExecutable) throws HunkParseError {
-		super(HunkType.HUNK_EXT, reader);
+	HunkExtBlock(BinaryReader reader, boolean isExecutable, SymbolPool pool) throws HunkParseError {
+		super(HunkType.HUNK_EXT, reader, isExecutable, pool);
 		
-		parse(reader, isExecutable);
+		skip(reader);
 		calcHunkSize(reader);
 	}
 
+	@Override
+	void skip(BinaryReader reader) throws HunkParseError {
+		while (true) {
+			try {
+				long tag = reader.readNextUnsignedInt();
+
+				if (tag == 0) {
+					break;
+				}
+
+				ExtType extType = ExtType.fromInteger((int)(tag >> 24));
+
+				skipBytes(reader, (tag & 0xFFFFFF) * 4);
+				
+				if (extType == null) {
+					throw new HunkParseError(String.format("Unsupported HUNK_EXT type: %d", tag >> 24));
+				}
+
+				switch (extType) {
+				case EXT_SYMB:
+				case EXT_DEF:
+				case EXT_ABS:
+					skipBytes(reader, 4);
+					break;
+				case EXT_ABSREF32:
+				case EXT_ABSREF16:
+				case EXT_ABSREF8:
+				case EXT_RELREF32:
+				case EXT_RELREF16:
+				case EXT_RELREF8:
+				case EXT_DEXT32:
+				case EXT_DEXT16:
+				case EXT_DEXT8: {
+					int numRefs = reader.readNextInt();
+					
+					if (numRefs == 0) {
+						numRefs = 1;
+					}
+					
+					skipBytes(reader, numRefs * 4L);
+				} break;
+				default: {
+					throw new HunkParseError(String.format("Unsupported HUNK_EXT type: %s", extType.name()));
+				}
+				}
+			} catch (IOException e) {
+				throw new HunkParseError(e);
+			}
+		}
+	}
+
 	@Override
 	void parse(BinaryReader reader, boolean isExecutable) throws HunkParseError {
 		xdefs = new ArrayList<>();
 		xrefs = new ArrayList<>();
 		
+		visit(reader, getSymbolPool(), new HunkVisitor() {
+			@Override
+			public void onExtDef(XDefinition def) {
+				xdefs.add(def);
+			}
+			
+			@Override
+			public void onExtRef(XReference ref) {
+				xrefs.add(ref);
+			}
+		});
+	}
+	
+	static void visit(BinaryReader reader, SymbolPool pool, HunkVisitor visitor) throws HunkParseError {
 		while (true) {
+			XDefinition xdef = null;
+			XReference xref = null;
+			
 			try {
 				long tag = reader.readNextUnsignedInt();
 
@@ -33,56 +101,60 @@ class HunkExtBlock extends HunkBlock {
 				}
 
 				ExtType extType = ExtType.fromInteger((int)(tag >> 24));
+				
+				if (extType == null) {
+					throw new HunkParseError(String.format("Unsupported HUNK_EXT type: %d", tag >> 24));
+				}
 
-				String xname = readNameSize(reader, (int)(tag & 0xFFFFFF));
+				int xname = readNameId(reader, pool, (int)(tag & 0xFFFFFF));
 
 				switch (extType) {
 				case EXT_SYMB: {
-					xdefs.add(new XDefinition(false, false, xname, reader.readNextInt()));
+					xdef = new XDefinition(false, false, pool, xname, reader.readNextInt());
 				} break;
 				case EXT_DEF: {
-					xdefs.add(new XDefinition(true, false, xname, reader.readNextInt()));
+					xdef = new XDefinition(true, false, pool, xname, reader.readNextInt());
 				} break;
 				case EXT_ABS: {
-					xdefs.add(new XDefinition(true, true, xname, reader.readNextInt()));
+					xdef = new XDefinition(true, true, pool, xname, reader.readNextInt());
 				} break;
 				
 				// Unresolved Symbol References
 				case EXT_ABSREF32: {
 					final List<Integer> relocs = Arrays.asList(readRelocs(reader, extType));
-					xrefs.add(new XReference(xname, XReferenceType.R_ABS, relocs, 4));
+					xref = new XReference(pool, xname, XReferenceType.R_ABS, relocs, 4);
 				} break;
 				case EXT_ABSREF16: {
 					final List<Integer> relocs = Arrays.asList(readRelocs(reader, extType));
-					xrefs.add(new XReference(xname, XReferenceType.R_ABS, relocs, 2));
+					xref = new XReference(pool, xname, XReferenceType.R_ABS, relocs, 2);
 				} break;
 				case EXT_ABSREF8: {
 					final List<Integer> relocs = Arrays.asList(readRelocs(reader, extType));
-					xrefs.add(new XReference(xname, XReferenceType.R_ABS, relocs, 1));
+					xref = new XReference(pool, xname, XReferenceType.R_ABS, relocs, 1);
 				} break;
 				case EXT_RELREF32: {
 					final List<Integer> relocs = Arrays.asList(readRelocs(reader, extType));
-					xrefs.add(new XReference(xname, XReferenceType.R_PC, relocs, 4));
+					xref = new XReference(pool, xname, XReferenceType.R_PC, relocs, 4);
 				} break;
 				case EXT_RELREF16: {
 					final List<Integer> relocs = Arrays.asList(readRelocs(reader, extType));
-					xrefs.add(new XReference(xname, XReferenceType.R_PC, relocs, 2));
+					xref = new XReference(pool, xname, XReferenceType.R_PC, relocs, 2);
 				} break;
 				case EXT_RELREF8: {
 					final List<Integer> relocs = Arrays.asList(readRelocs(reader, extType));
-					xrefs.add(new XReference(xname, XReferenceType.R_PC, relocs, 1));
+					xref = new XReference(pool, xname, XReferenceType.R_PC, relocs, 1);
 				} break;
 				case EXT_DEXT32: {
 					final List<Integer> relocs = Arrays.asList(readRelocs(reader, extType));
-					xrefs.add(new XReference(xname, XReferenceType.R_SD, relocs, 4));
+					xref = new XReference(pool, xname, XReferenceType.R_SD, relocs, 4);
 				} break;
 				case EXT_DEXT16: {
 					final List<Integer> relocs = Arrays.asList(readRelocs(reader, extType));
-					xrefs.add(new XReference(xname, XReferenceType.R_SD, relocs, 2));
+					xref = new XReference(pool, xname, XReferenceType.R_SD, relocs, 2);
 				} break;
 				case EXT_DEXT8: {
 					final List<Integer> relocs = Arrays.asList(readRelocs(reader, extType));
-					xrefs.add(new XReference(xname, XReferenceType.R_SD, relocs, 1));
+					xref = new XReference(pool, xname, XReferenceType.R_SD, relocs, 1);
 				} break;
 				default: {
 					throw new HunkParseError(String.format("Unsupported HUNK_EXT type: %s", extType.name()));
@@ -91,18 +163,26 @@ class HunkExtBlock extends HunkBlock {
 			} catch (IOException e) {
 				throw new HunkParseError(e);
 			}
+			
+			if (xdef != null) {
+				visitor.onExtDef(xdef);
+			} else {
+				visitor.onExtRef(xref);
+			}
 		}
 	}
 	
-	final List<XDefinition> getDefinitions() {
+	final List<XDefinition> getDefinitions() throws HunkParseError {
+		decode();
 		return xdefs;
 	}
 	
-	final List<XReference> getReferences() {
+	final List<XReference> getReferences() throws HunkParseError {
+		decode();
 		return xrefs;
 	}
 	
-	final Integer[] readRelocs(BinaryReader reader, ExtType extType) throws IOException {
+	static Integer[] readRelocs(BinaryReader reader, ExtType extType) throws IOException {
 		List<Integer> relocs = new ArrayList<>();
 		
 		int numRefs = reader.readNextInt();
@@ -111,6 +191,8 @@ class HunkExtBlock extends HunkBlock {
 			numRefs = 1;
 		}
 		
+		checkRemaining(reader, numRefs * 4L);
+		
 		for (int i = 0; i < numRefs; ++i) {
 			int reloc = reader.readNextInt();
 			relocs.add(reloc);
@@ -1,26 +1,29 @@
 package hunk;
 
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.List;
 
 import ghidra.app.util.bin.BinaryReader;
 
 class HunkHeaderBlock extends HunkBlock {
 
-	private List<Integer> hunkTable;
+	private int[] hunkTable;
 
-	HunkHeaderBlock(BinaryReader reader, boolean isExecutable) throws HunkParseError {
-		super(HunkType.HUNK_HEADER, reader);
+	HunkHeaderBlock(BinaryReader reader, boolean isExecutable, SymbolPool pool) throws HunkParseError {
+		super(HunkType.HUNK_HEADER, reader, isExecutable, pool);
 		
-		parse(reader, isExecutable);
+		skip(reader);
 		calcHunkSize(reader);
 	}
 	
 	@Override
 	void parse(BinaryReader reader, boolean isExecutable) throws HunkParseError {
-		hunkTable = new ArrayList<>();
-		
+		hunkTable = readHunkTable(reader);
+	}
+	
+	/**
+	 * Reads the HUNK_HEADER contents and returns the hunk sizes in longs without memory flags.
+	 */
+	static int[] readHunkTable(BinaryReader reader) throws HunkParseError {
 		while (true) {
 			try {
 				String name = HunkBlock.readName(reader);
@@ -41,25 +44,31 @@ class HunkHeaderBlock extends HunkBlock {
 			int firstHunk = reader.readNextInt();
 			int lastHunk = reader.readNextInt();
 			
-			if (tableSize < 0 || firstHunk < 0 || lastHunk < 0) {
+			if (tableSize < 0 || firstHunk < 0 || lastHunk < 0 || lastHunk < firstHunk - 1) {
 				throw new HunkParseError("HUNK_HEADER invalid table_size or first_hunk or last_hunk");
 			}
 			
-			for (int a = 0; a < lastHunk - firstHunk + 1; ++a) {
+			HunkBlock.checkRemaining(reader, (lastHunk - firstHunk + 1) * 4L);
+			
+			int[] hunkTable = new int[lastHunk - firstHunk + 1];
+			
+			for (int a = 0; a < hunkTable.length; ++a) {
 				int hunkSize = reader.readNextInt();
 				
 				if (hunkSize < 0) {
 					throw new HunkParseError("HUNK_HEADER contains invalid hunk_size");
 				}
 				
-				hunkTable.add(hunkSize & 0x3FFFFFFF);
+				hunkTable[a] = hunkSize & 0x3FFFFFFF;
 			}
+			
+			return hunkTable;
 		} catch (IOException e) {
 			throw new HunkParseError(e);
 		}
 	}
 
-	Integer[] getHunkTable() {
-		return hunkTable.toArray(Integer[]::new);
+	int[] getHunkTable() {
+		return hunkTable;
 	}
 }
@@ -11,23 +11,47 @@ public class HunkIndexBlock extends HunkBlock {
 	private List<HunkIndexUnitEntry> units;
 	private byte[] strtab;
 
-	HunkIndexBlock(BinaryReader reader, boolean isExecutable) throws HunkParseError {
-		super(HunkType.HUNK_INDEX, reader);
+	HunkIndexBlock(BinaryReader reader, boolean isExecutable, SymbolPool pool) throws HunkParseError {
+		super(HunkType.HUNK_INDEX, reader, isExecutable, pool);
 		
 		units = new ArrayList<>();
 		strtab = null;
 		
-		parse(reader, isExecutable);
+		skip(reader);
 		calcHunkSize(reader);
 	}
 	
+	@Override
+	void skip(BinaryReader reader) throws HunkParseError {
+		try {
+			int numLongs = reader.readNextInt();
+			skipBytes(reader, numLongs * 4L);
+		} catch (IOException e) {
+			throw new HunkParseError(e);
+		}
+	}
+	
 	@Override
 	void parse(BinaryReader reader, boolean isExecutable) throws HunkParseError {
+		strtab = visit(reader, getSymbolPool(), new HunkVisitor() {
+			@Override
+			public void onIndexUnit(HunkIndexUnitEntry unit) {
+				units.add(unit);
+			}
+		});
+	}
+	
+	/**
+	 * Reports every unit entry once its hunks are read and returns the string table.
+	 */
+	static byte[] visit(BinaryReader reader, SymbolPool pool, HunkVisitor visitor) throws HunkParseError {
+		byte[] strtab;
+		
 		try {
 			int numWords = reader.readNextInt() * 2;
 			
 			int strtabSize = reader.readNextUnsignedShort();
-			strtab = reader.readNextByteArray(strtabSize);
+			strtab = readBytes(reader, strtabSize);
 			
 			numWords = numWords - (strtabSize / 2) - 1;
 			
@@ -37,34 +61,33 @@ public class HunkIndexBlock extends HunkBlock {
 				int numHunks = reader.readNextUnsignedShort();
 				numWords -= 3;
 				
-				String name = getStringFromOffset(strtab, nameOff);
+				int name = getNameIdFromOffset(pool, strtab, nameOff);
 				
-				HunkIndexUnitEntry unitEntry = new HunkIndexUnitEntry(name, firstHunkLongOff);
-				units.add(unitEntry);
+				HunkIndexUnitEntry unitEntry = new HunkIndexUnitEntry(pool, name, firstHunkLongOff);
 				
 				for (int i = 0; i < numHunks; ++i) {
 					nameOff = reader.readNextUnsignedShort();
 					int hunkLongs = reader.readNextUnsignedShort();
 					int hunkCtype = reader.readNextUnsignedShort();
 					
-					name = getStringFromOffset(strtab, nameOff);
+					name = getNameIdFromOffset(pool, strtab, nameOff);
 
-					HunkIndexHunkEntry hunkEntry = new HunkIndexHunkEntry(name, hunkLongs, hunkCtype);
+					HunkIndexHunkEntry hunkEntry = new HunkIndexHunkEntry(pool, name, hunkLongs, hunkCtype);
 					unitEntry.addIndexHunk(hunkEntry);
 					
 					int numRefs = reader.readNextUnsignedShort();
 					
 					for (int j = 0; j < numRefs; ++j) {
 						nameOff = reader.readNextUnsignedShort();
-						name = getStringFromOffset(strtab, nameOff);
+						name = getNameIdFromOffset(pool, strtab, nameOff);
 						int width = 4;
 						
-						if (name.isEmpty()) {
-							name = getStringFromOffset(strtab, nameOff + 1);
+						if (name == SymbolPool.EMPTY) {
+							name = getNameIdFromOffset(pool, strtab, nameOff + 1);
 							width = 2;
 						}
 						
-						hunkEntry.addSymRef(new HunkIndexSymbolRef(name, width));
+						hunkEntry.addSymRef(new HunkIndexSymbolRef(pool, name, width));
 					}
 					
 					int numDefs = reader.readNextUnsignedShort();
@@ -74,13 +97,15 @@ public class HunkIndexBlock extends HunkBlock {
 						int value = reader.readNextUnsignedShort();
 						int stype = reader.readNextUnsignedShort();
 						
-						name = getStringFromOffset(strtab, nameOff);
+						name = getNameIdFromOffset(pool, strtab, nameOff);
 						
-						hunkEntry.addSymDef(new HunkIndexSymbolDef(name, value, stype));
+						hunkEntry.addSymDef(new HunkIndexSymbolDef(pool, name, value, stype));
 					}
 					
 					numWords = numWords - (5 + numRefs + numDefs * 3);
 				}
+				
+				visitor.onIndexUnit(unitEntry);
 			}
 			
 			if (numWords == 1) {
@@ -89,13 +114,17 @@ public class HunkIndexBlock extends HunkBlock {
 		} catch (IOException e) {
 			throw new HunkParseError(e);
 		}
+		
+		return strtab;
 	}
 	
-	public HunkIndexUnitEntry[] getHunkIndexUnitEntries() {
+	public HunkIndexUnitEntry[] getHunkIndexUnitEntries() throws HunkParseError {
+		decode();
 		return units.toArray(HunkIndexUnitEntry[]::new);
 	}
 
-	public byte[] getStrtab() {
+	public byte[] getStrtab() throws HunkParseError {
+		decode();
 		return strtab;
 	}
 
@@ -4,15 +4,17 @@ import java.util.ArrayList;
 import java.util.List;
 
 public class HunkIndexHunkEntry {
-	private final String name;
+	private final SymbolPool pool;
+	private final int nameId;
 	private final int hunkLongs;
 	private final int hunkCtype;
 	
 	private List<HunkIndexSymbolRef> symRefs;
 	private List<HunkIndexSymbolDef> symDefs;
 	
-	public HunkIndexHunkEntry(String name, int hunkLongs, int hunkCtype) {
-		this.name = name;
+	public HunkIndexHunkEntry(SymbolPool pool, int nameId, int hunkLongs, int hunkCtype) {
+		this.pool = pool;
+		this.nameId = nameId;
 		this.hunkLongs = hunkLongs;
 		this.hunkCtype = hunkCtype;
 		
@@ -21,7 +23,11 @@ public class HunkIndexHunkEntry {
 	}
 	
 	public String getName() {
-		return name;
+		return pool.getName(nameId);
+	}
+
+	public int getNameId() {
+		return nameId;
 	}
 
 	public int getHunkLongs() {
@@ -1,18 +1,24 @@
 package hunk;
 
 public class HunkIndexSymbolDef {
-	private final String name;
+	private final SymbolPool pool;
+	private final int nameId;
 	private final int value;
 	private final int symCtype;
 	
-	public HunkIndexSymbolDef(String name, int value, int symCtype) {
-		this.name = name;
+	public HunkIndexSymbolDef(SymbolPool pool, int nameId, int value, int symCtype) {
+		this.pool = pool;
+		this.nameId = nameId;
 		this.value = value;
 		this.symCtype = symCtype;
 	}
 
 	public String getName() {
-		return name;
+		return pool.getName(nameId);
+	}
+
+	public int getNameId() {
+		return nameId;
 	}
 
 	public int getValue() {
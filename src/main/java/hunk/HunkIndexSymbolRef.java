@@ -1,16 +1,22 @@
 package hunk;
 
 public class HunkIndexSymbolRef {
-	private final String name;
+	private final SymbolPool pool;
+	private final int nameId;
 	private final int width;
 
-	public HunkIndexSymbolRef(String name, int width) {
-		this.name = name;
+	public HunkIndexSymbolRef(SymbolPool pool, int nameId, int width) {
+		this.pool = pool;
+		this.nameId = nameId;
 		this.width = width;
 	}
 
 	public String getName() {
-		return name;
+		return pool.getName(nameId);
+	}
+
+	public int getNameId() {
+		return nameId;
 	}
 	
 	public int getWidth() {
@@ -5,18 +5,24 @@ import java.util.List;
 
 public class HunkIndexUnitEntry {
 	private final int firstHunkLongOff;
-	private final String name;
+	private final SymbolPool pool;
+	private final int nameId;
 	
 	private List<HunkIndexHunkEntry> indexHunks;
 	
-	public HunkIndexUnitEntry(String name, int firstHunkLongOff) {
-		this.name = name;
+	public HunkIndexUnitEntry(SymbolPool pool, int nameId, int firstHunkLongOff) {
+		this.pool = pool;
+		this.nameId = nameId;
 		this.firstHunkLongOff = firstHunkLongOff;
 		indexHunks = new ArrayList<>();
 	}
 
 	public String getName() {
-		return name;
+		return pool.getName(nameId);
+	}
+
+	public int getNameId() {
+		return nameId;
 	}
 
 	public int getFirstHunkLongOff() {
@@ -11,13 +11,29 @@ public class HunkLibBlock extends HunkBlock {
 	
 	private List<Pair<Integer, HunkBlock>> blocks;
 
-	public HunkLibBlock(BinaryReader reader, boolean isExecutable) throws HunkParseError {
-		super(HunkType.HUNK_LIB, reader);
+	public HunkLibBlock(BinaryReader reader, boolean isExecutable, SymbolPool pool) throws HunkParseError {
+		super(HunkType.HUNK_LIB, reader, isExecutable, pool);
 		
-		parse(reader, isExecutable);
+		skip(reader);
 		calcHunkSize(reader);
 	}
 
+	@Override
+	void skip(BinaryReader reader) throws HunkParseError {
+		try {
+			int numLongs = reader.readNextInt();
+			skipBytes(reader, numLongs * 4L);
+		} catch (IOException e) {
+			throw new HunkParseError(e);
+		}
+	}
+
+	@Override
+	BinaryReader openContents() {
+		// nested blocks keep file offsets and decode from the file reader themselves
+		return openFileContents();
+	}
+
 	@Override
 	void parse(BinaryReader reader, boolean isExecutable) throws HunkParseError {
 		blocks = new ArrayList<>();
@@ -25,12 +41,14 @@ public class HunkLibBlock extends HunkBlock {
 		try {
 			int numLongs = reader.readNextInt();
 			long pos = reader.getPointerIndex();
-			long endPos = pos + numLongs * 4;
+			long endPos = pos + numLongs * 4L;
+			
+			checkRemaining(reader, numLongs * 4L);
 			
 			while (pos < endPos && pos + 4 <= reader.length()) {
 				int tag = reader.readNextInt();
 				
-				HunkBlock block = HunkBlock.fromHunkType(HunkType.fromInteger(tag & HunkType.HUNK_TYPE_MASK), reader, isExecutable);
+				HunkBlock block = HunkBlock.fromHunkType(HunkType.fromInteger(tag & HunkType.HUNK_TYPE_MASK), reader, isExecutable, getSymbolPool());
 				
 				if (block == null) {
 					throw new HunkParseError(String.format("Unsupported hunk type: %04d", tag & HunkType.HUNK_TYPE_MASK));
@@ -45,7 +63,8 @@ public class HunkLibBlock extends HunkBlock {
 		}
 	}
 
-	public final List<Pair<Integer, HunkBlock>> getHunkBlocks() {
+	public final List<Pair<Integer, HunkBlock>> getHunkBlocks() throws HunkParseError {
+		decode();
 		return blocks;
 	}
 }
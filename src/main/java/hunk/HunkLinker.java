@@ -0,0 +1,218 @@
+package hunk;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import generic.stl.Pair;
+
+/**
+ * Links the units of an object file or of a link library into one image. The
+ * units are laid out one after another, their relocations are resolved
+ * against the hunks of their own unit and the symbols of a library index are
+ * added to the hunks that define them. XREFs across units are resolved by
+ * name through {@link LinkMap}.
+ */
+public final class HunkLinker {
+	
+	private HunkLinker() {
+	}
+	
+	private static final class Unit {
+		final List<List<HunkBlock>> groups = new ArrayList<>();
+		HunkIndexUnitEntry index;
+		List<HunkBlock> open;
+		boolean openHasBegin;
+	}
+	
+	public static BinImage link(HunkBlockFile hbf) throws HunkParseError {
+		List<Unit> units = splitUnits(hbf.getHunkBlocks());
+		List<List<HunkBlock>> groups = new ArrayList<>();
+		
+		for (Unit unit : units) {
+			groups.addAll(unit.groups);
+		}
+		
+		HunkLoadSegFile lsf = new HunkLoadSegFile();
+		lsf.parseSegments(groups);
+		
+		HunkSegment[] hunkSegs = lsf.getSegments();
+		BinImage bi = new BinImage();
+		List<Segment[]> unitSegs = new ArrayList<>();
+		int next = 0;
+		
+		for (Unit unit : units) {
+			Segment[] segs = new Segment[unit.groups.size()];
+			
+			for (int i = 0; i < segs.length; ++i) {
+				// num is the hunk number inside the unit, the id is given by the image
+				segs[i] = BinFmtHunk.createSegment(hunkSegs[next++], i);
+				
+				if (segs[i] == null) {
+					throw new HunkParseError("Unit hunk without data");
+				}
+				
+				bi.addSegment(segs[i]);
+			}
+			
+			if (unit.index != null) {
+				addIndexDefinitions(unit.index, segs, hbf.getSymbolPool());
+			}
+			
+			unitSegs.add(segs);
+		}
+		
+		for (Segment[] segs : unitSegs) {
+			for (Segment seg : segs) {
+				BinFmtHunk.addSegmentInfo(seg, segs, segs);
+			}
+		}
+		
+		return bi;
+	}
+	
+	/**
+	 * Splits the blocks at HUNK_UNIT and at every HUNK_LIB, a HUNK_INDEX after a
+	 * library splits its hunks further into the units it lists.
+	 */
+	private static List<Unit> splitUnits(List<Pair<Integer, HunkBlock>> blocks) throws HunkParseError {
+		List<Unit> units = new ArrayList<>();
+		Unit current = null;
+		Unit lastLib = null;
+		
+		for (Pair<Integer, HunkBlock> pair : blocks) {
+			HunkBlock block = pair.second;
+			
+			if (block instanceof HunkUnitBlock) {
+				current = new Unit();
+				units.add(current);
+				lastLib = null;
+			} else if (block instanceof HunkLibBlock) {
+				Unit lib = new Unit();
+				addGroups(lib, ((HunkLibBlock)block).getHunkBlocks());
+				lastLib = lib;
+				units.add(lib);
+				current = null;
+			} else if (block instanceof HunkIndexBlock) {
+				if (lastLib != null) {
+					splitLib(units, lastLib, ((HunkIndexBlock)block).getHunkIndexUnitEntries());
+				}
+				
+				lastLib = null;
+			} else if (!(block instanceof HunkHeaderBlock)) {
+				if (current == null) {
+					current = new Unit();
+					units.add(current);
+				}
+				
+				addGroups(current, List.of(pair));
+			}
+		}
+		
+		for (Unit unit : units) {
+			if (unit.open != null && !unit.openHasBegin) {
+				throw new HunkParseError("Unit ends without a hunk");
+			}
+		}
+		
+		units.removeIf(unit -> unit.groups.isEmpty());
+		return units;
+	}
+	
+	/**
+	 * Groups blocks the way the loadseg parser does: a begin block opens a group
+	 * unless the open group has none yet (HUNK_NAME comes before the code), and
+	 * HUNK_END closes it.
+	 */
+	private static void addGroups(Unit unit, List<Pair<Integer, HunkBlock>> blocks) throws HunkParseError {
+		for (Pair<Integer, HunkBlock> pair : blocks) {
+			HunkBlock block = pair.second;
+			
+			if (block.getHunkType() == HunkType.HUNK_END) {
+				unit.open = null;
+			} else if (block.isValidLoadsegBeginHunk()) {
+				if (unit.open == null || unit.openHasBegin) {
+					unit.open = new ArrayList<>();
+					unit.groups.add(unit.open);
+				}
+				
+				unit.open.add(block);
+				unit.openHasBegin = true;
+			} else if (block.isValidLoadsegExtraHunk()) {
+				if (unit.open == null) {
+					unit.open = new ArrayList<>();
+					unit.openHasBegin = false;
+					unit.groups.add(unit.open);
+				}
+				
+				unit.open.add(block);
+			} else {
+				throw new HunkParseError(String.format("Invalid block in unit: %d", block.getHunkType().getValue()));
+			}
+		}
+	}
+	
+	/**
+	 * Replaces a library unit by the units of its index when the hunk counts match.
+	 */
+	private static void splitLib(List<Unit> units, Unit lib, HunkIndexUnitEntry[] entries) {
+		int total = 0;
+		
+		for (HunkIndexUnitEntry entry : entries) {
+			total += entry.getHunkIndexHunkEntries().length;
+		}
+		
+		if (total != lib.groups.size()) {
+			return;
+		}
+		
+		int pos = units.indexOf(lib);
+		int next = 0;
+		
+		units.remove(pos);
+		
+		for (HunkIndexUnitEntry entry : entries) {
+			Unit unit = new Unit();
+			unit.index = entry;
+			
+			for (int i = 0; i < entry.getHunkIndexHunkEntries().length; ++i) {
+				unit.groups.add(lib.groups.get(next++));
+			}
+			
+			units.add(pos++, unit);
+		}
+	}
+	
+	/**
+	 * Adds the index symbols to the hunks that define them, library hunks carry no EXT definitions.
+	 */
+	private static void addIndexDefinitions(HunkIndexUnitEntry unit, Segment[] segs, SymbolPool pool) {
+		HunkIndexHunkEntry[] hunks = unit.getHunkIndexHunkEntries();
+		
+		for (int i = 0; i < hunks.length && i < segs.length; ++i) {
+			HunkIndexSymbolDef[] defs = hunks[i].getSymDefs();
+			
+			if (defs.length == 0) {
+				continue;
+			}
+			
+			Segment seg = segs[i];
+			List<XDefinition> merged = new ArrayList<>();
+			Set<String> names = new HashSet<>();
+			
+			if (seg.getDefinitions() != null) {
+				merged.addAll(seg.getDefinitions());
+				merged.forEach(def -> names.add(def.getName()));
+			}
+			
+			for (HunkIndexSymbolDef def : defs) {
+				if (names.add(def.getName())) {
+					merged.add(new XDefinition(true, false, pool, def.getNameId(), def.getValue()));
+				}
+			}
+			
+			seg.setExternals(seg.getName(), merged, seg.getReferences());
+		}
+	}
+}
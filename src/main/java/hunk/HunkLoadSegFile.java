@@ -2,21 +2,75 @@ package hunk;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
 import generic.stl.Pair;
 
 class HunkLoadSegFile {
 
 	private final List<HunkSegment> segments;
+	private HunkOverlayBlock overlay;
 	
 	HunkLoadSegFile() {
 		segments = new ArrayList<>();
+		overlay = null;
+	}
+	
+	/**
+	 * Returns the overlay table that ends the root hunks, null if there is none.
+	 */
+	HunkOverlayBlock getOverlay() {
+		return overlay;
 	}
 	
 	HunkSegment[] getSegments() {
 		return segments.toArray(HunkSegment[]::new);
 	}
 	
+	/**
+	 * Segment groups are independent once split at HUNK_END, so their debug
+	 * and EXT blocks are decoded on the fork-join pool. The segments are kept
+	 * in hunk order.
+	 */
+	void parseSegments(List<List<HunkBlock>> groups) throws HunkParseError {
+		if (groups.size() < 2) {
+			for (List<HunkBlock> l : groups) {
+				HunkSegment seg = new HunkSegment();
+				seg.parse(l);
+				segments.add(seg);
+			}
+			return;
+		}
+		
+		List<Callable<HunkSegment>> tasks = new ArrayList<>();
+		
+		for (List<HunkBlock> l : groups) {
+			tasks.add(() -> {
+				HunkSegment seg = new HunkSegment();
+				seg.parse(l);
+				return seg;
+			});
+		}
+		
+		for (Future<HunkSegment> result : ForkJoinPool.commonPool().invokeAll(tasks)) {
+			try {
+				segments.add(result.get());
+			} catch (ExecutionException e) {
+				if (e.getCause() instanceof HunkParseError) {
+					throw (HunkParseError)e.getCause();
+				}
+				
+				throw new HunkParseError(e.getCause());
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new HunkParseError(e);
+			}
+		}
+	}
+	
 	void parseBlockFile(HunkBlockFile bf) throws HunkParseError {
 		
 		if (bf == null) {
@@ -51,6 +105,12 @@ class HunkLoadSegFile {
 				continue;
 			}
 			
+			if (!isUnit && (block instanceof HunkOverlayBlock)) {
+				// overlay nodes follow the table, they are loaded on demand by OverlayManager
+				overlay = (HunkOverlayBlock)block;
+				break;
+			}
+			
 			if (block.getHunkType() == HunkType.HUNK_END) {
 				current = null;
 			} else {
@@ -107,11 +167,7 @@ class HunkLoadSegFile {
 			throw new HunkParseError("Can't match hunks to header");
 		}
 			
-		for (List<HunkBlock> l : second) {
-			HunkSegment seg = new HunkSegment();
-			seg.parse(l);
-			segments.add(seg);
-		}
+		parseSegments(second);
 		
 		if (!isUnit) {
 			int n = second.size();
@@ -6,25 +6,29 @@ import ghidra.app.util.bin.BinaryReader;
 
 public class HunkNameBlock extends HunkBlock {
 	
-	private String name;
+	private int nameId;
 	
-	HunkNameBlock(BinaryReader reader, boolean isExecutable) throws HunkParseError {
-		super(HunkType.HUNK_NAME, reader);
+	HunkNameBlock(BinaryReader reader, boolean isExecutable, SymbolPool pool) throws HunkParseError {
+		super(HunkType.HUNK_NAME, reader, isExecutable, pool);
 
-		parse(reader, isExecutable);
+		skip(reader);
 		calcHunkSize(reader);
 	}
 
 	@Override
 	void parse(BinaryReader reader, boolean isExecutable) throws HunkParseError {
 		try {
-			name = HunkBlock.readName(reader);
+			nameId = readNameId(reader, getSymbolPool());
 		} catch (IOException e) {
 			throw new HunkParseError(e);
 		}
 	}
 
 	public String getName() {
-		return name;
+		return getSymbolPool().getName(nameId);
+	}
+	
+	public int getNameId() {
+		return nameId;
 	}
 }
@@ -1,27 +1,45 @@
 package hunk;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 
 import ghidra.app.util.bin.BinaryReader;
 
 class HunkOverlayBlock extends HunkBlock {
 	
-	HunkOverlayBlock(BinaryReader reader, boolean isExecutable) throws HunkParseError {
-		super(HunkType.HUNK_OVERLAY, reader);
+	private int[] table;
+	
+	HunkOverlayBlock(BinaryReader reader, boolean isExecutable, SymbolPool pool) throws HunkParseError {
+		super(HunkType.HUNK_OVERLAY, reader, isExecutable, pool);
 
-		parse(reader, isExecutable);
+		skip(reader);
 		calcHunkSize(reader);
 	}
 
 	@Override
 	void parse(BinaryReader reader, boolean isExecutable) throws HunkParseError {
+		table = readTable(reader);
+	}
+	
+	/**
+	 * Reads the overlay table, the stored size doesn't count the first long of the table.
+	 */
+	static int[] readTable(BinaryReader reader) throws HunkParseError {
 		try {
-			int numLongs = reader.readNextInt();
-			reader.getPointerIndex();
-			reader.readNextByteArray(numLongs * 4);
+			int numLongs = reader.readNextInt() + 1;
+			
+			checkRemaining(reader, numLongs * 4L);
+			
+			int[] table = new int[numLongs];
+			ByteBuffer.wrap(reader.readNextByteArray(numLongs * 4)).asIntBuffer().get(table);
+			return table;
 		} catch (IOException e) {
 			throw new HunkParseError(e);
 		}
 	}
+	
+	int[] getTable() {
+		return table;
+	}
 
 }
@@ -1,5 +1,8 @@
 package hunk;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ShortBuffer;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -10,14 +13,105 @@ abstract class HunkRelocBlock extends HunkBlock {
 	final List<RelocData> relocs;
 	final int size;
 	
-	HunkRelocBlock(HunkType type, BinaryReader reader, int size) {
-		super(type, reader);
+	HunkRelocBlock(HunkType type, BinaryReader reader, boolean isExecutable, SymbolPool pool, int size) {
+		super(type, reader, isExecutable, pool);
 
 		this.relocs = new ArrayList<>();
 		this.size = size; 
 	}
 	
-	protected RelocData[] getRelocs() {
+	/**
+	 * Returns the patched width in bytes for a relocation block type.
+	 */
+	static int getWidth(HunkType type) {
+		switch (type) {
+		case HUNK_RELRELOC16:
+		case HUNK_DREL16:
+			return 2;
+		case HUNK_RELRELOC8:
+		case HUNK_DREL8:
+			return 1;
+		default:
+			return 4;
+		}
+	}
+	
+	/**
+	 * Returns true for the block types read as relocation blocks.
+	 */
+	static boolean isRelocType(HunkType type) {
+		switch (type) {
+		case HUNK_ABSRELOC32:
+		case HUNK_RELRELOC16:
+		case HUNK_RELRELOC8:
+		case HUNK_DREL32:
+		case HUNK_DREL16:
+		case HUNK_DREL8:
+		case HUNK_RELOC32SHORT:
+			return true;
+		default:
+			return false;
+		}
+	}
+	
+	/**
+	 * Executables store HUNK_DREL32 in the short format of HUNK_RELOC32SHORT.
+	 */
+	static boolean isWordFormat(HunkType type, boolean isExecutable) {
+		return type == HunkType.HUNK_RELOC32SHORT || (type == HunkType.HUNK_DREL32 && isExecutable);
+	}
+	
+	static void visit(HunkType type, BinaryReader reader, boolean isExecutable, HunkVisitor visitor) throws HunkParseError {
+		if (isWordFormat(type, isExecutable)) {
+			HunkRelocWordBlock.visit(type, getWidth(type), reader, visitor);
+		} else {
+			HunkRelocLongBlock.visit(type, getWidth(type), reader, visitor);
+		}
+	}
+	
+	/**
+	 * Collects the visited runs into {@link #relocs}.
+	 */
+	final HunkVisitor collector() {
+		return new HunkVisitor() {
+			@Override
+			public void onRelocRun(HunkType type, int width, int hunkNum, int[] offsets) {
+				relocs.add(new RelocData(hunkNum, offsets));
+			}
+		};
+	}
+	
+	/**
+	 * Reads a run of big endian longs with a single transfer from the reader.
+	 */
+	protected static int[] readOffsetLongs(BinaryReader reader, int count) throws IOException {
+		if (count < 0) {
+			throw new IOException(String.format("Invalid relocation count: %d", count));
+		}
+		
+		checkRemaining(reader, count * 4L);
+		
+		int[] offsets = new int[count];
+		ByteBuffer.wrap(reader.readNextByteArray(count * 4)).asIntBuffer().get(offsets);
+		return offsets;
+	}
+	
+	/**
+	 * Reads a run of big endian unsigned words with a single transfer from the reader.
+	 */
+	protected static int[] readOffsetWords(BinaryReader reader, int count) throws IOException {
+		ShortBuffer words = ByteBuffer.wrap(readBytes(reader, count * 2L)).asShortBuffer();
+		int[] offsets = new int[count];
+		
+		for (int i = 0; i < count; ++i) {
+			offsets[i] = words.get(i) & 0xFFFF;
+		}
+		
+		return offsets;
+	}
+	
+	protected RelocData[] getRelocs() throws HunkParseError {
+		decode();
 		return relocs.toArray(RelocData[]::new);
 	}
 }
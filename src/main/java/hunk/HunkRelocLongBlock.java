@@ -1,42 +1,59 @@
 package hunk;
 
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.List;
 
 import ghidra.app.util.bin.BinaryReader;
 
 class HunkRelocLongBlock extends HunkRelocBlock {
 	
-	public HunkRelocLongBlock(HunkType type, BinaryReader reader, boolean isExecutable, int size) throws HunkParseError {
-		super(type, reader, size);
+	public HunkRelocLongBlock(HunkType type, BinaryReader reader, boolean isExecutable, SymbolPool pool, int size) throws HunkParseError {
+		super(type, reader, isExecutable, pool, size);
 
-		parse(reader, isExecutable);
+		skip(reader);
 		calcHunkSize(reader);
 	}
 
 	@Override
-	void parse(BinaryReader reader, boolean isExecutable) throws HunkParseError {
-		while (true) {
-			try {
+	void skip(BinaryReader reader) throws HunkParseError {
+		try {
+			while (true) {
 				int num = reader.readNextInt();
 				
 				if (num == 0) {
 					break;
 				}
 				
-				int hunkNum = reader.readNextInt();
-				
-				List<Reloc> toAdd = new ArrayList<>();
+				skipBytes(reader, 4 + num * 4L);
+			}
+		} catch (IOException e) {
+			throw new HunkParseError(e);
+		}
+	}
+
+	@Override
+	void parse(BinaryReader reader, boolean isExecutable) throws HunkParseError {
+		visit(getHunkType(), size, reader, collector());
+	}
+	
+	static void visit(HunkType type, int width, BinaryReader reader, HunkVisitor visitor) throws HunkParseError {
+		while (true) {
+			int hunkNum;
+			int[] offsets;
+			
+			try {
+				int num = reader.readNextInt();
 				
-				for (int i = 0; i < num; ++i) {
-					toAdd.add(new Reloc(reader.readNextInt(), size));
+				if (num == 0) {
+					break;
 				}
 				
-				relocs.add(new RelocData(hunkNum, toAdd));
+				hunkNum = reader.readNextInt();
+				offsets = readOffsetLongs(reader, num);
 			} catch (IOException e) {
 				throw new HunkParseError(e);
 			}
+			
+			visitor.onRelocRun(type, width, hunkNum, offsets);
 		}
 	}
 
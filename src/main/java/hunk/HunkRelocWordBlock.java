@@ -1,22 +1,20 @@
 package hunk;
 
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.List;
 
 import ghidra.app.util.bin.BinaryReader;
 
 class HunkRelocWordBlock extends HunkRelocBlock {
 
-	HunkRelocWordBlock(HunkType type, BinaryReader reader, boolean isExecutable, int size) throws HunkParseError {
-		super(type, reader, size);
+	HunkRelocWordBlock(HunkType type, BinaryReader reader, boolean isExecutable, SymbolPool pool, int size) throws HunkParseError {
+		super(type, reader, isExecutable, pool, size);
 
-		parse(reader, isExecutable);
+		skip(reader);
 		calcHunkSize(reader);
 	}
 	
 	@Override
-	void parse(BinaryReader reader, boolean isExecutable) throws HunkParseError {		
+	void skip(BinaryReader reader) throws HunkParseError {
 		try {
 			int numWords = 0;
 			
@@ -28,18 +26,50 @@ class HunkRelocWordBlock extends HunkRelocBlock {
 					break;
 				}
 				
-				int hunkNum = reader.readNextUnsignedShort();
 				numWords += numOffs + 1;
+				skipBytes(reader, (numOffs + 1) * 2L);
+			}
+			
+			if ((numWords % 2) == 1) {
+				skipBytes(reader, 2);
+			}
+		} catch (IOException e) {
+			throw new HunkParseError(e);
+		}
+	}
+	
+	@Override
+	void parse(BinaryReader reader, boolean isExecutable) throws HunkParseError {
+		visit(getHunkType(), size, reader, collector());
+	}
+	
+	static void visit(HunkType type, int width, BinaryReader reader, HunkVisitor visitor) throws HunkParseError {
+		int numWords = 0;
+		
+		while (true) {
+			int hunkNum;
+			int[] offsets;
+			
+			try {
+				int numOffs = reader.readNextUnsignedShort();
+				numWords++;
 				
-				List<Reloc> toAdd = new ArrayList<>();
-				
-				for (int i = 0; i < numOffs; ++i) {
-					toAdd.add(new Reloc(reader.readNextUnsignedShort(), size));
+				if (numOffs == 0) {
+					break;
 				}
 				
-				relocs.add(new RelocData(hunkNum, toAdd));
+				hunkNum = reader.readNextUnsignedShort();
+				numWords += numOffs + 1;
+				
+				offsets = readOffsetWords(reader, numOffs);
+			} catch (IOException e) {
+				throw new HunkParseError(e);
 			}
 			
+			visitor.onRelocRun(type, width, hunkNum, offsets);
+		}
+		
+		try {
 			if ((numWords % 2) == 1) {
 				reader.readNextUnsignedShort();
 			}
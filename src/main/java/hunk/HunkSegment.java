@@ -3,9 +3,6 @@ package hunk;
 import java.util.ArrayList;
 import java.util.List;
 
-import ghidra.app.util.bin.BinaryReader;
-import ghidra.app.util.bin.ByteArrayProvider;
-import ghidra.app.util.bin.ByteProvider;
 
 public class HunkSegment {
 
@@ -16,6 +13,8 @@ public class HunkSegment {
 	private List<HunkRelocBlock> relocBlocks;
 	private List<HunkSymbolBlock> symbolBlocks;
 	private HunkExtBlock extBlock;
+	private List<XDefinition> xdefs;
+	private List<XReference> xrefs;
 	
 	private String name;
 	
@@ -26,6 +25,8 @@ public class HunkSegment {
 		dbgInfos = null;
 		relocBlocks = null;
 		extBlock = null;
+		xdefs = null;
+		xrefs = null;
 		
 		name = null;
 	}
@@ -56,16 +57,20 @@ public class HunkSegment {
 		return (symbolBlocks == null) ? null : symbolBlocks.toArray(HunkSymbolBlock[]::new);
 	}
 	
+	List<DebugInfo> getDebugInfos() {
+		return dbgInfos;
+	}
+	
 	String getName() {
 		return name;
 	}
 	
 	public final List<XDefinition> getDefinitions() {
-		return (extBlock == null) ? null : extBlock.getDefinitions();
+		return xdefs;
 	}
 	
 	public final List<XReference> getReferences() {
-		return (extBlock == null) ? null : extBlock.getReferences();
+		return xrefs;
 	}
 
 	public void parse(List<HunkBlock> blocks) throws HunkParseError {
@@ -87,8 +92,7 @@ public class HunkSegment {
 				
 				dbgBlocks.add((HunkDebugBlock)block);
 				
-				ByteProvider provider = new ByteArrayProvider(((HunkDebugBlock)block).getData());
-				DebugInfo info = HunkDebug.decode(new BinaryReader(provider, false));
+				DebugInfo info = ((HunkDebugBlock)block).decodeInfo();
 				
 				if (info != null) {
 					if (dbgInfos == null) {
@@ -98,6 +102,8 @@ public class HunkSegment {
 					dbgInfos.add(info);
 				}
 			} else if (block.getHunkType() == HunkType.HUNK_ABSRELOC32 ||
+					   block.getHunkType() == HunkType.HUNK_RELRELOC16 ||
+					   block.getHunkType() == HunkType.HUNK_RELRELOC8 ||
 					   block.getHunkType() == HunkType.HUNK_DREL32 ||
 					   block.getHunkType() == HunkType.HUNK_DREL16 ||
 					   block.getHunkType() == HunkType.HUNK_DREL8 ||
@@ -110,6 +116,8 @@ public class HunkSegment {
 			} else if (block.getHunkType() == HunkType.HUNK_EXT) {
 				if (extBlock == null) {
 					extBlock = (HunkExtBlock)block;
+					xdefs = extBlock.getDefinitions();
+					xrefs = extBlock.getReferences();
 				} else {
 					throw new HunkParseError("Duplicate EXT block in hunk");
 				}
@@ -3,39 +3,74 @@ package hunk;
 import java.io.IOException;
 
 import ghidra.app.util.bin.BinaryReader;
+import ghidra.app.util.bin.ByteProvider;
+import ghidra.app.util.bin.ByteProviderWrapper;
 
 class HunkSegmentBlock extends HunkBlock {
 	
-	private byte[] data = null;
+	private ByteProvider provider = null;
+	private long dataOffset = 0;
+	private int dataSize = 0;
 	private int sizeLongs = 0;
 	
-	HunkSegmentBlock(HunkType type, BinaryReader reader, boolean isExecutable) throws HunkParseError {
-		super(type, reader);
+	HunkSegmentBlock(HunkType type, BinaryReader reader, boolean isExecutable, SymbolPool pool) throws HunkParseError {
+		super(type, reader, isExecutable, pool);
 
-		parse(reader, isExecutable);
+		skip(reader);
 		calcHunkSize(reader);
 	}
 	
 	@Override
 	void parse(BinaryReader reader, boolean isExecutable) throws HunkParseError {
+		visit(getHunkType(), reader, new HunkVisitor() {
+			@Override
+			public void onSegment(HunkType type, long offset, int longs) {
+				sizeLongs = longs;
+				
+				if (offset != -1) {
+					// keep only a view of the payload, it is read when relocated or copied to memory
+					provider = reader.getByteProvider();
+					dataOffset = offset;
+					dataSize = longs * 4;
+				}
+			}
+		});
+	}
+	
+	static void visit(HunkType type, BinaryReader reader, HunkVisitor visitor) throws HunkParseError {
+		int sizeLongs;
+		long dataOffset = -1;
+		
 		try {
-			int size = sizeLongs = reader.readNextInt();
+			sizeLongs = reader.readNextInt();
 			
-			if (super.getHunkType() != HunkType.HUNK_BSS) {
-				size *= 4;
-				data = reader.readNextByteArray(size);
+			if (type != HunkType.HUNK_BSS) {
+				long size = sizeLongs * 4L;
+				dataOffset = reader.getPointerIndex();
+				
+				if (size < 0 || dataOffset + size > reader.length()) {
+					throw new IOException(String.format("Truncated %s data at 0x%08X", type, dataOffset));
+				}
+				
+				reader.setPointerIndex(dataOffset + size);
 			}
 		} catch (IOException e) {
 			throw new HunkParseError(e);
 		}
+		
+		visitor.onSegment(type, dataOffset, sizeLongs);
 	}
 
     void setSizeLongs(int sizeLongs) {
 		this.sizeLongs = sizeLongs;
 	}
 	
-	byte[] getData() {
-		return this.data;
+	long getDataOffset() {
+		return (provider == null) ? -1 : dataOffset;
+	}
+	
+	ByteProvider getData() {
+		return (provider == null) ? null : new ByteProviderWrapper(provider, dataOffset, dataSize);
 	}
 
     int getSizeLongs() {
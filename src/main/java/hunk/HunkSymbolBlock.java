@@ -11,36 +11,68 @@ class HunkSymbolBlock extends HunkBlock {
 	final List<SymbolData> symbols;
 
 
-	HunkSymbolBlock(BinaryReader reader, boolean isExecutable) throws HunkParseError {
-		super(HunkType.HUNK_SYMBOL, reader);
+	HunkSymbolBlock(BinaryReader reader, boolean isExecutable, SymbolPool pool) throws HunkParseError {
+		super(HunkType.HUNK_SYMBOL, reader, isExecutable, pool);
 
 		this.symbols  = new ArrayList<>();
 
-		parse(reader, isExecutable);
+		skip(reader);
 		calcHunkSize(reader);
 	}
 
 	@Override
-	void parse(BinaryReader reader, boolean isExecutable) throws HunkParseError {
+	void skip(BinaryReader reader) throws HunkParseError {
 		try {
-			List<Symbol> toAdd = new ArrayList<>();
-
 			while (true) {
-				String name = HunkBlock.readName(reader);
+				int longs = reader.readNextInt();
 				
-				if (name == null || name.length() == 0) {
+				if (longs == 0) {
 					break;
 				}
-
-				toAdd.add(new Symbol(reader.readNextInt(), name));
+				
+				skipBytes(reader, (longs & 0xFFFFFF) * 4L + 4);
 			}
-			symbols.add(new SymbolData(0, toAdd));
 		} catch (IOException e) {
 			throw new HunkParseError(e);
 		}
 	}
 
-	protected SymbolData[] getSymbols() {
+	@Override
+	void parse(BinaryReader reader, boolean isExecutable) throws HunkParseError {
+		List<Symbol> toAdd = new ArrayList<>();
+		
+		visit(reader, getSymbolPool(), new HunkVisitor() {
+			@Override
+			public void onSymbol(Symbol symbol) {
+				toAdd.add(symbol);
+			}
+		});
+		
+		symbols.add(new SymbolData(0, toAdd));
+	}
+	
+	static void visit(BinaryReader reader, SymbolPool pool, HunkVisitor visitor) throws HunkParseError {
+		while (true) {
+			Symbol symbol;
+			
+			try {
+				int nameId = readNameId(reader, pool);
+				
+				if (nameId == SymbolPool.EMPTY) {
+					break;
+				}
+
+				symbol = new Symbol(reader.readNextInt(), pool, nameId);
+			} catch (IOException e) {
+				throw new HunkParseError(e);
+			}
+			
+			visitor.onSymbol(symbol);
+		}
+	}
+
+	protected SymbolData[] getSymbols() throws HunkParseError {
+		decode();
 		return symbols.toArray(SymbolData[]::new);
 	}
 
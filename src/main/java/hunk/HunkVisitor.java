@@ -0,0 +1,73 @@
+package hunk;
+
+/**
+ * Callbacks for a single streaming pass over a hunk file, see
+ * {@link HunkBlockFile#accept(ghidra.app.util.bin.BinaryReader, boolean, HunkVisitor)}.
+ * Blocks nested in a {@code HUNK_LIB} are reported between the {@code onBlock}
+ * and {@code onBlockEnd} calls of their lib block.
+ */
+public interface HunkVisitor {
+
+	/**
+	 * Called when a block tag at {@code offset} was read, before its contents are reported.
+	 * 
+	 * @return false to stop the walk
+	 */
+	default boolean onBlock(HunkType type, long offset) throws HunkParseError {
+		return true;
+	}
+	
+	/**
+	 * Called after the contents of a block were reported, {@code size} includes the tag.
+	 */
+	default void onBlockEnd(HunkType type, long offset, int size) throws HunkParseError {
+	}
+	
+	/**
+	 * @param hunkSizes sizes of the loaded hunks in longs, without memory flags
+	 */
+	default void onHeader(int[] hunkSizes) throws HunkParseError {
+	}
+	
+	default void onUnit(String name) throws HunkParseError {
+	}
+	
+	default void onName(String name) throws HunkParseError {
+	}
+	
+	/**
+	 * @param dataOffset file offset of the payload, -1 for {@code HUNK_BSS}
+	 */
+	default void onSegment(HunkType type, long dataOffset, int sizeLongs) throws HunkParseError {
+	}
+	
+	/**
+	 * @param offsets relocation offsets of the run, the array is handed over to the visitor
+	 */
+	default void onRelocRun(HunkType type, int width, int hunkNum, int[] offsets) throws HunkParseError {
+	}
+	
+	default void onExtDef(XDefinition def) throws HunkParseError {
+	}
+	
+	default void onExtRef(XReference ref) throws HunkParseError {
+	}
+	
+	default void onSymbol(Symbol symbol) throws HunkParseError {
+	}
+	
+	default void onDebug(long dataOffset, int size) throws HunkParseError {
+	}
+	
+	/**
+	 * @param table the raw overlay table, see {@link OverlayNode}
+	 */
+	default void onOverlay(int[] table) throws HunkParseError {
+	}
+	
+	default void onIndexUnit(HunkIndexUnitEntry unit) throws HunkParseError {
+	}
+	
+	default void onEnd() throws HunkParseError {
+	}
+}
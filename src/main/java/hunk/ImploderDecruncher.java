@@ -0,0 +1,213 @@
+package hunk;
+
+import java.util.Arrays;
+
+/**
+ * Imploder "IMP!" data files and their renamed clones: the signature, the
+ * unpacked size and the offset of a footer that holds the first three stream
+ * longwords the header replaced, the first literal run length, the initial bit
+ * buffer and the match distance tables. The stream is read backwards from the
+ * footer and the output is written back to front.
+ */
+final class ImploderDecruncher implements Decruncher {
+	
+	private static final String[] IDS = { "IMP!", "ATN!", "BDPI", "CHFI", "Dupa", "EDAM", "FLT!", "M.H.", "PARA", "RDC9" };
+	private static final int HEADER_SIZE = 12;
+	private static final int FOOTER_SIZE = 0x2E;
+	
+	private static final int[] LITERAL_BASE = { 6, 10, 10, 18 };
+	private static final int[] LITERAL_BITS = { 1, 1, 1, 1, 2, 3, 3, 4, 4, 5, 7, 14 };
+	
+	@Override
+	public String getName() {
+		return "Imploder";
+	}
+	
+	@Override
+	public long getStreamLength(byte[] header, long fileLength) {
+		if (header.length < HEADER_SIZE || !isImploded(header)) {
+			return -1;
+		}
+		
+		long end = readInt(header, 8) & 0xFFFFFFFFL;
+		return ((end & 1) != 0 || end < HEADER_SIZE) ? -1 : end + FOOTER_SIZE;
+	}
+	
+	private static boolean isImploded(byte[] header) {
+		for (String id : IDS) {
+			if (header[0] == id.charAt(0) && header[1] == id.charAt(1) && header[2] == id.charAt(2) && header[3] == id.charAt(3)) {
+				return true;
+			}
+		}
+		
+		return false;
+	}
+	
+	@Override
+	public byte[] decrunch(byte[] data) throws HunkParseError {
+		if (data.length < HEADER_SIZE + FOOTER_SIZE) {
+			throw new HunkParseError("Imploder stream is too short");
+		}
+		
+		int outSize = readInt(data, 4);
+		int end = data.length - FOOTER_SIZE;
+		
+		if (outSize <= 0 || outSize > Decrunchers.MAX_UNPACKED_SIZE) {
+			throw new HunkParseError(String.format("Wrong Imploder unpacked size: %d", outSize));
+		}
+		
+		byte[] in = Arrays.copyOf(data, end);
+		System.arraycopy(data, end, in, 0, HEADER_SIZE);
+		
+		int literals = readInt(data, end + 12);
+		int[] distBase = new int[8];
+		int[] distBits = new int[12];
+		
+		for (int i = 0; i < distBase.length; ++i) {
+			distBase[i] = ((data[end + 18 + i * 2] & 0xFF) << 8) | (data[end + 19 + i * 2] & 0xFF);
+		}
+		
+		for (int i = 0; i < distBits.length; ++i) {
+			distBits[i] = data[end + 34 + i] & 0xFF;
+			
+			if (distBits[i] > 16) {
+				throw new HunkParseError("Wrong Imploder distance bit length");
+			}
+		}
+		
+		// a clear flag means the stream was padded to an even length
+		Bits bits = new Bits(in, ((data[end + 16] & 0x80) == 0) ? end - 1 : end, data[end + 17] & 0xFF);
+		byte[] out = new byte[outSize];
+		int pos = outSize;
+		
+		while (true) {
+			if (literals < 0 || literals > pos) {
+				throw new HunkParseError("Imploder literal run exceeds the unpacked size");
+			}
+			
+			for (; literals > 0; --literals) {
+				out[--pos] = (byte)bits.next();
+			}
+			
+			if (pos == 0) {
+				break;
+			}
+			
+			int selector;
+			int count;
+			
+			if (bits.read(1) == 0) {
+				selector = 0;
+				count = 2;
+			} else if (bits.read(1) == 0) {
+				selector = 1;
+				count = 3;
+			} else if (bits.read(1) == 0) {
+				selector = 2;
+				count = 4;
+			} else {
+				selector = 3;
+				
+				if (bits.read(1) == 0) {
+					count = 5;
+				} else if (bits.read(1) == 0) {
+					count = bits.read(3) + 6;
+				} else {
+					count = bits.next();
+					
+					if (count == 0) {
+						throw new HunkParseError("Wrong Imploder match length");
+					}
+				}
+			}
+			
+			int base = 0;
+			int x = selector;
+			
+			if (bits.read(1) != 0) {
+				if (bits.read(1) != 0) {
+					base = LITERAL_BASE[selector];
+					x += 8;
+				} else {
+					base = 2;
+					x += 4;
+				}
+			}
+			
+			literals = bits.read(LITERAL_BITS[x]) + base;
+			
+			int dist = 0;
+			x = selector;
+			
+			if (bits.read(1) != 0) {
+				if (bits.read(1) != 0) {
+					dist = distBase[selector + 4];
+					x += 8;
+				} else {
+					dist = distBase[selector];
+					x += 4;
+				}
+			}
+			
+			dist += bits.read(distBits[x]);
+			
+			if (pos + dist >= outSize || count > pos) {
+				throw new HunkParseError("Imploder match exceeds the unpacked data");
+			}
+			
+			while (count-- > 0) {
+				out[pos - 1] = out[pos + dist];
+				--pos;
+			}
+		}
+		
+		return out;
+	}
+	
+	private static int readInt(byte[] data, int offset) {
+		return ((data[offset] & 0xFF) << 24) | ((data[offset + 1] & 0xFF) << 16) | ((data[offset + 2] & 0xFF) << 8) | (data[offset + 3] & 0xFF);
+	}
+	
+	/**
+	 * Reads the stream backwards. Bits come from the top of a byte whose lowest
+	 * set bit marks where it runs out, literal bytes are read directly.
+	 */
+	private static final class Bits {
+		private final byte[] data;
+		private int pos;
+		private int buffer;
+		
+		Bits(byte[] data, int end, int buffer) {
+			this.data = data;
+			this.pos = end;
+			this.buffer = buffer;
+		}
+		
+		int next() throws HunkParseError {
+			if (pos <= 0) {
+				throw new HunkParseError("Imploder stream ended early");
+			}
+			
+			return data[--pos] & 0xFF;
+		}
+		
+		int read(int n) throws HunkParseError {
+			int value = 0;
+			
+			while (n-- > 0) {
+				int bit = buffer & 0x80;
+				buffer = (buffer << 1) & 0xFF;
+				
+				if (buffer == 0) {
+					buffer = next();
+					bit = buffer & 0x80;
+					buffer = ((buffer << 1) | 1) & 0xFF;
+				}
+				
+				value = (value << 1) | (bit >>> 7);
+			}
+			
+			return value;
+		}
+	}
+}
@@ -0,0 +1,99 @@
+package hunk;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Global XDEF table of a linked image. The first global definition of a name
+ * wins like it does for the Amiga linkers, so a unit earlier in a library
+ * shadows later ones.
+ */
+public final class LinkMap {
+	
+	private final Map<String, XDefinition> definitions = new HashMap<>();
+	private final Map<String, Segment> segments = new HashMap<>();
+	private final Set<String> unresolved = new LinkedHashSet<>();
+	
+	private LinkMap() {
+	}
+	
+	public static LinkMap build(Segment[] segs) {
+		LinkMap map = new LinkMap();
+		
+		for (Segment seg : segs) {
+			List<XDefinition> defs = seg.getDefinitions();
+			
+			if (defs == null) {
+				continue;
+			}
+			
+			for (XDefinition def : defs) {
+				if (def.isGlobal() && !map.definitions.containsKey(def.getName())) {
+					map.definitions.put(def.getName(), def);
+					map.segments.put(def.getName(), seg);
+				}
+			}
+		}
+		
+		for (Segment seg : segs) {
+			List<XReference> refs = seg.getReferences();
+			
+			if (refs == null) {
+				continue;
+			}
+			
+			for (XReference ref : refs) {
+				if (!map.definitions.containsKey(ref.getName())) {
+					map.unresolved.add(ref.getName());
+				}
+			}
+		}
+		
+		return map;
+	}
+	
+	public XDefinition getDefinition(String name) {
+		return definitions.get(name);
+	}
+	
+	/**
+	 * Returns the segment that defines {@code name}, null for absolute or unknown symbols.
+	 */
+	public Segment getSegment(String name) {
+		XDefinition def = definitions.get(name);
+		return (def == null || def.isAbsolute()) ? null : segments.get(name);
+	}
+	
+	/**
+	 * Returns the address of {@code name} with the segments loaded at {@code addrs},
+	 * or null when no unit defines it.
+	 */
+	public Integer getAddress(String name, int[] addrs) {
+		XDefinition def = definitions.get(name);
+		
+		if (def == null) {
+			return null;
+		}
+		
+		if (def.isAbsolute()) {
+			return def.getOffset();
+		}
+		
+		return addrs[segments.get(name).getId()] + def.getOffset();
+	}
+	
+	public Collection<String> getNames() {
+		return definitions.keySet();
+	}
+	
+	/**
+	 * Returns the referenced names no unit defines, in reference order.
+	 */
+	public Collection<String> getUnresolved() {
+		return unresolved;
+	}
+}
@@ -0,0 +1,173 @@
+package hunk;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import ghidra.app.util.bin.BinaryReader;
+import ghidra.app.util.bin.ByteProvider;
+
+/**
+ * Overlay tree of an executable. Nodes are parsed from the file only when
+ * their segments are asked for, each node once.
+ */
+public final class OverlayManager {
+	
+	private final ByteProvider provider;
+	private final Segment[] rootSegs;
+	private final OverlayNode[] nodes;
+	private final Map<OverlayNode, Segment[]> loaded;
+	
+	public OverlayManager(ByteProvider provider, BinImage root) throws HunkParseError {
+		this.provider = provider;
+		this.rootSegs = root.getSegments();
+		this.nodes = OverlayNode.fromTable(root.getOverlayTable());
+		this.loaded = new HashMap<>();
+	}
+	
+	public OverlayNode[] getNodes() {
+		return nodes.clone();
+	}
+	
+	/**
+	 * Returns the segments of a node, their ids are the hunk numbers of the node hunks.
+	 */
+	public synchronized Segment[] getSegments(OverlayNode node) throws HunkParseError {
+		Segment[] segs = loaded.get(node);
+		
+		if (segs == null) {
+			segs = parseNode(node);
+			loaded.put(node, segs);
+		}
+		
+		return segs;
+	}
+	
+	/**
+	 * Returns the nodes from level 1 down to {@code node}, the parent of a node is
+	 * the nearest node before it in the table one level up.
+	 */
+	public List<OverlayNode> getPath(OverlayNode node) {
+		List<OverlayNode> path = new ArrayList<>();
+		path.add(node);
+		
+		int level = node.getLevel();
+		
+		for (int i = node.getIndex() - 1; i >= 0 && level > 1; --i) {
+			if (nodes[i].getLevel() == level - 1) {
+				path.add(0, nodes[i]);
+				level = nodes[i].getLevel();
+			}
+		}
+		
+		return path;
+	}
+	
+	/**
+	 * Returns the addresses of the root segments and of the segments of the nodes
+	 * on the path to {@code node} by hunk number. The node segments are placed one
+	 * after another from {@code nodeBase}, the level 1 node first.
+	 */
+	public int[] getAddresses(OverlayNode node, int[] rootAddrs, int nodeBase) throws HunkParseError {
+		int[] addrs = rootAddrs.clone();
+		int addr = nodeBase;
+		
+		for (OverlayNode pathNode : getPath(node)) {
+			Segment[] segs = getSegments(pathNode);
+			addrs = Arrays.copyOf(addrs, Math.max(addrs.length, pathNode.getFirstHunk() + segs.length));
+			
+			for (Segment seg : segs) {
+				addrs[seg.getId()] = addr;
+				addr += seg.getSize();
+			}
+		}
+		
+		return addrs;
+	}
+	
+	private Segment[] parseNode(OverlayNode node) throws HunkParseError {
+		BinaryReader reader = new BinaryReader(provider, false);
+		SymbolPool pool = new SymbolPool();
+		HunkHeaderBlock hdr = null;
+		List<List<HunkBlock>> groups = new ArrayList<>();
+		List<HunkBlock> current = null;
+		
+		try {
+			reader.setPointerIndex(node.getFileOffset());
+			
+			while (reader.getPointerIndex() + 4 <= reader.length()) {
+				int tag = reader.readNextInt();
+				HunkType type = HunkType.fromInteger(tag & HunkType.HUNK_TYPE_MASK);
+				
+				if (type == HunkType.HUNK_BREAK) {
+					break;
+				}
+				
+				HunkBlock block = HunkBlock.fromHunkType(type, reader, true, pool);
+				
+				if (block == null) {
+					throw new HunkParseError(String.format("Unsupported hunk type in overlay node: %04d", tag & HunkType.HUNK_TYPE_MASK));
+				}
+				
+				if (block instanceof HunkHeaderBlock) {
+					hdr = (HunkHeaderBlock)block;
+				} else if (type == HunkType.HUNK_END) {
+					current = null;
+				} else if (block.isValidLoadsegBeginHunk()) {
+					current = new ArrayList<>();
+					current.add(block);
+					groups.add(current);
+				} else if (block.isValidLoadsegExtraHunk() && current != null) {
+					current.add(block);
+				} else {
+					throw new HunkParseError(String.format("Invalid block in overlay node: %d", type.getValue()));
+				}
+			}
+		} catch (HunkParseError e) {
+			throw e;
+		} catch (IOException e) {
+			throw new HunkParseError(e);
+		}
+		
+		int first = node.getFirstHunk();
+		Segment[] segs = new Segment[groups.size()];
+		Segment[] hunkSegs = rootSegs;
+		
+		// relocations may refer to the hunks of the ancestors
+		for (OverlayNode pathNode : getPath(node)) {
+			Segment[] pathSegs = (pathNode == node) ? segs : getSegments(pathNode);
+			hunkSegs = Arrays.copyOf(hunkSegs, Math.max(hunkSegs.length, pathNode.getFirstHunk() + pathSegs.length));
+			
+			for (int i = 0; i < pathSegs.length; ++i) {
+				hunkSegs[pathNode.getFirstHunk() + i] = pathSegs[i];
+			}
+		}
+		
+		for (int i = 0; i < segs.length; ++i) {
+			HunkSegment seg = new HunkSegment();
+			seg.parse(groups.get(i));
+			
+			if (hdr != null && i < hdr.getHunkTable().length) {
+				seg.setSizeLongs(hdr.getHunkTable()[i]);
+			}
+			
+			segs[i] = BinFmtHunk.createSegment(seg, i);
+			
+			if (segs[i] == null) {
+				throw new HunkParseError(String.format("Overlay node %d has a hunk without data", node.getIndex()));
+			}
+			
+			segs[i].setId(first + i);
+			hunkSegs[first + i] = segs[i];
+		}
+		
+		for (Segment seg : segs) {
+			BinFmtHunk.addSegmentInfo(seg, hunkSegs, segs);
+		}
+		
+		return segs;
+	}
+}
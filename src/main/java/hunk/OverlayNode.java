@@ -0,0 +1,91 @@
+package hunk;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * One node of a HUNK_OVERLAY tree. The overlay table starts with the index of
+ * its first node entry, every entry holds 8 longs: file offset of the node,
+ * two reserved longs, level, ordinate, first hunk number, symbol hunk and
+ * symbol offset.
+ */
+public final class OverlayNode {
+	
+	private static final int ENTRY_LONGS = 8;
+	
+	private final int index;
+	private final long fileOffset;
+	private final int level;
+	private final int ordinate;
+	private final int firstHunk;
+	private final int symbolHunk;
+	private final int symbolOffset;
+	
+	private OverlayNode(int index, int[] table, int pos) {
+		this.index = index;
+		this.fileOffset = table[pos] & 0xFFFFFFFFL;
+		this.level = table[pos + 3];
+		this.ordinate = table[pos + 4];
+		this.firstHunk = table[pos + 5];
+		this.symbolHunk = table[pos + 6];
+		this.symbolOffset = table[pos + 7];
+	}
+	
+	static OverlayNode[] fromTable(int[] table) throws HunkParseError {
+		if (table == null || table.length == 0) {
+			return new OverlayNode[0];
+		}
+		
+		int start = table[0];
+		
+		if (start < 1 || start > table.length) {
+			throw new HunkParseError(String.format("Invalid HUNK_OVERLAY table start: %d", start));
+		}
+		
+		List<OverlayNode> nodes = new ArrayList<>();
+		
+		for (int pos = start; pos + ENTRY_LONGS <= table.length; pos += ENTRY_LONGS) {
+			OverlayNode node = new OverlayNode(nodes.size(), table, pos);
+			
+			if (node.firstHunk < 0) {
+				throw new HunkParseError(String.format("Invalid first hunk of overlay node %d", node.index));
+			}
+			
+			nodes.add(node);
+		}
+		
+		return nodes.toArray(OverlayNode[]::new);
+	}
+	
+	public int getIndex() {
+		return index;
+	}
+	
+	public long getFileOffset() {
+		return fileOffset;
+	}
+	
+	public int getLevel() {
+		return level;
+	}
+	
+	public int getOrdinate() {
+		return ordinate;
+	}
+	
+	public int getFirstHunk() {
+		return firstHunk;
+	}
+	
+	public int getSymbolHunk() {
+		return symbolHunk;
+	}
+	
+	public int getSymbolOffset() {
+		return symbolOffset;
+	}
+	
+	public String getName() {
+		return String.format("OVL_%d_%d", level, ordinate);
+	}
+}
@@ -0,0 +1,164 @@
+package hunk;
+
+/**
+ * PowerPacker "PP20" data files: the signature, four offset bit lengths, the
+ * packed bits read backwards from the end and a trailer holding the unpacked
+ * size and the number of bits to skip. The output is written back to front.
+ */
+final class PowerPackerDecruncher implements Decruncher {
+	
+	private static final byte[] MAGIC = { 'P', 'P', '2', '0' };
+	
+	@Override
+	public String getName() {
+		return "PowerPacker";
+	}
+	
+	@Override
+	public long getStreamLength(byte[] header, long fileLength) {
+		if (header.length < MAGIC.length) {
+			return -1;
+		}
+		
+		for (int i = 0; i < MAGIC.length; ++i) {
+			if (header[i] != MAGIC[i]) {
+				return -1;
+			}
+		}
+		
+		// the trailer ends the file
+		return fileLength;
+	}
+	
+	@Override
+	public byte[] decrunch(byte[] data) throws HunkParseError {
+		int end = data.length;
+		
+		if (end < 12) {
+			throw new HunkParseError("PowerPacker stream is too short");
+		}
+		
+		int outSize = ((data[end - 4] & 0xFF) << 16) | ((data[end - 3] & 0xFF) << 8) | (data[end - 2] & 0xFF);
+		int skipBits = data[end - 1] & 0xFF;
+		
+		if (outSize == 0 || outSize > Decrunchers.MAX_UNPACKED_SIZE) {
+			throw new HunkParseError(String.format("Wrong PowerPacker unpacked size: %d", outSize));
+		}
+		
+		int[] offsetBits = new int[4];
+		
+		for (int i = 0; i < offsetBits.length; ++i) {
+			offsetBits[i] = data[4 + i] & 0xFF;
+			
+			if (offsetBits[i] > 16) {
+				throw new HunkParseError("Wrong PowerPacker offset bit length");
+			}
+		}
+		
+		Bits bits = new Bits(data, 8, end - 4);
+		byte[] out = new byte[outSize];
+		int pos = outSize;
+		
+		for (int i = skipBits; i > 0; i -= 8) {
+			bits.read(Math.min(i, 8));
+		}
+		
+		while (pos > 0) {
+			if (bits.read(1) == 0) {
+				int count = 1;
+				int x;
+				
+				do {
+					x = bits.read(2);
+					count += x;
+				} while (x == 3);
+				
+				if (count > pos) {
+					throw new HunkParseError("PowerPacker literal run exceeds the unpacked size");
+				}
+				
+				while (count-- > 0) {
+					out[--pos] = (byte)bits.read(8);
+				}
+				
+				if (pos == 0) {
+					break;
+				}
+			}
+			
+			int x = bits.read(2);
+			int distBits = offsetBits[x];
+			int count = x + 2;
+			
+			if (x == 3) {
+				if (bits.read(1) == 0) {
+					distBits = 7;
+				}
+				
+				int dist = bits.read(distBits);
+				
+				do {
+					x = bits.read(3);
+					count += x;
+				} while (x == 7);
+				
+				pos = copy(out, pos, dist, count);
+			} else {
+				pos = copy(out, pos, bits.read(distBits), count);
+			}
+		}
+		
+		return out;
+	}
+	
+	private static int copy(byte[] out, int pos, int dist, int count) throws HunkParseError {
+		if (pos + dist >= out.length || count > pos) {
+			throw new HunkParseError("PowerPacker match exceeds the unpacked data");
+		}
+		
+		while (count-- > 0) {
+			out[pos - 1] = out[pos + dist];
+			--pos;
+		}
+		
+		return pos;
+	}
+	
+	/**
+	 * Reads the packed bits from the end of the stream towards its start, the low bit first.
+	 */
+	private static final class Bits {
+		private final byte[] data;
+		private final int start;
+		private int pos;
+		private int buffer;
+		private int count;
+		
+		Bits(byte[] data, int start, int end) {
+			this.data = data;
+			this.start = start;
+			this.pos = end;
+		}
+		
+		int read(int n) throws HunkParseError {
+			while (count < n) {
+				if (pos <= start) {
+					throw new HunkParseError("PowerPacker stream ended early");
+				}
+				
+				buffer |= (data[--pos] & 0xFF) << count;
+				count += 8;
+			}
+			
+			int value = 0;
+			count -= n;
+			
+			while (n-- > 0) {
+				value = (value << 1) | (buffer & 1);
+				buffer >>>= 1;
+			}
+			
+			return value;
+		}
+	}
+}
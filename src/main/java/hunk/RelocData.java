@@ -1,22 +1,20 @@
 package hunk;
 
-import java.util.List;
-
 class RelocData {
 
 	private final int hunkNum;
-	private final List<Reloc> relocs;
+	private final int[] offsets;
 	
-	RelocData(int hunkNum, final List<Reloc> relocs) {
+	RelocData(int hunkNum, final int[] offsets) {
 		this.hunkNum = hunkNum;
-		this.relocs = relocs;
+		this.offsets = offsets;
 	}
 	
 	public final int getHunkNum() {
 		return hunkNum;
 	}
 	
-	public final Reloc[] getRelocs() {
-		return relocs.toArray(Reloc[]::new);
+	public final int[] getOffsets() {
+		return offsets;
 	}
 }
@@ -0,0 +1,144 @@
+package hunk;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Map;
+
+/**
+ * Frozen relocations of one segment: the target segments in id order, the
+ * offsets of every table sorted, and all relocations merged by offset for
+ * lookups. Nothing is allocated once the index is built.
+ */
+public final class RelocIndex {
+	
+	static final RelocIndex EMPTY = new RelocIndex(new Segment[0], new RelocTable[0][]);
+	
+	private final Segment[] targets;
+	private final RelocTable[][] tables;
+	private final int[] offsets;
+	private final byte[] widths;
+	private final int[] targetIndices;
+	
+	private RelocIndex(Segment[] targets, RelocTable[][] tables) {
+		this.targets = targets;
+		this.tables = tables;
+		
+		int total = 0;
+		
+		for (RelocTable[] perTarget : tables) {
+			for (RelocTable table : perTarget) {
+				total += table.size();
+			}
+		}
+		
+		long[] keys = new long[total];
+		int pos = 0;
+		
+		for (int t = 0; t < tables.length; ++t) {
+			for (RelocTable table : tables[t]) {
+				for (int i = 0; i < table.size(); ++i) {
+					// offset in the high half, target and width below it so one sort orders all three
+					keys[pos++] = ((long)table.getOffset(i) << 32) | ((long)t << 8) | table.getWidth();
+				}
+			}
+		}
+		
+		Arrays.sort(keys);
+		
+		offsets = new int[total];
+		widths = new byte[total];
+		targetIndices = new int[total];
+		
+		for (int i = 0; i < total; ++i) {
+			offsets[i] = (int)(keys[i] >>> 32);
+			widths[i] = (byte)keys[i];
+			targetIndices[i] = (int)(keys[i] & 0xFFFFFFFFL) >>> 8;
+		}
+	}
+	
+	static RelocIndex build(Map<Segment, RelocTable[]> relocs) {
+		if (relocs.isEmpty()) {
+			return EMPTY;
+		}
+		
+		Segment[] targets = relocs.keySet().toArray(Segment[]::new);
+		Arrays.sort(targets, Comparator.comparingInt(Segment::getId));
+		
+		RelocTable[][] tables = new RelocTable[targets.length][];
+		
+		for (int i = 0; i < targets.length; ++i) {
+			tables[i] = relocs.get(targets[i]);
+			
+			for (RelocTable table : tables[i]) {
+				table.freeze();
+			}
+		}
+		
+		return new RelocIndex(targets, tables);
+	}
+	
+	/**
+	 * Returns the target segments in id order. The array is shared and must not be modified.
+	 */
+	public Segment[] getTargets() {
+		return targets;
+	}
+	
+	/**
+	 * Returns the tables to the target at {@code targetIndex}, one per relocation block type.
+	 * The array is shared and must not be modified.
+	 */
+	public RelocTable[] getTables(int targetIndex) {
+		return tables[targetIndex];
+	}
+	
+	/**
+	 * Returns the number of relocations to all targets.
+	 */
+	public int size() {
+		return offsets.length;
+	}
+	
+	public int getOffset(int index) {
+		return offsets[index];
+	}
+	
+	public int getWidth(int index) {
+		return widths[index];
+	}
+	
+	public Segment getTarget(int index) {
+		return targets[targetIndices[index]];
+	}
+	
+	/**
+	 * Returns the index of the relocation whose patched bytes cover {@code offset},
+	 * or -1 if no relocation does.
+	 */
+	public int find(int offset) {
+		int i = Arrays.binarySearch(offsets, offset);
+		
+		if (i < 0) {
+			i = -i - 2;
+		} else {
+			// several relocations may share an offset, take the first of them
+			while (i > 0 && offsets[i - 1] == offset) {
+				--i;
+			}
+		}
+		
+		// relocations are at most 4 bytes wide, only the last few before the offset can cover it
+		for (int j = i; j >= 0 && offsets[j] > offset - 4; --j) {
+			if (offset < offsets[j] + widths[j]) {
+				// the first of several relocations at that offset, as for an exact match
+				while (j > 0 && offsets[j - 1] == offsets[j] && offset < offsets[j - 1] + widths[j - 1]) {
+					--j;
+				}
+				
+				return j;
+			}
+		}
+		
+		return -1;
+	}
+}
@@ -0,0 +1,71 @@
+package hunk;
+
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.function.IntConsumer;
+
+/**
+ * Packed relocation offsets of one segment to one target segment, all of the same block type.
+ */
+public final class RelocTable {
+
+	private static final int[] EMPTY = new int[0];
+	
+	private final HunkType type;
+	private final int width;
+	private int[] offsets;
+	private int count;
+	
+	RelocTable(HunkType type) {
+		this.type = type;
+		this.width = HunkRelocBlock.getWidth(type);
+		this.offsets = EMPTY;
+		this.count = 0;
+	}
+	
+	void add(final int[] relocs) {
+		if (count == 0) {
+			// the first run is shared, it is never modified by its block
+			offsets = relocs;
+			count = relocs.length;
+			return;
+		}
+		
+		if (count + relocs.length > offsets.length) {
+			offsets = Arrays.copyOf(offsets, Math.max(count + relocs.length, offsets.length * 2));
+		}
+		
+		System.arraycopy(relocs, 0, offsets, count, relocs.length);
+		count += relocs.length;
+	}
+	
+	/**
+	 * Trims the offsets to their count and sorts them, the shared first run is copied first.
+	 */
+	void freeze() {
+		offsets = Arrays.copyOf(offsets, count);
+		Arrays.sort(offsets);
+	}
+	
+	public HunkType getType() {
+		return type;
+	}
+	
+	public int getWidth() {
+		return width;
+	}
+	
+	public int size() {
+		return count;
+	}
+	
+	public int getOffset(int index) {
+		return offsets[Objects.checkIndex(index, count)];
+	}
+	
+	public void forEach(IntConsumer action) {
+		for (int i = 0; i < count; ++i) {
+			action.accept(offsets[i]);
+		}
+	}
+}
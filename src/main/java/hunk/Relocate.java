@@ -1,12 +1,28 @@
 package hunk;
 
+import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import ghidra.app.util.bin.ByteProvider;
 
 public class Relocate {
 
+	/**
+	 * Small data code addresses its data with A4 set 0x7FFE bytes into the first data hunk.
+	 */
+	public static final int DATA_BASE_BIAS = 0x7FFE;
+	
 	private final BinImage binImage;
+	private Stats stats = new Stats(0, 0, 0, 0);
+	private BitSet[] overflowed = new BitSet[0];
+	private List<byte[]> originals = new ArrayList<>();
 	
 	public Relocate(BinImage binImage) {
 		if (binImage == null) {
@@ -40,6 +56,54 @@ public class Relocate {
 		return addrs;
 	}
 	
+	/**
+	 * Returns the small data base for the given segment addresses, the
+	 * address DREL relocations are relative to.
+	 */
+	public int getDataBase(int[] addrs) {
+		for (Segment seg : binImage.getSegments()) {
+			if (seg.getType() == SegmentType.SEGMENT_TYPE_DATA) {
+				return addrs[seg.getId()] + DATA_BASE_BIAS;
+			}
+		}
+		
+		return 0;
+	}
+	
+	/**
+	 * Returns the counters of the last {@link #relocate(int[])} call.
+	 */
+	public Stats getStats() {
+		return stats;
+	}
+	
+	/**
+	 * Returns true if the relocation at {@code offset} of {@code seg} was left unpatched
+	 * by the last {@link #relocate(int[])} call because its value didn't fit.
+	 */
+	public boolean isOverflow(Segment seg, int offset) {
+		int id = seg.getId();
+		return id < overflowed.length && overflowed[id].get(offset);
+	}
+	
+	/**
+	 * Returns the unrelocated contents of a segment as read by the last
+	 * {@link #relocate(int[])} call, null if the segment has no relocations.
+	 * The returned array is shared and must not be modified.
+	 */
+	public byte[] getOriginal(Segment seg) {
+		int id = seg.getId();
+		return (id < originals.size()) ? originals.get(id) : null;
+	}
+	
+	/**
+	 * Applies the relocations of all segments for the given segment addresses.
+	 * Segments are read one after the other, then relocated in parallel, each in
+	 * its own copy of the data; the read bytes are kept, see {@link #getOriginal}.
+	 * Only segments that actually carry relocations are read into memory; the
+	 * entry of every other segment is {@code null} and its contents should be
+	 * taken from {@link Segment#getDataStream()}.
+	 */
 	public List<byte[]> relocate(int[] addrs) throws HunkParseError {
 		Segment[] segs = binImage.getSegments();
 		
@@ -47,60 +111,220 @@ public class Relocate {
 			throw new HunkParseError("Reloc addrs != Reloc segments");
 		}
 		
+		int dataBase = getDataBase(addrs);
+		boolean isExecutable = binImage.isExecutable();
+		long start = System.nanoTime();
 		List<byte[]> datas = new ArrayList<>();
+		List<byte[]> read = new ArrayList<>();
+		List<Callable<BitSet>> tasks = new ArrayList<>();
+		int relocs = 0;
 		
+		// the segments are views of one provider that can't be read concurrently
 		for (Segment seg : segs) {
-			byte[] data = new byte[seg.getSize()];
-			copyData(data, seg);
-			relocData(data, seg, addrs);
+			int count = seg.getRelocIndex().size();
+			byte[] original = (count == 0) ? null : readData(seg);
+			byte[] data = (original == null) ? null : original.clone();
+			
+			read.add(original);
 			datas.add(data);
+			relocs += count;
+			tasks.add(() -> (data == null) ? new BitSet() : relocData(data, seg, addrs, dataBase, isExecutable));
 		}
 		
+		BitSet[] sites = new BitSet[segs.length];
+		int overflows = 0;
+		int i = 0;
+		
+		for (Future<BitSet> result : ForkJoinPool.commonPool().invokeAll(tasks)) {
+			try {
+				sites[i] = result.get();
+				overflows += sites[i++].cardinality();
+			} catch (ExecutionException e) {
+				if (e.getCause() instanceof HunkParseError) {
+					throw (HunkParseError)e.getCause();
+				}
+				
+				throw new HunkParseError(e.getCause());
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new HunkParseError(e);
+			}
+		}
+		
+		stats = new Stats(segs.length, relocs, overflows, System.nanoTime() - start);
+		overflowed = sites;
+		originals = read;
 		return datas;
 	}
+	
+	/**
+	 * Applies the relocations of one segment of an executable, {@code addrs} holds the
+	 * address of every target segment at its id. Returns null if the segment has no
+	 * relocations.
+	 * 
+	 * @param dataBase the small data base, see {@link #getDataBase(int[])}
+	 */
+	public static byte[] relocate(Segment seg, int[] addrs, int dataBase) throws HunkParseError {
+		if (seg.getRelocIndex().size() == 0) {
+			return null;
+		}
+		
+		byte[] data = readData(seg);
+		relocData(data, seg, addrs, dataBase, true);
+		return data;
+	}
 
-	private static void copyData(byte[] data, Segment seg) {
-		byte[] srcData = seg.getData();
+	/**
+	 * Returns the unrelocated contents of a segment, zero padded up to its size.
+	 */
+	public static byte[] readData(Segment seg) throws HunkParseError {
+		ByteProvider srcData = seg.getData();
+		int size = seg.getSize();
+		
+		if (srcData == null) {
+			return new byte[size];
+		}
 		
-		if (srcData != null) {
-			int srcLen = srcData.length;
+		try {
+			int srcLen = (int) Math.min(srcData.length(), size);
+			byte[] bytes = srcData.readBytes(0, srcLen);
+			
+			if (srcLen == size) {
+				return bytes;
+			}
 			
-			System.arraycopy(srcData, 0, data, 0, srcLen);
+			byte[] data = new byte[size];
+			System.arraycopy(bytes, 0, data, 0, srcLen);
+			return data;
+		} catch (IOException e) {
+			throw new HunkParseError(e);
 		}
 	}
 
-	private static void relocData(byte[] data, Segment seg, int[] addrs) {
-		Segment[] toSegs = seg.getRelocationsToSegments();
+	/**
+	 * Patches every (target, type) run over one view of the segment data.
+	 * Returns the offsets of the 8 and 16 bit relocations left unpatched
+	 * because their value doesn't fit.
+	 */
+	private static BitSet relocData(byte[] data, Segment seg, int[] addrs, int dataBase, boolean isExecutable) throws HunkParseError {
+		RelocIndex index = seg.getRelocIndex();
+		Segment[] toSegs = index.getTargets();
+		ByteBuffer buf = ByteBuffer.wrap(data);
+		int segAddr = addrs[seg.getId()];
+		BitSet overflowed = new BitSet();
 		
-		for (Segment toSeg : toSegs) {
-			Reloc[] relocs = seg.getRelocations(toSeg);
+		for (int t = 0; t < toSegs.length; ++t) {
+			int targetAddr = addrs[toSegs[t].getId()];
 			
-			for (Reloc r : relocs) {
-				reloc(data, r, addrs[toSeg.getId()]);
+			for (RelocTable relocs : index.getTables(t)) {
+				int width = relocs.getWidth();
+				
+				if (relocs.size() > 0 && (relocs.getOffset(0) < 0 || relocs.getOffset(relocs.size() - 1) > data.length - width)) {
+					throw new HunkParseError(String.format("Relocation outside of segment %s", seg.getName()));
+				}
+				
+				switch (relocs.getType()) {
+				case HUNK_RELRELOC16:
+				case HUNK_RELRELOC8:
+					// PC relative, the displacement is from the patched word itself
+					for (int i = 0; i < relocs.size(); ++i) {
+						int offset = relocs.getOffset(i);
+						
+						if (!patchNarrow(buf, offset, width, targetAddr - (segAddr + offset))) {
+							overflowed.set(offset);
+						}
+					}
+					break;
+				case HUNK_DREL16:
+				case HUNK_DREL8:
+					for (int i = 0; i < relocs.size(); ++i) {
+						int offset = relocs.getOffset(i);
+						
+						if (!patchNarrow(buf, offset, width, targetAddr - dataBase)) {
+							overflowed.set(offset);
+						}
+					}
+					break;
+				default:
+					// executables store HUNK_DREL32 as absolute 32 bit relocations, units as data base relative ones
+					int delta = (relocs.getType() == HunkType.HUNK_DREL32 && !isExecutable) ? targetAddr - dataBase : targetAddr;
+					
+					for (int i = 0; i < relocs.size(); ++i) {
+						int offset = relocs.getOffset(i);
+						buf.putInt(offset, buf.getInt(offset) + delta);
+					}
+					break;
+				}
 			}
 		}
+		
+		return overflowed;
 	}
 	
-	private static void reloc(byte[] data, Reloc reloc, int sectAddr) {
-		int offset = reloc.getOffset();
+	private static boolean patchNarrow(ByteBuffer buf, int offset, int width, int delta) {
+		if (width == 2) {
+			int value = buf.getShort(offset) + delta;
+			
+			if (value < Short.MIN_VALUE || value > Short.MAX_VALUE) {
+				return false;
+			}
+			
+			buf.putShort(offset, (short)value);
+		} else {
+			int value = buf.get(offset) + delta;
+			
+			if (value < Byte.MIN_VALUE || value > Byte.MAX_VALUE) {
+				return false;
+			}
+			
+			buf.put(offset, (byte)value);
+		}
 		
-		ByteBuffer buf = ByteBuffer.wrap(data);
+		return true;
+	}
+	
+	/**
+	 * Counters of one relocation pass.
+	 */
+	public static final class Stats {
+		private final int segments;
+		private final int relocations;
+		private final int overflows;
+		private final long nanos;
+		
+		Stats(int segments, int relocations, int overflows, long nanos) {
+			this.segments = segments;
+			this.relocations = relocations;
+			this.overflows = overflows;
+			this.nanos = nanos;
+		}
+		
+		public int getSegments() {
+			return segments;
+		}
+		
+		public int getRelocations() {
+			return relocations;
+		}
+		
+		/**
+		 * Returns the number of 8 and 16 bit relocations whose value didn't fit.
+		 */
+		public int getOverflows() {
+			return overflows;
+		}
+		
+		public long getNanos() {
+			return nanos;
+		}
+		
+		public double getRelocationsPerSecond() {
+			return (nanos == 0) ? 0 : relocations * 1e9 / nanos;
+		}
 		
-		switch (reloc.getWidth()) {
-		case 4: {
-			int delta = buf.getInt(offset) + reloc.getAddend();
-			buf.putInt(offset, (int)(sectAddr + delta));
-		} break;
-		case 2: {
-			System.out.println(String.format("Word reloc at 0x%08X, delta: %d", offset, buf.getShort(offset)));
-			// int delta = buf.getShort(offset) + reloc.getAddend();
-			// buf.putShort(offset, (short)(sectAddr + delta - offset));
-		} break;
-		case 1: {
-			System.out.println(String.format("Byte reloc at 0x%08X, delta: %d", offset, buf.get(offset)));
-			// int delta = buf.get(offset) + reloc.getAddend();
-			// buf.put(offset, (byte)(sectAddr + delta - offset));
-		} break;
+		@Override
+		public String toString() {
+			return String.format("%d relocations in %d segments, %.0f/s, %d out of range", relocations, segments, getRelocationsPerSecond(), overflows);
 		}
 	}
 }
@@ -1,27 +1,50 @@
 package hunk;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 
+import ghidra.app.util.bin.ByteProvider;
+
 public class Segment {
 
+	private static final RelocTable[] NO_RELOCS = new RelocTable[0];
+	private static final HunkDebugLine[] NO_LINES = new HunkDebugLine[0];
+	private static final HunkDebugStabs[] NO_STABS = new HunkDebugStabs[0];
+
 	private final SegmentType type;
 	private final int segSize;
-	private final byte[] data;
-	private final HashMap<Segment, List<Reloc>> relocsList;
+	private final ByteProvider data;
+	private final HashMap<Segment, RelocTable[]> relocsList;
+	private RelocIndex relocIndex;
 	private final HashMap<Segment, List<Symbol>> symbolsList;
+	private final long dataOffset;
 	private int id;
 	private int num;
 	private HunkSegment segmentInfo;
+	private String name;
+	private List<XDefinition> definitions;
+	private List<XReference> references;
+	private HunkDebugLine[] lineTables;
+	private HunkDebugStabs[] stabs;
 	
-	Segment(SegmentType type, int size, byte[] data, int num) {
+	Segment(SegmentType type, int size, ByteProvider data, long dataOffset, int num) {
 		this.type = type;
 		this.segSize = size;
 		this.data = data;
+		this.dataOffset = dataOffset;
 		this.num = num;
 		segmentInfo = null;
+		name = null;
+		definitions = null;
+		references = null;
+		lineTables = NO_LINES;
+		stabs = NO_STABS;
 		
 		relocsList = new HashMap<>();
 		symbolsList = new HashMap<>();
@@ -37,22 +60,98 @@ public class Segment {
 		return segSize;
 	}
 
-    byte[] getData() {
+    ByteProvider getData() {
 		return data;
 	}
     
+	/**
+	 * Returns the file offset of the segment payload, -1 if it has none.
+	 */
+	long getDataOffset() {
+		return dataOffset;
+	}
+    
+	/**
+	 * Returns the unrelocated segment contents, streamed from the underlying file and
+	 * zero padded up to the segment size.
+	 */
+	public InputStream getDataStream() throws IOException {
+		long dataSize = (data == null) ? 0 : Math.min(data.length(), segSize);
+		
+		if (dataSize == 0) {
+			return new ByteArrayInputStream(new byte[segSize]);
+		}
+		
+		InputStream stream = data.getInputStream(0);
+		
+		if (dataSize == segSize) {
+			return stream;
+		}
+		
+		return new SequenceInputStream(stream, new ByteArrayInputStream(new byte[(int) (segSize - dataSize)]));
+	}
+    
     public String getName() {
-    	return ((segmentInfo == null) || (segmentInfo.getName() == null)) ? String.format("%s_%02d", type.toString(), id) : segmentInfo.getName();
+    	return (name == null) ? String.format("%s_%02d", type.toString(), id) : name;
+    }
+    
+    String getHunkName() {
+    	return name;
     }
 
     void setSegmentInfo(HunkSegment seg) {
     	segmentInfo = seg;
+    	setExternals(seg.getName(), seg.getDefinitions(), seg.getReferences());
+    	
+    	if (seg.getDebugInfos() != null) {
+    		setLineTables(seg.getDebugInfos().stream().filter(HunkDebugLine.class::isInstance).toArray(HunkDebugLine[]::new));
+    		setStabs(seg.getDebugInfos().stream().filter(HunkDebugStabs.class::isInstance).toArray(HunkDebugStabs[]::new));
+    	}
 	}
+    
+    void setLineTables(HunkDebugLine[] lineTables) {
+    	this.lineTables = lineTables;
+    }
+    
+    void setStabs(HunkDebugStabs[] stabs) {
+    	this.stabs = stabs;
+    }
+    
+    void setExternals(String name, List<XDefinition> definitions, List<XReference> references) {
+    	this.name = name;
+    	this.definitions = definitions;
+    	this.references = references;
+    }
 	
+	/**
+	 * Returns the hunk the segment was built from, null when the image was restored from the cache.
+	 */
 	public HunkSegment getSegmentInfo() {
 		return segmentInfo;
 	}
 	
+	public List<XDefinition> getDefinitions() {
+		return definitions;
+	}
+	
+	public List<XReference> getReferences() {
+		return references;
+	}
+	
+	/**
+	 * Returns the source line tables of the segment from its LINE debug blocks.
+	 */
+	public HunkDebugLine[] getLineTables() {
+		return lineTables;
+	}
+	
+	/**
+	 * Returns the GCC stabs of the segment, decoded lazily.
+	 */
+	public HunkDebugStabs[] getStabs() {
+		return stabs;
+	}
+	
 	public int getId() {
 		return id;
 	}
@@ -69,22 +168,61 @@ public class Segment {
 		this.num = num;
 	}
 	
-	void addRelocations(Segment segment, final List<Reloc> relocs) {
-		relocsList.put(segment, relocs);
+	synchronized void addRelocations(Segment segment, HunkType relocType, final int[] offsets) {
+		relocIndex = null;
+		
+		RelocTable[] tables = relocsList.getOrDefault(segment, NO_RELOCS);
+		
+		for (RelocTable table : tables) {
+			if (table.getType() == relocType) {
+				table.add(offsets);
+				return;
+			}
+		}
+		
+		RelocTable table = new RelocTable(relocType);
+		table.add(offsets);
+		
+		tables = Arrays.copyOf(tables, tables.length + 1);
+		tables[tables.length - 1] = table;
+		relocsList.put(segment, tables);
 	}
 	
 	void addSymbols(Segment segment, final List<Symbol> symbols) {
 		symbolsList.put(segment, symbols);
 	}
 	
-	public Segment[] getRelocationsToSegments() {
-		return new HashSet<>(relocsList.keySet()).toArray(Segment[]::new);
+	Segment[] getSymbolsToSegments() {
+		return symbolsList.keySet().toArray(Segment[]::new);
 	}
 	
-	public Reloc[] getRelocations(Segment toSeg) {
-		final List<Reloc> relocs = relocsList.getOrDefault(toSeg, new ArrayList<>());
+	/**
+	 * Returns the frozen relocation index of the segment, built on first use once
+	 * all relocations were added.
+	 */
+	public synchronized RelocIndex getRelocIndex() {
+		if (relocIndex == null) {
+			relocIndex = RelocIndex.build(relocsList);
+		}
 		
-		return relocs.toArray(Reloc[]::new);
+		return relocIndex;
+	}
+	
+	/**
+	 * Returns the target segments of the relocations in id order.
+	 * The returned array is shared and must not be modified.
+	 */
+	public Segment[] getRelocationsToSegments() {
+		return getRelocIndex().getTargets();
+	}
+	
+	/**
+	 * Returns the relocation tables to the given segment, one per relocation block type.
+	 * The returned array is shared and must not be modified.
+	 */
+	public synchronized RelocTable[] getRelocations(Segment toSeg) {
+		getRelocIndex();
+		return relocsList.getOrDefault(toSeg, NO_RELOCS);
 	}
 
 	public Symbol[] getSymbols(Segment toSeg) {
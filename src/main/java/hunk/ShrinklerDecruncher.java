@@ -0,0 +1,194 @@
+package hunk;
+
+import java.util.Arrays;
+
+/**
+ * Shrinkler "Shri" data files: the signature, the version, the size of the rest
+ * of the header, the packed and unpacked sizes, the safety margin and the
+ * flags, followed by an LZ stream coded with an adaptive binary range coder.
+ */
+final class ShrinklerDecruncher implements Decruncher {
+	
+	private static final byte[] MAGIC = { 'S', 'h', 'r', 'i' };
+	private static final int MIN_HEADER_SIZE = 12;
+	private static final int FLAG_PARITY_CONTEXT = 1;
+	
+	private static final int CONTEXT_REPEATED = 0;
+	private static final int CONTEXT_GROUPS = 1;
+	private static final int GROUP_OFFSET = 2;
+	private static final int GROUP_LENGTH = 3;
+	
+	@Override
+	public String getName() {
+		return "Shrinkler";
+	}
+	
+	@Override
+	public long getStreamLength(byte[] header, long fileLength) {
+		if (header.length < 12) {
+			return -1;
+		}
+		
+		for (int i = 0; i < MAGIC.length; ++i) {
+			if (header[i] != MAGIC[i]) {
+				return -1;
+			}
+		}
+		
+		int headerSize = readShort(header, 6);
+		return (headerSize < MIN_HEADER_SIZE) ? -1 : 8 + headerSize + (readInt(header, 8) & 0xFFFFFFFFL);
+	}
+	
+	@Override
+	public byte[] decrunch(byte[] data) throws HunkParseError {
+		if (data.length < 8 + MIN_HEADER_SIZE) {
+			throw new HunkParseError("Shrinkler stream is too short");
+		}
+		
+		int headerSize = readShort(data, 6);
+		int outSize = readInt(data, 12);
+		
+		if (outSize <= 0 || outSize > Decrunchers.MAX_UNPACKED_SIZE) {
+			throw new HunkParseError(String.format("Wrong Shrinkler unpacked size: %d", outSize));
+		}
+		
+		// headers without flags come from versions that always used the parity context
+		int flags = (headerSize >= 16) ? readInt(data, 20) : FLAG_PARITY_CONTEXT;
+		int parityMask = flags & FLAG_PARITY_CONTEXT;
+		
+		RangeDecoder decoder = new RangeDecoder(data, Math.min(8 + headerSize, data.length));
+		byte[] out = new byte[outSize];
+		int pos = 0;
+		int offset = 0;
+		boolean ref = false;
+		boolean prevRef = false;
+		
+		while (true) {
+			if (ref) {
+				if (prevRef || decoder.decode(CONTEXT_REPEATED) == 0) {
+					offset = decoder.decodeNumber(CONTEXT_GROUPS + (GROUP_OFFSET << 8)) - 2;
+					
+					if (offset == 0) {
+						break;
+					}
+				}
+				
+				int length = decoder.decodeNumber(CONTEXT_GROUPS + (GROUP_LENGTH << 8));
+				
+				if (offset > pos || length > outSize - pos) {
+					throw new HunkParseError("Shrinkler match exceeds the unpacked data");
+				}
+				
+				for (; length > 0; --length, ++pos) {
+					out[pos] = out[pos - offset];
+				}
+				
+				prevRef = true;
+			} else {
+				if (pos == outSize) {
+					throw new HunkParseError("Shrinkler literal exceeds the unpacked size");
+				}
+				
+				int context = CONTEXT_GROUPS + ((pos & parityMask) << 8);
+				int lit = 1;
+				
+				while (lit < 0x100) {
+					lit = (lit << 1) | decoder.decode(context + lit);
+				}
+				
+				out[pos++] = (byte)lit;
+				prevRef = false;
+			}
+			
+			ref = decoder.decode(CONTEXT_GROUPS + ((pos & parityMask) << 8)) != 0;
+		}
+		
+		if (pos != outSize) {
+			throw new HunkParseError(String.format("Shrinkler stream ends at %d of %d bytes", pos, outSize));
+		}
+		
+		return out;
+	}
+	
+	private static int readShort(byte[] data, int offset) {
+		return ((data[offset] & 0xFF) << 8) | (data[offset + 1] & 0xFF);
+	}
+	
+	private static int readInt(byte[] data, int offset) {
+		return (readShort(data, offset) << 16) | readShort(data, offset + 2);
+	}
+	
+	/**
+	 * Decodes bits with a probability per context, reading the stream from its
+	 * top bit down. Past the end of the stream the bits are zero.
+	 */
+	private static final class RangeDecoder {
+		private static final int ADJUST_SHIFT = 4;
+		
+		private final int[] contexts = new int[CONTEXT_GROUPS + 4 * 0x100];
+		private final byte[] data;
+		private long bitPos;
+		private int size = 1;
+		private int value;
+		
+		RangeDecoder(byte[] data, int start) {
+			this.data = data;
+			this.bitPos = start * 8L;
+			Arrays.fill(contexts, 0x8000);
+		}
+		
+		private int bit() {
+			if (bitPos >= data.length * 8L) {
+				return 0;
+			}
+			
+			int bit = (data[(int)(bitPos >>> 3)] >>> (7 - (int)(bitPos & 7))) & 1;
+			++bitPos;
+			return bit;
+		}
+		
+		int decode(int context) {
+			int prob = contexts[context];
+			
+			while (size < 0x8000) {
+				size <<= 1;
+				value = (value << 1) | bit();
+			}
+			
+			// the product can take all 32 bits
+			int threshold = (size * prob) >>> 16;
+			
+			if (value >= threshold) {
+				value -= threshold;
+				size -= threshold;
+				contexts[context] = prob - (prob >> ADJUST_SHIFT);
+				return 0;
+			}
+			
+			size = threshold;
+			contexts[context] = prob + (0xFFFF >> ADJUST_SHIFT) - (prob >> ADJUST_SHIFT);
+			return 1;
+		}
+		
+		/**
+		 * Decodes a number of at least 2, its bit count in unary then its bits below the top one.
+		 */
+		int decodeNumber(int base) throws HunkParseError {
+			int i = 0;
+			
+			while (decode(base + i * 2 + 2) != 0) {
+				if (++i >= 30) {
+					throw new HunkParseError("Wrong Shrinkler number");
+				}
+			}
+			
+			int number = 1;
+			
+			for (; i >= 0; --i) {
+				number = (number << 1) | decode(base + i * 2 + 1);
+			}
+			
+			return number;
+		}
+	}
+}
@@ -3,11 +3,13 @@ package hunk;
 public class Symbol {
 
 	private final int offset;
-	private final String name;
+	private final SymbolPool pool;
+	private final int nameId;
 	
-	Symbol(int offset, String name) {
+	Symbol(int offset, SymbolPool pool, int nameId) {
 		this.offset = offset;
-		this.name = name;
+		this.pool = pool;
+		this.nameId = nameId;
 	}
 
 	public final int getOffset() {
@@ -15,7 +17,11 @@ public class Symbol {
 	}
 
 	public final String getName() {
-		return name;
+		return pool.getName(nameId);
+	}
+
+	public final int getNameId() {
+		return nameId;
 	}
 	
 }
@@ -0,0 +1,118 @@
+package hunk;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Per file pool of hunk, symbol and index names. Every distinct name is decoded
+ * once and identified by a compact integer id; id {@link #EMPTY} is the empty name.
+ */
+public final class SymbolPool {
+
+	public static final int EMPTY = 0;
+	
+	private String[] names;
+	private int[] hashes;
+	private int[] table;
+	private int count;
+	
+	public SymbolPool() {
+		names = new String[64];
+		hashes = new int[64];
+		table = new int[128];
+		count = 0;
+		
+		names[count++] = "";
+	}
+	
+	/**
+	 * Returns the id of the ISO-8859-1 name stored in {@code bytes}, adding it to
+	 * the pool if it is not known yet.
+	 */
+	public synchronized int intern(byte[] bytes, int offset, int length) {
+		if (length <= 0) {
+			return EMPTY;
+		}
+		
+		// same value as String.hashCode() of the decoded name
+		int hash = 0;
+		for (int i = 0; i < length; ++i) {
+			hash = 31 * hash + (bytes[offset + i] & 0xFF);
+		}
+		
+		int mask = table.length - 1;
+		int slot = spread(hash) & mask;
+		
+		while (table[slot] != 0) {
+			int id = table[slot] - 1;
+			
+			if (hashes[id] == hash && matches(names[id], bytes, offset, length)) {
+				return id;
+			}
+			
+			slot = (slot + 1) & mask;
+		}
+		
+		if (count == names.length) {
+			names = Arrays.copyOf(names, count * 2);
+			hashes = Arrays.copyOf(hashes, count * 2);
+		}
+		
+		int id = count++;
+		names[id] = new String(bytes, offset, length, StandardCharsets.ISO_8859_1);
+		hashes[id] = hash;
+		table[slot] = id + 1;
+		
+		if (count * 2 > table.length) {
+			rehash();
+		}
+		
+		return id;
+	}
+	
+	public int intern(String name) {
+		byte[] bytes = name.getBytes(StandardCharsets.ISO_8859_1);
+		return intern(bytes, 0, bytes.length);
+	}
+	
+	public synchronized String getName(int id) {
+		return names[id];
+	}
+	
+	public synchronized int size() {
+		return count;
+	}
+	
+	private void rehash() {
+		table = new int[table.length * 2];
+		int mask = table.length - 1;
+		
+		for (int id = 1; id < count; ++id) {
+			int slot = spread(hashes[id]) & mask;
+			
+			while (table[slot] != 0) {
+				slot = (slot + 1) & mask;
+			}
+			
+			table[slot] = id + 1;
+		}
+	}
+	
+	private static int spread(int hash) {
+		return hash ^ (hash >>> 16);
+	}
+	
+	private static boolean matches(String name, byte[] bytes, int offset, int length) {
+		if (name.length() != length) {
+			return false;
+		}
+		
+		for (int i = 0; i < length; ++i) {
+			if (name.charAt(i) != (bytes[offset + i] & 0xFF)) {
+				return false;
+			}
+		}
+		
+		return true;
+	}
+}
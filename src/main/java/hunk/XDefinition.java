@@ -3,13 +3,15 @@ package hunk;
 public class XDefinition {
 	private final boolean isGlobal;
 	private final boolean isAbsolute;
-	private final String name;
+	private final SymbolPool pool;
+	private final int nameId;
 	private final int offset;
 	
-	public XDefinition(boolean isGlobal, boolean isAbsolute, String name, int offset) {
+	public XDefinition(boolean isGlobal, boolean isAbsolute, SymbolPool pool, int nameId, int offset) {
 		this.isGlobal = isGlobal;
 		this.isAbsolute = isAbsolute;
-		this.name = name;
+		this.pool = pool;
+		this.nameId = nameId;
 		this.offset = offset;
 	}
 
@@ -22,7 +24,11 @@ public class XDefinition {
 	}
 
 	public String getName() {
-		return name;
+		return pool.getName(nameId);
+	}
+
+	public int getNameId() {
+		return nameId;
 	}
 	
 	public int getOffset() {
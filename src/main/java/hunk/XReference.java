@@ -3,20 +3,26 @@ package hunk;
 import java.util.List;
 
 public class XReference {
-	private final String name;
+	private final SymbolPool pool;
+	private final int nameId;
 	private final List<Integer> offsets;
 	private final XReferenceType type;
 	private final int width;
 	
-	public XReference(String name, XReferenceType type, final List<Integer> offsets, int width) {
-		this.name = name;
+	public XReference(SymbolPool pool, int nameId, XReferenceType type, final List<Integer> offsets, int width) {
+		this.pool = pool;
+		this.nameId = nameId;
 		this.type = type;
 		this.offsets = offsets;
 		this.width = width;
 	}
 	
 	public String getName() {
-		return name;
+		return pool.getName(nameId);
+	}
+
+	public int getNameId() {
+		return nameId;
 	}
 
 	public final List<Integer> getOffsets() {
@@ -0,0 +1,106 @@
+package amiga;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+
+import org.junit.Test;
+
+import ghidra.program.model.data.DataType;
+import ghidra.program.model.data.Pointer;
+import ghidra.program.model.data.StandAloneDataTypeManager;
+import hunk.HunkDebugStabs;
+import hunk.StabsBuilder;
+
+public class StabsTypesTest {
+	private static final int COUNT = 9;
+	private static final int HEAD = 10;
+	private static final int COLOR = 5;
+	private static final int CLS = 8;
+	private static final int HALF = 15;
+	private static final int C = 16;
+	
+	private final StandAloneDataTypeManager dtm = new StandAloneDataTypeManager("stabs");
+	private final HunkDebugStabs stabs;
+	private final StabsTypes types;
+	
+	public StabsTypesTest() throws IOException {
+		// two units, the second one numbers its types again
+		stabs = new StabsBuilder()
+			.add(HunkDebugStabs.N_SO, "/src/", 0)
+			.add(HunkDebugStabs.N_SO, "t.c", 0)
+			.add(HunkDebugStabs.N_LSYM, "int:t1=r1;-2147483648;2147483647;", 0)
+			.add(HunkDebugStabs.N_LSYM, "char:t2=r2;0;127;", 0)
+			.add(HunkDebugStabs.N_LSYM, "list:t4=5=*6=xsnode:", 0)
+			.add(HunkDebugStabs.N_LSYM, "color:T3=eRED:0,GREEN:1,;", 0)
+			.add(HunkDebugStabs.N_LSYM, "node:T7=s8next:4,0,32;val:1,32,32;;", 0)
+			.add(HunkDebugStabs.N_LSYM, "short:t8=r1;-32768;32767;", 0)
+			.add(HunkDebugStabs.N_LSYM, "Cls:Tt9=s4!1,020,8;;", 0)
+			.add(HunkDebugStabs.N_FUN, "count:F1", 0x10)
+			.add(HunkDebugStabs.N_PSYM, "head:p4", 8)
+			.add(HunkDebugStabs.N_RSYM, "limit:P8", 2)
+			.add(HunkDebugStabs.N_FUN, "", 0x30)
+			.add(HunkDebugStabs.N_SO, "", 0x40)
+			.add(HunkDebugStabs.N_SO, "u.c", 0x40)
+			.add(HunkDebugStabs.N_FUN, "half:F1", 0x40)
+			.add(HunkDebugStabs.N_PSYM, "c:p2", 8)
+			.add(HunkDebugStabs.N_LSYM, "short:t1=r1;-32768;32767;", 0)
+			.build();
+		types = new StabsTypes(stabs, dtm);
+	}
+	
+	private DataType getType(int index) throws IOException {
+		int transId = dtm.startTransaction("Apply stabs");
+		
+		try {
+			return types.getType(stabs.getStab(index));
+		} finally {
+			dtm.endTransaction(transId, true);
+		}
+	}
+	
+	@Test
+	public void testBaseType() throws IOException {
+		DataType ret = getType(COUNT);
+		
+		assertNotNull(ret);
+		assertEquals(4, ret.getLength());
+		
+		// only the entries up to the definition of the type number are parsed
+		assertNull(dtm.getDataType(StabsTypes.CATEGORY, "list"));
+		assertNull(dtm.getDataType(StabsTypes.CATEGORY, "color"));
+	}
+	
+	@Test
+	public void testCrossReference() throws IOException {
+		DataType dt = getType(HEAD);
+		
+		// the struct is defined after the pointer type that refers to it
+		assertTrue(dt instanceof Pointer);
+		DataType node = ((Pointer)dt).getDataType();
+		assertEquals("node", node.getName());
+		assertEquals(8, node.getLength());
+		
+		assertNotNull(dtm.getDataType(StabsTypes.CATEGORY, "list"));
+		assertNotNull(dtm.getDataType(StabsTypes.CATEGORY, "node"));
+	}
+	
+	@Test
+	public void testUnits() throws IOException {
+		assertEquals(2, getType(HALF).getLength());
+		
+		// type 2 is only defined in the first unit
+		assertNull(getType(C));
+		assertEquals(2, getType(HEAD + 1).getLength());
+	}
+	
+	@Test
+	public void testUnsupported() throws IOException {
+		assertNull(getType(CLS));
+		assertEquals(4, getType(COLOR).getLength());
+		assertNotNull(dtm.getDataType(StabsTypes.CATEGORY, "color"));
+	}
+}
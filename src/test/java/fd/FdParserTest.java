@@ -47,4 +47,18 @@ public class FdParserTest {
 			assertNotNull(entry.getPath(), funcTable);
 		}
 	}
+
+	@Test
+	public void testSfdDatabase() throws Exception {
+		var db = SfdDatabase.open(new File("data/sfd.bin"));
+		assertEquals(new File("data/sfd").listFiles().length, db.getLibraryNames().length);
+
+		var funcTable = db.getLibrary("exec_library");
+		assertEquals(125, funcTable.getFunctions().length);
+		var func = funcTable.getFunctionByName("AVL_FindNextNodeByKey");
+		assertNotNull(func);
+		assertEquals(-0x37e, func.getBias());
+		assertEquals("CONST struct AVLNode *", func.getArgs().get(0).type);
+		assertEquals("a0", func.getArgs().get(0).reg);
+	}
 }
@@ -0,0 +1,258 @@
+package hunk;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import ghidra.app.util.bin.BinaryReader;
+import ghidra.app.util.bin.ByteArrayProvider;
+import ghidra.app.util.bin.ByteProvider;
+import ghidra.app.util.importer.MessageLog;
+
+public class BinImageCacheTest {
+	private static final int HUNK_UNIT = 999;
+	private static final int HUNK_CODE = 1001;
+	private static final int HUNK_DATA = 1002;
+	private static final int HUNK_BSS = 1003;
+	private static final int HUNK_RELOC32 = 1004;
+	private static final int HUNK_EXT = 1007;
+	private static final int HUNK_SYMBOL = 1008;
+	private static final int HUNK_DEBUG = 1009;
+	private static final int HUNK_END = 1010;
+	private static final int HUNK_HEADER = 1011;
+	private static final int HUNK_OVERLAY = 1013;
+	private static final int HUNK_BREAK = 1014;
+	private static final int EXT_DEF = 1;
+	private static final int EXT_ABS = 2;
+	private static final int EXT_ABSREF32 = 129;
+	
+	private final BinImageCache cache = new BinImageCache(null);
+	private final ByteBuffer file = ByteBuffer.allocate(0x200);
+	
+	private void putName(String name) {
+		byte[] bytes = Arrays.copyOf(name.getBytes(StandardCharsets.US_ASCII), (name.length() + 3) & ~3);
+		file.putInt(bytes.length / 4).put(bytes);
+	}
+	
+	private void putExt(int type, String name) {
+		byte[] bytes = Arrays.copyOf(name.getBytes(StandardCharsets.US_ASCII), (name.length() + 3) & ~3);
+		file.putInt((type << 24) | (bytes.length / 4)).put(bytes);
+	}
+	
+	private ByteProvider getProvider() {
+		return new ByteArrayProvider(Arrays.copyOf(file.array(), file.position()));
+	}
+	
+	private static BinImage parse(ByteProvider provider, boolean isExecutable) throws HunkParseError {
+		BinImage image = BinFmtHunk.loadImage(new HunkBlockFile(new BinaryReader(provider, false), isExecutable), new MessageLog());
+		assertNotNull(image);
+		return image;
+	}
+	
+	/**
+	 * An executable with relocations, symbols, a line table and an overlay table.
+	 */
+	private ByteProvider buildExecutable() {
+		file.putInt(HUNK_HEADER).putInt(0).putInt(3).putInt(0).putInt(2).putInt(4).putInt(2).putInt(0x10);
+		
+		file.putInt(HUNK_CODE).putInt(4).putInt(0x4E714E71).putInt(4).putInt(0).putInt(8);
+		file.putInt(HUNK_RELOC32).putInt(2).putInt(1).putInt(4).putInt(12).putInt(1).putInt(2).putInt(8).putInt(0);
+		file.putInt(HUNK_SYMBOL);
+		putName("start");
+		file.putInt(0);
+		putName("loop");
+		file.putInt(4).putInt(0);
+		file.putInt(HUNK_DEBUG).putInt(11).putInt(0).put("LINE".getBytes(StandardCharsets.US_ASCII));
+		putName("main.c");
+		file.putInt(10).putInt(0).putInt(11).putInt(4).putInt(14).putInt(12);
+		file.putInt(HUNK_END);
+		
+		file.putInt(HUNK_DATA).putInt(2).putInt(0x12345678).putInt(0);
+		file.putInt(HUNK_RELOC32).putInt(1).putInt(0).putInt(4).putInt(0);
+		file.putInt(HUNK_END);
+		
+		file.putInt(HUNK_BSS).putInt(0x10);
+		file.putInt(HUNK_END);
+		
+		file.putInt(HUNK_OVERLAY).putInt(8).putInt(1).putInt(0x100).putInt(0).putInt(0).putInt(1).putInt(1).putInt(3).putInt(0).putInt(0);
+		file.putInt(HUNK_BREAK);
+		return getProvider();
+	}
+	
+	/**
+	 * An object unit with definitions and references.
+	 */
+	private ByteProvider buildUnit() {
+		file.putInt(HUNK_UNIT);
+		putName("unit");
+		file.putInt(HUNK_CODE).putInt(2).putInt(0).putInt(0);
+		file.putInt(HUNK_EXT);
+		putExt(EXT_DEF, "_main");
+		file.putInt(0);
+		putExt(EXT_ABS, "_LVOOpen");
+		file.putInt(-30);
+		putExt(EXT_ABSREF32, "_printf");
+		file.putInt(2).putInt(0).putInt(4);
+		file.putInt(0);
+		file.putInt(HUNK_END);
+		return getProvider();
+	}
+	
+	private static void assertSameImage(BinImage expected, BinImage actual) {
+		assertEquals(expected.isExecutable(), actual.isExecutable());
+		assertArrayEquals(expected.getOverlayTable(), actual.getOverlayTable());
+		
+		Segment[] expSegs = expected.getSegments();
+		Segment[] segs = actual.getSegments();
+		assertEquals(expSegs.length, segs.length);
+		
+		for (int i = 0; i < segs.length; ++i) {
+			Segment exp = expSegs[i];
+			Segment seg = segs[i];
+			
+			assertEquals(exp.getType(), seg.getType());
+			assertEquals(exp.getSize(), seg.getSize());
+			assertEquals(exp.getNum(), seg.getNum());
+			assertEquals(exp.getId(), seg.getId());
+			assertEquals(exp.getDataOffset(), seg.getDataOffset());
+			assertEquals(exp.getName(), seg.getName());
+			
+			assertDefinitions(exp.getDefinitions(), seg.getDefinitions());
+			assertReferences(exp.getReferences(), seg.getReferences());
+			assertLineTables(exp.getLineTables(), seg.getLineTables());
+			assertRelocations(exp.getRelocIndex(), seg.getRelocIndex());
+			
+			Segment[] targets = seg.getSymbolsToSegments();
+			assertEquals(exp.getSymbolsToSegments().length, targets.length);
+			
+			for (Segment target : targets) {
+				Symbol[] expSymbols = exp.getSymbols(expSegs[target.getId()]);
+				Symbol[] symbols = seg.getSymbols(target);
+				assertEquals(expSymbols.length, symbols.length);
+				
+				for (int j = 0; j < symbols.length; ++j) {
+					assertEquals(expSymbols[j].getName(), symbols[j].getName());
+					assertEquals(expSymbols[j].getOffset(), symbols[j].getOffset());
+				}
+			}
+		}
+	}
+	
+	private static void assertDefinitions(List<XDefinition> expected, List<XDefinition> actual) {
+		if (expected == null) {
+			assertNull(actual);
+			return;
+		}
+		
+		assertEquals(expected.size(), actual.size());
+		
+		for (int i = 0; i < actual.size(); ++i) {
+			assertEquals(expected.get(i).getName(), actual.get(i).getName());
+			assertEquals(expected.get(i).isGlobal(), actual.get(i).isGlobal());
+			assertEquals(expected.get(i).isAbsolute(), actual.get(i).isAbsolute());
+			assertEquals(expected.get(i).getOffset(), actual.get(i).getOffset());
+		}
+	}
+	
+	private static void assertReferences(List<XReference> expected, List<XReference> actual) {
+		if (expected == null) {
+			assertNull(actual);
+			return;
+		}
+		
+		assertEquals(expected.size(), actual.size());
+		
+		for (int i = 0; i < actual.size(); ++i) {
+			assertEquals(expected.get(i).getName(), actual.get(i).getName());
+			assertEquals(expected.get(i).getType(), actual.get(i).getType());
+			assertEquals(expected.get(i).getWidth(), actual.get(i).getWidth());
+			assertEquals(expected.get(i).getOffsets(), actual.get(i).getOffsets());
+		}
+	}
+	
+	private static void assertLineTables(HunkDebugLine[] expected, HunkDebugLine[] actual) {
+		assertEquals(expected.length, actual.length);
+		
+		for (int i = 0; i < actual.length; ++i) {
+			assertEquals(expected[i].getSourceFile(), actual[i].getSourceFile());
+			assertEquals(expected[i].size(), actual[i].size());
+			
+			for (int j = 0; j < actual[i].size(); ++j) {
+				assertEquals(expected[i].getOffset(j), actual[i].getOffset(j));
+				assertEquals(expected[i].getLine(j), actual[i].getLine(j));
+			}
+		}
+	}
+	
+	private static void assertRelocations(RelocIndex expected, RelocIndex actual) {
+		assertEquals(expected.size(), actual.size());
+		
+		for (int i = 0; i < actual.size(); ++i) {
+			assertEquals(expected.getOffset(i), actual.getOffset(i));
+			assertEquals(expected.getWidth(i), actual.getWidth(i));
+			assertEquals(expected.getTarget(i).getId(), actual.getTarget(i).getId());
+		}
+		
+		assertEquals(expected.getTargets().length, actual.getTargets().length);
+		
+		for (int t = 0; t < actual.getTargets().length; ++t) {
+			RelocTable[] expTables = expected.getTables(t);
+			RelocTable[] tables = actual.getTables(t);
+			assertEquals(expTables.length, tables.length);
+			
+			for (int j = 0; j < tables.length; ++j) {
+				assertEquals(expTables[j].getType(), tables[j].getType());
+				assertEquals(expTables[j].size(), tables[j].size());
+				
+				for (int k = 0; k < tables[j].size(); ++k) {
+					assertEquals(expTables[j].getOffset(k), tables[j].getOffset(k));
+				}
+			}
+		}
+	}
+	
+	@Test
+	public void testExecutable() throws IOException {
+		ByteProvider provider = buildExecutable();
+		BinImage image = parse(provider, true);
+		
+		// the image has something of everything the cache stores
+		Segment code = image.getSegments()[0];
+		assertEquals(3, code.getRelocIndex().size());
+		assertEquals(1, code.getLineTables().length);
+		assertEquals(2, code.getSymbols(code).length);
+		assertNotNull(image.getOverlayTable());
+		
+		cache.put("exe", image);
+		assertSameImage(parse(provider, true), cache.get("exe", provider));
+	}
+	
+	@Test
+	public void testUnit() throws IOException {
+		ByteProvider provider = buildUnit();
+		BinImage image = parse(provider, false);
+		
+		Segment code = image.getSegments()[0];
+		assertEquals(2, code.getDefinitions().size());
+		assertEquals(1, code.getReferences().size());
+		assertFalse(image.isExecutable());
+		
+		cache.put("unit", image);
+		assertSameImage(parse(provider, false), cache.get("unit", provider));
+	}
+	
+	@Test
+	public void testMissing() {
+		assertNull(cache.get("none", new ByteArrayProvider(new byte[0])));
+	}
+}
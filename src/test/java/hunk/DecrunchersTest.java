@@ -0,0 +1,63 @@
+package hunk;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import ghidra.app.util.bin.ByteArrayProvider;
+import ghidra.app.util.bin.ByteProvider;
+import ghidra.app.util.importer.MessageLog;
+
+public class DecrunchersTest {
+	private static byte[] read(String pathname) throws Exception {
+		return Files.readAllBytes(Path.of(pathname));
+	}
+	
+	@Test
+	public void testPowerPacker() throws Exception {
+		// hello.pp is hello packed as a PP20 data file
+		ByteProvider packed = new ByteArrayProvider(read("test/hunk/hello.pp"));
+		ByteProvider unpacked = Decrunchers.unpack(packed, new MessageLog());
+		
+		assertEquals("PowerPacker", Decrunchers.identify(packed).getName());
+		assertArrayEquals(read("test/hunk/hello"), unpacked.readBytes(0, unpacked.length()));
+	}
+	
+	@Test
+	public void testStub() throws Exception {
+		// hello.stub is an executable whose code hunk starts with a stub that points at hello.pp
+		ByteProvider crunched = new ByteArrayProvider(read("test/hunk/hello.stub"));
+		ByteProvider unpacked = Decrunchers.unpack(crunched, new MessageLog());
+		
+		assertNull(Decrunchers.identify(crunched));
+		assertArrayEquals(read("test/hunk/hello"), unpacked.readBytes(0, unpacked.length()));
+	}
+	
+	@Test
+	public void testTruncated() throws Exception {
+		byte[] bytes = read("test/hunk/hello.pp");
+		bytes[0] = 'I';
+		bytes[1] = 'M';
+		bytes[2] = 'P';
+		bytes[3] = '!';
+		
+		// the footer would start past the end of the file
+		ByteProvider packed = new ByteArrayProvider(Arrays.copyOf(bytes, 40));
+		assertSame(packed, Decrunchers.unpack(packed, new MessageLog()));
+	}
+	
+	@Test
+	public void testUnpacked() throws Exception {
+		ByteProvider provider = new ByteArrayProvider(read("test/hunk/hello"));
+		
+		assertNull(Decrunchers.identify(provider));
+		assertSame(provider, Decrunchers.unpack(provider, new MessageLog()));
+	}
+}
@@ -0,0 +1,49 @@
+package hunk;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class HunkDebugLineTest {
+	
+	// line and offset pairs out of order, two lines at 8 and SAS/C flags on line 20
+	private final HunkDebugLine lines = new HunkDebugLine("main.c", 0x10, new int[] {
+		12, 8,
+		10, 0,
+		0x80000014, 0x20,
+		11, 4,
+		13, 8,
+	});
+	
+	@Test
+	public void testSorted() {
+		assertEquals(5, lines.size());
+		assertEquals(0x10, lines.getOffset(0));
+		assertEquals(10, lines.getLine(0));
+		assertEquals(0x30, lines.getOffset(4));
+		assertEquals(20, lines.getLine(4));
+	}
+	
+	@Test
+	public void testDuplicateOffsets() {
+		// the last line at an offset wins, for the offset and the code after it
+		assertEquals(13, lines.findLine(0x18));
+		assertEquals(13, lines.findLine(0x1C));
+	}
+	
+	@Test
+	public void testBetweenEntries() {
+		assertEquals(10, lines.findLine(0x10));
+		assertEquals(10, lines.findLine(0x13));
+		assertEquals(11, lines.findLine(0x14));
+		assertEquals(20, lines.findLine(0x30));
+		assertEquals(20, lines.findLine(0x1000));
+	}
+	
+	@Test
+	public void testBeforeFirst() {
+		assertEquals(-1, lines.findLine(0));
+		assertEquals(-1, lines.findLine(0x0F));
+		assertEquals(-1, new HunkDebugLine("empty.c", 0, new int[0]).findLine(0));
+	}
+}
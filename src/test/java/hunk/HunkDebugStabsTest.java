@@ -0,0 +1,94 @@
+package hunk;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.junit.Test;
+
+public class HunkDebugStabsTest {
+	
+	private static HunkDebugStabs build() throws IOException {
+		return new StabsBuilder()
+			.add(HunkDebugStabs.N_SO, "/src/", 0)
+			.add(HunkDebugStabs.N_SO, "t.c", 0)
+			.add(HunkDebugStabs.N_LSYM, "int:t1=r1;-2147483648;2147483647;", 0)
+			.add(HunkDebugStabs.N_FUN, "main:F1", 0x10)
+			.add(HunkDebugStabs.N_PSYM, "argc:p1", 8)
+			.add(HunkDebugStabs.N_RSYM, "n:P1", 2)
+			.add(HunkDebugStabs.N_PSYM, "argv:p2=*3=*4=r4;0;127;", 12)
+			.add(HunkDebugStabs.N_LSYM, "node:T5=s4val:1,0,32;;", 0)
+			.add(HunkDebugStabs.N_LSYM, "sum:1", -4)
+			.add(HunkDebugStabs.N_RSYM, "i:r1", 3)
+			.add(HunkDebugStabs.N_FUN, "", 0x30)
+			.add(HunkDebugStabs.N_FUN, "exit:F1", 0x40)
+			.build();
+	}
+	
+	@Test
+	public void testIndices() throws IOException {
+		HunkDebugStabs stabs = build();
+		
+		assertEquals(12, stabs.size());
+		assertArrayEquals(new int[] { 0, 1 }, stabs.getIndices(HunkDebugStabs.N_SO));
+		assertArrayEquals(new int[] { 3, 10, 11 }, stabs.getIndices(HunkDebugStabs.N_FUN));
+		assertArrayEquals(new int[0], stabs.getIndices(HunkDebugStabs.N_GSYM));
+	}
+	
+	@Test
+	public void testFunctions() throws IOException {
+		HunkDebugStabs stabs = build();
+		List<HunkDebugStabs.Stab> functions = stabs.getFunctions();
+		
+		// the entry closing main has no name
+		assertEquals(2, functions.size());
+		assertEquals("main", functions.get(0).getName());
+		assertEquals("F1", functions.get(0).getDescriptor());
+		assertEquals(0x10, functions.get(0).getValue());
+		assertEquals("exit", functions.get(1).getName());
+		
+		List<HunkDebugStabs.Stab> params = stabs.getParameters(functions.get(0));
+		
+		assertEquals(3, params.size());
+		assertEquals("argc", params.get(0).getName());
+		assertEquals("n", params.get(1).getName());
+		assertTrue(params.get(1).isRegisterParameter());
+		assertEquals(2, params.get(1).getValue());
+		assertEquals("argv", params.get(2).getName());
+		assertFalse(params.get(2).isRegisterParameter());
+		
+		List<HunkDebugStabs.Stab> locals = stabs.getLocals(functions.get(0));
+		
+		// the local type definition is left out
+		assertEquals(2, locals.size());
+		assertEquals("sum", locals.get(0).getName());
+		assertEquals("i", locals.get(1).getName());
+		assertTrue(stabs.getParameters(functions.get(1)).isEmpty());
+		
+		assertEquals(2, stabs.getTypes().size());
+	}
+	
+	@Test
+	public void testStrings() throws IOException {
+		HunkDebugStabs stabs = new StabsBuilder()
+			.add(HunkDebugStabs.N_SO, "t.c", 0)
+			.add(HunkDebugStabs.N_LSYM, 0, 0, "")
+			.add(HunkDebugStabs.N_LSYM, 0x1000, 0, "")
+			.add(HunkDebugStabs.N_LSYM, "a:b:c", 0)
+			.build();
+		
+		assertEquals("t.c", stabs.getStab(0).getName());
+		assertEquals("", stabs.getStab(0).getDescriptor());
+		
+		// no string, and a string index past the table
+		assertEquals("", stabs.getStab(1).getName());
+		assertEquals("", stabs.getStab(2).getName());
+		
+		assertEquals("a", stabs.getStab(3).getName());
+		assertEquals("b:c", stabs.getStab(3).getDescriptor());
+	}
+}
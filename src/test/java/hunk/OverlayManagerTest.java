@@ -0,0 +1,87 @@
+package hunk;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import org.junit.Test;
+
+import ghidra.app.util.bin.ByteArrayProvider;
+
+public class OverlayManagerTest {
+	private static final int HUNK_CODE = 1001;
+	private static final int HUNK_RELOC32 = 1004;
+	private static final int HUNK_END = 1010;
+	private static final int HUNK_BREAK = 1014;
+	private static final int BASE = 0x1000;
+	private static final int NODE_BASE = 0x2000;
+	
+	private final ByteBuffer file = ByteBuffer.allocate(0x100);
+	private final BinImage root = new BinImage();
+	private final OverlayManager overlays;
+	
+	public OverlayManagerTest() throws HunkParseError {
+		// two level 1 nodes with one level 2 node each, the level 2 nodes relocate into hunk 1 of their parents
+		int a = addNode(3, -1);
+		int b = addNode(1, 1);
+		int c = addNode(5, -1);
+		int d = addNode(2, 1);
+		
+		root.addSegment(new Segment(SegmentType.SEGMENT_TYPE_CODE, 8, null, -1, 0));
+		root.setOverlayTable(new int[] {
+			1,
+			a, 0, 0, 1, 1, 1, 0, 0,
+			b, 0, 0, 2, 1, 2, 0, 0,
+			c, 0, 0, 1, 2, 1, 0, 0,
+			d, 0, 0, 2, 2, 2, 0, 0,
+		});
+		overlays = new OverlayManager(new ByteArrayProvider(file.array()), root);
+	}
+	
+	/**
+	 * Writes a node with one code hunk of {@code longs} longs, with a relocation
+	 * of its first long to {@code relocHunk} unless it is negative. Returns its file offset.
+	 */
+	private int addNode(int longs, int relocHunk) {
+		int offset = file.position();
+		file.putInt(HUNK_CODE).putInt(longs);
+		
+		for (int i = 0; i < longs; ++i) {
+			file.putInt(0);
+		}
+		
+		if (relocHunk >= 0) {
+			file.putInt(HUNK_RELOC32).putInt(1).putInt(relocHunk).putInt(0).putInt(0);
+		}
+		
+		file.putInt(HUNK_END).putInt(HUNK_BREAK);
+		return offset;
+	}
+	
+	@Test
+	public void testPath() {
+		OverlayNode[] nodes = overlays.getNodes();
+		
+		assertEquals(List.of(nodes[0]), overlays.getPath(nodes[0]));
+		assertEquals(List.of(nodes[0], nodes[1]), overlays.getPath(nodes[1]));
+		assertEquals(List.of(nodes[2], nodes[3]), overlays.getPath(nodes[3]));
+	}
+	
+	@Test
+	public void testAncestorRelocation() throws HunkParseError {
+		OverlayNode[] nodes = overlays.getNodes();
+		Segment[] parent = overlays.getSegments(nodes[2]);
+		Segment[] segs = overlays.getSegments(nodes[3]);
+		
+		assertEquals(1, segs.length);
+		assertEquals(2, segs[0].getId());
+		assertSame(parent[0], segs[0].getRelocationsToSegments()[0]);
+		
+		// the parent is placed first, the node after it
+		int[] addrs = overlays.getAddresses(nodes[3], new int[] { BASE }, NODE_BASE);
+		assertArrayEquals(new int[] { BASE, NODE_BASE, NODE_BASE + 5 * 4 }, addrs);
+	}
+}
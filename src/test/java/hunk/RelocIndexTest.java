@@ -0,0 +1,67 @@
+package hunk;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+public class RelocIndexTest {
+	
+	private final Segment code = new Segment(SegmentType.SEGMENT_TYPE_CODE, 0x20, null, -1, 0);
+	private final Segment data = new Segment(SegmentType.SEGMENT_TYPE_DATA, 0x10, null, -1, 1);
+	private final Segment bss = new Segment(SegmentType.SEGMENT_TYPE_BSS, 0x10, null, -1, 2);
+	
+	public RelocIndexTest() {
+		code.setId(0);
+		data.setId(1);
+		bss.setId(2);
+	}
+	
+	@Test
+	public void testDuplicateOffsets() {
+		code.addRelocations(bss, HunkType.HUNK_ABSRELOC32, new int[] { 4 });
+		code.addRelocations(data, HunkType.HUNK_ABSRELOC32, new int[] { 4 });
+		
+		RelocIndex index = code.getRelocIndex();
+		assertEquals(2, index.size());
+		
+		// the first of the relocations at an offset is found, the targets are in id order
+		assertEquals(0, index.find(4));
+		assertSame(data, index.getTarget(0));
+		assertSame(bss, index.getTarget(1));
+		assertEquals(0, index.find(7));
+		assertEquals(-1, index.find(8));
+	}
+	
+	@Test
+	public void testMixedWidths() {
+		code.addRelocations(data, HunkType.HUNK_ABSRELOC32, new int[] { 0, 16 });
+		code.addRelocations(data, HunkType.HUNK_RELRELOC8, new int[] { 2, 12 });
+		code.addRelocations(data, HunkType.HUNK_RELRELOC16, new int[] { 8 });
+		
+		RelocIndex index = code.getRelocIndex();
+		assertEquals(5, index.size());
+		
+		// a narrow relocation inside a wide one doesn't hide the wide one
+		assertEquals(0, index.find(3));
+		assertEquals(1, index.find(2));
+		
+		assertEquals(2, index.find(9));
+		assertEquals(-1, index.find(10));
+		assertEquals(3, index.find(12));
+		assertEquals(-1, index.find(13));
+		assertEquals(4, index.find(19));
+		assertEquals(-1, index.find(20));
+	}
+	
+	@Test
+	public void testBeforeFirst() {
+		code.addRelocations(data, HunkType.HUNK_ABSRELOC32, new int[] { 8 });
+		
+		RelocIndex index = code.getRelocIndex();
+		assertEquals(-1, index.find(0));
+		assertEquals(-1, index.find(7));
+		assertEquals(0, index.find(8));
+		assertEquals(-1, RelocIndex.EMPTY.find(0));
+	}
+}
@@ -0,0 +1,120 @@
+package hunk;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import org.junit.Test;
+
+import ghidra.app.util.bin.ByteArrayProvider;
+
+public class RelocateTest {
+	private static final int BASE = 0x1000;
+	
+	private final BinImage image = new BinImage();
+	private final Segment code;
+	private final Segment data;
+	private final Segment far;
+	
+	public RelocateTest() {
+		// addends at 2, 4, 8, 10 and 12, the code ends at 0x1010 where the data starts
+		byte[] bytes = new byte[] {
+			0, 0, 0, 4, 3, 0, 0, 0,
+			0, 2, 5, 0, 0, 0, 0, 8,
+		};
+		
+		code = new Segment(SegmentType.SEGMENT_TYPE_CODE, 0x10, new ByteArrayProvider(bytes), 0, 0);
+		data = new Segment(SegmentType.SEGMENT_TYPE_DATA, 0x10, null, -1, 1);
+		Segment bss = new Segment(SegmentType.SEGMENT_TYPE_BSS, 0x10000, null, -1, 2);
+		far = new Segment(SegmentType.SEGMENT_TYPE_DATA, 0x10, null, -1, 3);
+		
+		image.addSegment(code);
+		image.addSegment(data);
+		image.addSegment(bss);
+		image.addSegment(far);
+	}
+	
+	private ByteBuffer relocate(Relocate rel) throws HunkParseError {
+		List<byte[]> datas = rel.relocate(rel.getSeqAddresses(BASE));
+		assertNull(datas.get(data.getId()));
+		return ByteBuffer.wrap(datas.get(code.getId()));
+	}
+	
+	@Test
+	public void testRelReloc() throws HunkParseError {
+		code.addRelocations(data, HunkType.HUNK_RELRELOC16, new int[] { 2 });
+		code.addRelocations(data, HunkType.HUNK_RELRELOC8, new int[] { 4 });
+		code.addRelocations(far, HunkType.HUNK_RELRELOC8, new int[] { 10 });
+		
+		Relocate rel = new Relocate(image);
+		ByteBuffer buf = relocate(rel);
+		
+		// displacements are from the patched word or byte to the target
+		assertEquals(0x1010 - 0x1002 + 4, buf.getShort(2));
+		assertEquals(0x1010 - 0x1004 + 3, buf.get(4));
+		
+		// the far segment is past the BSS, out of 8 bit range and left as it was
+		assertEquals(5, buf.get(10));
+		assertTrue(rel.isOverflow(code, 10));
+		assertFalse(rel.isOverflow(code, 4));
+		assertEquals(3, rel.getStats().getRelocations());
+		assertEquals(1, rel.getStats().getOverflows());
+	}
+	
+	@Test
+	public void testDataRel() throws HunkParseError {
+		code.addRelocations(data, HunkType.HUNK_DREL16, new int[] { 8 });
+		code.addRelocations(data, HunkType.HUNK_DREL8, new int[] { 4 });
+		code.addRelocations(far, HunkType.HUNK_DREL16, new int[] { 2 });
+		
+		Relocate rel = new Relocate(image);
+		int dataBase = rel.getDataBase(rel.getSeqAddresses(BASE));
+		ByteBuffer buf = relocate(rel);
+		
+		assertEquals(0x1010 + Relocate.DATA_BASE_BIAS, dataBase);
+		assertEquals(0x1010 - dataBase + 2, buf.getShort(8));
+		
+		// the data base is 0x7FFE into the data, too far for a byte
+		assertEquals(3, buf.get(4));
+		assertTrue(rel.isOverflow(code, 4));
+		
+		// the far segment is 0x8012 past the data base, too far for a word
+		assertEquals(4, buf.getShort(2));
+		assertTrue(rel.isOverflow(code, 2));
+		assertFalse(rel.isOverflow(code, 8));
+		assertEquals(2, rel.getStats().getOverflows());
+	}
+	
+	@Test
+	public void testDataRel32() throws HunkParseError {
+		code.addRelocations(data, HunkType.HUNK_DREL32, new int[] { 12 });
+		
+		Relocate rel = new Relocate(image);
+		assertEquals(8 + 0x1010 - (0x1010 + Relocate.DATA_BASE_BIAS), relocate(rel).getInt(12));
+		
+		// executables store absolute relocations in HUNK_DREL32
+		image.setExecutable(true);
+		assertEquals(8 + 0x1010, relocate(rel).getInt(12));
+	}
+	
+	@Test
+	public void testOriginal() throws HunkParseError {
+		code.addRelocations(data, HunkType.HUNK_RELRELOC16, new int[] { 2 });
+		
+		Relocate rel = new Relocate(image);
+		assertNull(rel.getOriginal(code));
+		
+		ByteBuffer buf = relocate(rel);
+		ByteBuffer original = ByteBuffer.wrap(rel.getOriginal(code));
+		
+		// the relocation patched its own copy, the bytes read from the file are kept
+		assertEquals(0x1010 - 0x1002 + 4, buf.getShort(2));
+		assertEquals(4, original.getShort(2));
+		assertEquals(0x10, original.capacity());
+		assertNull(rel.getOriginal(data));
+	}
+}
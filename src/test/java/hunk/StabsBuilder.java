@@ -0,0 +1,41 @@
+package hunk;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import ghidra.app.util.bin.ByteArrayProvider;
+
+/**
+ * Builds the contents of a stabs HUNK_DEBUG block: the magic, the symbol table
+ * size, the entries and the string table.
+ */
+public final class StabsBuilder {
+	private final ByteArrayOutputStream entries = new ByteArrayOutputStream();
+	private final ByteArrayOutputStream strings = new ByteArrayOutputStream();
+	
+	public StabsBuilder() {
+		strings.write(0);
+	}
+	
+	public StabsBuilder add(int type, String string, int value) {
+		return add(type, strings.size(), value, string);
+	}
+	
+	/**
+	 * Adds an entry whose string is at {@code strx}, {@code string} is appended to the string table.
+	 */
+	public StabsBuilder add(int type, int strx, int value, String string) {
+		strings.writeBytes(string.getBytes(StandardCharsets.ISO_8859_1));
+		strings.write(0);
+		entries.writeBytes(ByteBuffer.allocate(12).putInt(strx).put((byte)type).put((byte)0).putShort((short)0).putInt(value).array());
+		return this;
+	}
+	
+	public HunkDebugStabs build() throws IOException {
+		ByteBuffer block = ByteBuffer.allocate(8 + entries.size() + strings.size());
+		block.putInt(HunkDebugStabs.MAGIC).putInt(entries.size()).put(entries.toByteArray()).put(strings.toByteArray());
+		return new HunkDebugStabs(new ByteArrayProvider(block.array()), 0);
+	}
+}